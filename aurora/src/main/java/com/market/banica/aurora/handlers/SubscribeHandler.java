@@ -2,6 +2,7 @@ package com.market.banica.aurora.handlers;
 
 import com.aurora.Aurora;
 import com.market.banica.aurora.mapper.SubscribeMapper;
+import com.market.banica.aurora.observer.MultiplexedSubscriptionObserver;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
@@ -48,4 +49,9 @@ public class SubscribeHandler {
         }
     }
 
+    public StreamObserver<Aurora.AuroraRequest> handleMultiplexedSubscribe(StreamObserver<Aurora.AuroraResponse> responseObserver) {
+        LOGGER.info("Handling multiplexed subscribe");
+        return new MultiplexedSubscriptionObserver(subscribeMapper, responseObserver);
+    }
+
 }
\ No newline at end of file
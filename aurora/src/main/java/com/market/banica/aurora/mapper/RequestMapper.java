@@ -12,6 +12,10 @@ import com.orderbook.CancelSubscriptionRequest;
 import com.orderbook.CancelSubscriptionResponse;
 import com.orderbook.InterestsRequest;
 import com.orderbook.InterestsResponse;
+import com.orderbook.ItemFillCostRequest;
+import com.orderbook.ItemFillCostResponse;
+import com.orderbook.ItemOrderBookBatchRequest;
+import com.orderbook.ItemOrderBookBatchResponse;
 import com.orderbook.ItemOrderBookRequest;
 import com.orderbook.ItemOrderBookResponse;
 import io.grpc.ManagedChannel;
@@ -37,6 +41,8 @@ public class RequestMapper {
 
     public static final String SPLIT_SLASH_REGEX = "/+";
     public static final String SPLIT_EQUALS_REGEX = "=";
+    public static final String SPLIT_COMMA_REGEX = ",";
+    public static final String SPLIT_COLON_REGEX = ":";
     public static final String NUMBER_CHECK_REGEX = "^\\d+$";
     public static final String ORDERBOOK = "orderbook";
     public static final String AURORA = "aurora";
@@ -52,7 +58,11 @@ public class RequestMapper {
     public static final String IN_ANNOUNCE_ITEM_INTEREST = "Forwarding to orderbook - announceItemInterest.";
     public static final String IN_GET_ORDER_BOOK_ITEM_LAYERS = "Forwarding to orderbook - getOrderBookItemLayers.";
     public static final String IN_AURORA_REQUEST = "Forwarding to aurora - request.";
+    public static final String IN_GET_ITEM_FILL_COST = "Forwarding to orderbook - getItemFillCost.";
+    public static final String IN_GET_ORDER_BOOK_ITEM_LAYERS_BATCH = "Forwarding to orderbook - getOrderBookItemLayersBatch.";
     public static final String SUBSCRIBE = "subscribe";
+    public static final String BATCH = "batch";
+    public static final String COST = "cost";
     public static final Pattern NUMBER_CHECK_PATTERN =
             Pattern.compile(NUMBER_CHECK_REGEX);
     private static final Logger LOGGER = LoggerFactory.getLogger(RequestMapper.class);
@@ -109,6 +119,12 @@ public class RequestMapper {
             if (topicSplit.length == 3 && isValidNumber(topicSplit[2])) {
                 return processItemOrderBookRequest(incomingRequest, orderbookBlockingStub, topicSplit);
 
+            } else if (topicSplit.length == 4 && topicSplit[1].equals(COST) && isValidNumber(topicSplit[3])) {
+                return processItemFillCostRequest(incomingRequest, orderbookBlockingStub, topicSplit);
+
+            } else if (topicSplit.length == 3 && topicSplit[1].equals(BATCH)) {
+                return processItemOrderBookBatchRequest(incomingRequest, orderbookBlockingStub, topicSplit[2]);
+
             } else if (topicSplit.length == 2 && topicSplit[1].contains(SPLIT_EQUALS_REGEX)) {
                 return renderOrderbookRequestSubscribeRequest(incomingRequest, orderbookBlockingStub, topicSplit[1]);
             }
@@ -182,6 +198,50 @@ public class RequestMapper {
                 .build();
     }
 
+    private Aurora.AuroraResponse processItemFillCostRequest(Aurora.AuroraRequest incomingRequest, AbstractBlockingStub<? extends AbstractBlockingStub<?>> orderBookServiceBlockingStub, String[] topicSplit) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+        LOGGER.info(IN_GET_ITEM_FILL_COST);
+
+        ItemFillCostRequest build = ItemFillCostRequest.newBuilder()
+                .setClientId(incomingRequest.getClientId())
+                .setItemName(topicSplit[2])
+                .setQuantity(Long.parseLong(topicSplit[3]))
+                .build();
+
+        Method orderBookGetItemFillCost = orderBookServiceBlockingStub.getClass().getMethod("getItemFillCost", ItemFillCostRequest.class);
+        ItemFillCostResponse itemFillCost = (ItemFillCostResponse) orderBookGetItemFillCost.invoke(orderBookServiceBlockingStub, build);
+
+        return Aurora.AuroraResponse
+                .newBuilder()
+                .setMessage(Any.pack(itemFillCost))
+                .build();
+    }
+
+    private Aurora.AuroraResponse processItemOrderBookBatchRequest(Aurora.AuroraRequest incomingRequest, AbstractBlockingStub<? extends AbstractBlockingStub<?>> orderBookServiceBlockingStub, String requestedItems) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+        LOGGER.info(IN_GET_ORDER_BOOK_ITEM_LAYERS_BATCH);
+
+        ItemOrderBookBatchRequest.Builder build = ItemOrderBookBatchRequest.newBuilder()
+                .setClientId(incomingRequest.getClientId());
+
+        for (String requestedItem : requestedItems.split(SPLIT_COMMA_REGEX)) {
+            String[] itemSplit = requestedItem.split(SPLIT_COLON_REGEX);
+            if (itemSplit.length != 2 || !isValidNumber(itemSplit[1])) {
+                throw new IllegalArgumentException("Invalid batch item: " + requestedItem);
+            }
+            build.addRequests(ItemOrderBookRequest.newBuilder()
+                    .setClientId(incomingRequest.getClientId())
+                    .setItemName(itemSplit[0])
+                    .setQuantity(Long.parseLong(itemSplit[1])));
+        }
+
+        Method orderBookGetItemLayersBatch = orderBookServiceBlockingStub.getClass().getMethod("getOrderBookItemLayersBatch", ItemOrderBookBatchRequest.class);
+        ItemOrderBookBatchResponse orderBookItemLayers = (ItemOrderBookBatchResponse) orderBookGetItemLayersBatch.invoke(orderBookServiceBlockingStub, build.build());
+
+        return Aurora.AuroraResponse
+                .newBuilder()
+                .setMessage(Any.pack(orderBookItemLayers))
+                .build();
+    }
+
     private Aurora.AuroraResponse renderMarketMapping(Aurora.AuroraRequest incomingRequest, ManagedChannel channelByKey) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
         LOGGER.debug("Mapping messages for market.");
 
@@ -0,0 +1,139 @@
+package com.market.banica.aurora.observer;
+
+import com.aurora.Aurora;
+import com.market.banica.aurora.mapper.SubscribeMapper;
+import io.grpc.Context;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class MultiplexedSubscriptionObserver implements StreamObserver<Aurora.AuroraRequest> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MultiplexedSubscriptionObserver.class);
+
+    private static final String SPLIT_EQUALS_REGEX = "=";
+    private static final String SPLIT_SLASH_REGEX = "/+";
+    private static final String SUBSCRIBE = "subscribe";
+    private static final String UNSUBSCRIBE = "unsubscribe";
+
+    private final SubscribeMapper subscribeMapper;
+    private final StreamObserver<Aurora.AuroraResponse> forwardResponse;
+    private final Map<String, Map<String, Context.CancellableContext>> itemSubscriptions = new ConcurrentHashMap<>();
+
+    private boolean closed;
+
+    public MultiplexedSubscriptionObserver(SubscribeMapper subscribeMapper, StreamObserver<Aurora.AuroraResponse> forwardResponse) {
+        this.subscribeMapper = subscribeMapper;
+        this.forwardResponse = forwardResponse;
+    }
+
+    @Override
+    public void onNext(Aurora.AuroraRequest request) {
+        String[] topicSplit = request.getTopic().split(SPLIT_EQUALS_REGEX);
+        String[] targetSplit = topicSplit[0].split(SPLIT_SLASH_REGEX);
+        if (topicSplit.length != 2 || targetSplit.length != 2) {
+            LOGGER.warn("Ignoring unsupported multiplexed request {} from client {}", request.getTopic(), request.getClientId());
+            return;
+        }
+
+        String itemName = targetSplit[1];
+        String command = topicSplit[1].toLowerCase(Locale.ROOT);
+        if (command.equals(SUBSCRIBE)) {
+            subscribe(request.getClientId(), topicSplit[0], itemName);
+        } else if (command.equals(UNSUBSCRIBE)) {
+            unsubscribe(itemName);
+        } else {
+            LOGGER.warn("Ignoring unsupported multiplexed command {} from client {}", command, request.getClientId());
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        LOGGER.warn("Multiplexed subscription has stopped: {}", throwable.getMessage());
+        cancelAll();
+    }
+
+    @Override
+    public void onCompleted() {
+        LOGGER.info("Completing multiplexed subscription");
+        cancelAll();
+        synchronized (forwardResponse) {
+            forwardResponse.onCompleted();
+        }
+    }
+
+    private void subscribe(String clientId, String topic, String itemName) {
+        Aurora.AuroraRequest itemRequest = Aurora.AuroraRequest.newBuilder()
+                .setClientId(clientId)
+                .setTopic(topic)
+                .build();
+
+        Context.CancellableContext withCancellation = Context.current().withCancellation();
+        Context.CancellableContext replacedContext = itemSubscriptions
+                .computeIfAbsent(itemName, item -> new ConcurrentHashMap<>())
+                .put(topic, withCancellation);
+        if (replacedContext != null) {
+            LOGGER.info("Replacing {} in multiplexed subscription of client {}", topic, clientId);
+            replacedContext.cancel(null);
+        }
+
+        LOGGER.info("Adding {} to multiplexed subscription of client {}", topic, clientId);
+        withCancellation.run(() -> {
+            try {
+                subscribeMapper.renderSubscribe(itemRequest, new ItemObserver(topic));
+            } catch (Exception e) {
+                LOGGER.warn("Unable to subscribe for {}: {}", topic, e.getMessage());
+                withCancellation.cancel(e);
+            }
+        });
+    }
+
+    private void unsubscribe(String itemName) {
+        Map<String, Context.CancellableContext> cancelledItem = itemSubscriptions.remove(itemName);
+        if (cancelledItem != null) {
+            LOGGER.info("Removing {} from multiplexed subscription", itemName);
+            cancelledItem.values().forEach(cancellableContext -> cancellableContext.cancel(null));
+        }
+    }
+
+    private void cancelAll() {
+        synchronized (forwardResponse) {
+            closed = true;
+        }
+        itemSubscriptions.keySet().forEach(this::unsubscribe);
+    }
+
+    private class ItemObserver implements StreamObserver<Aurora.AuroraResponse> {
+
+        private final String topic;
+
+        ItemObserver(String topic) {
+            this.topic = topic;
+        }
+
+        @Override
+        public void onNext(Aurora.AuroraResponse response) {
+            synchronized (forwardResponse) {
+                if (!closed) {
+                    forwardResponse.onNext(response);
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            LOGGER.warn("Streams for {} have stopped: {}", topic, throwable.getMessage());
+        }
+
+        @Override
+        public void onCompleted() {
+            LOGGER.info("Streams for {} have completed", topic);
+        }
+
+    }
+
+}
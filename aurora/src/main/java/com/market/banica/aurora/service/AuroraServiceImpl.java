@@ -38,4 +38,10 @@ public class AuroraServiceImpl extends AuroraServiceGrpc.AuroraServiceImplBase {
         LOGGER.info("Accepted subscribe from client {}", request.getClientId());
         subscribeHandler.handleSubscribe(request, responseObserver);
     }
+
+    @Override
+    public StreamObserver<Aurora.AuroraRequest> subscribeMultiplexed(StreamObserver<Aurora.AuroraResponse> responseObserver) {
+        LOGGER.info("Accepted multiplexed subscribe");
+        return subscribeHandler.handleMultiplexedSubscribe(responseObserver);
+    }
 }
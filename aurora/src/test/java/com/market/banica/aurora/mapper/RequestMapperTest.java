@@ -10,6 +10,8 @@ import com.market.banica.aurora.config.StubManager;
 import com.market.banica.aurora.util.FakeServerGenerator;
 import com.orderbook.CancelSubscriptionResponse;
 import com.orderbook.InterestsResponse;
+import com.orderbook.ItemFillCostResponse;
+import com.orderbook.ItemOrderBookBatchResponse;
 import com.orderbook.ItemOrderBookResponse;
 import com.orderbook.OrderBookServiceGrpc;
 import io.grpc.ManagedChannel;
@@ -50,6 +52,8 @@ class RequestMapperTest {
     public static final Aurora.AuroraRequest MARKET_BUY_PRODUCT_REQUEST = Aurora.AuroraRequest.newBuilder().setTopic("market-europe/buy/eggs/2.50/2").build();
     private static final Aurora.AuroraRequest AURORA_REQUEST = Aurora.AuroraRequest.newBuilder().setTopic("aurora/eggs/10").build();
     private static final Aurora.AuroraRequest ORDERBOOK_REQUEST = Aurora.AuroraRequest.newBuilder().setTopic("orderbook/eggs/10").build();
+    private static final Aurora.AuroraRequest ORDERBOOK_BATCH_REQUEST = Aurora.AuroraRequest.newBuilder().setTopic("orderbook/batch/eggs:10,milk:2").build();
+    private static final Aurora.AuroraRequest ORDERBOOK_FILL_COST_REQUEST = Aurora.AuroraRequest.newBuilder().setTopic("orderbook/cost/eggs/10").build();
     private static final Aurora.AuroraRequest ORDERBOOK_SUBSCRIBE_REQUEST = Aurora.AuroraRequest.newBuilder().setTopic("orderbook/eggs=subscribe").build();
     private static final Aurora.AuroraRequest ORDERBOOK_UNSUBSCRIBE_REQUEST = Aurora.AuroraRequest.newBuilder().setTopic("orderbook/eggs=unsubscribe").build();
     private static final Aurora.AuroraRequest INVALID_REQUEST = Aurora.AuroraRequest.newBuilder().setTopic("market/banica").build();
@@ -131,6 +135,41 @@ class RequestMapperTest {
         assertEquals(expectedOrderBookResponse, actual.getMessage().unpack(ItemOrderBookResponse.class));
     }
 
+    @Test
+    void renderRequestWithFillCostRequestForOrderBookProcessesItemFillCostRequest() throws IOException, ServiceNotFoundException, NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+        //Arrange
+        when(channelManager.getChannelByKey(any())).thenReturn(Optional.ofNullable(DUMMY_MANAGED_CHANNEL));
+        String destination = "orderbook";
+        doReturn(orderBookBlockingStub).when(stubManager).getBlockingStub(any(ManagedChannel.class), eq(destination));
+
+        ItemFillCostResponse expectedOrderBookResponse = ItemFillCostResponse.newBuilder().setItemName("eggs").setQuantity(10).build();
+
+        //Act
+        Aurora.AuroraResponse actual = requestMapper.renderRequest(ORDERBOOK_FILL_COST_REQUEST);
+
+        //Assert
+        assertEquals(expectedOrderBookResponse, actual.getMessage().unpack(ItemFillCostResponse.class));
+    }
+
+    @Test
+    void renderRequestWithBatchRequestForOrderBookProcessesItemOrderBookBatchRequest() throws IOException, ServiceNotFoundException, NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+        //Arrange
+        when(channelManager.getChannelByKey(any())).thenReturn(Optional.ofNullable(DUMMY_MANAGED_CHANNEL));
+        String destination = "orderbook";
+        doReturn(orderBookBlockingStub).when(stubManager).getBlockingStub(any(ManagedChannel.class), eq(destination));
+
+        ItemOrderBookBatchResponse expectedOrderBookResponse = ItemOrderBookBatchResponse.newBuilder()
+                .addResponses(ItemOrderBookResponse.newBuilder().setItemName("eggs"))
+                .addResponses(ItemOrderBookResponse.newBuilder().setItemName("milk"))
+                .build();
+
+        //Act
+        Aurora.AuroraResponse actual = requestMapper.renderRequest(ORDERBOOK_BATCH_REQUEST);
+
+        //Assert
+        assertEquals(expectedOrderBookResponse, actual.getMessage().unpack(ItemOrderBookBatchResponse.class));
+    }
+
     @Test
     void renderRequestWithSubscribeRequestForOrderBookProcessesSubscribeForItem() throws IOException, ServiceNotFoundException, NoSuchMethodException, IllegalAccessException, InvocationTargetException {
         //Arrange
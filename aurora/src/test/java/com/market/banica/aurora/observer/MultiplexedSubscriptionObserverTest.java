@@ -0,0 +1,129 @@
+package com.market.banica.aurora.observer;
+
+import com.aurora.Aurora;
+import com.google.protobuf.Any;
+import com.market.TickResponse;
+import com.market.banica.aurora.mapper.SubscribeMapper;
+import io.grpc.Context;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class MultiplexedSubscriptionObserverTest {
+
+    private static final String CLIENT_ID = "orderbook";
+
+    private static final Aurora.AuroraResponse TICK_RESPONSE = Aurora.AuroraResponse
+            .newBuilder().setMessage(Any.pack(TickResponse.newBuilder().setGoodName("eggs").build())).build();
+
+    private final SubscribeMapper subscribeMapper = mock(SubscribeMapper.class);
+
+    private final StreamObserver<Aurora.AuroraResponse> forwardResponse = mock(StreamObserver.class);
+
+    private final List<Context> subscriptionContexts = new ArrayList<>();
+
+    private MultiplexedSubscriptionObserver multiplexedSubscriptionObserver;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        multiplexedSubscriptionObserver = new MultiplexedSubscriptionObserver(subscribeMapper, forwardResponse);
+
+        doAnswer(invocation -> {
+            subscriptionContexts.add(Context.current());
+            return null;
+        }).when(subscribeMapper).renderSubscribe(any(), any());
+    }
+
+    @Test
+    void onNextWithSubscribeRendersItemSubscription() throws Exception {
+        multiplexedSubscriptionObserver.onNext(request("market/eggs=subscribe"));
+
+        ArgumentCaptor<Aurora.AuroraRequest> requestCaptor = ArgumentCaptor.forClass(Aurora.AuroraRequest.class);
+        verify(subscribeMapper, times(1)).renderSubscribe(requestCaptor.capture(), any());
+        assertEquals("market/eggs", requestCaptor.getValue().getTopic());
+        assertEquals(CLIENT_ID, requestCaptor.getValue().getClientId());
+    }
+
+    @Test
+    void itemSubscriptionsForwardToSharedStream() throws Exception {
+        multiplexedSubscriptionObserver.onNext(request("market/eggs=subscribe"));
+        multiplexedSubscriptionObserver.onNext(request("market/milk=subscribe"));
+
+        ArgumentCaptor<StreamObserver<Aurora.AuroraResponse>> observerCaptor = ArgumentCaptor.forClass(StreamObserver.class);
+        verify(subscribeMapper, times(2)).renderSubscribe(any(), observerCaptor.capture());
+        observerCaptor.getAllValues().get(0).onNext(TICK_RESPONSE);
+        observerCaptor.getAllValues().get(1).onNext(TICK_RESPONSE);
+        observerCaptor.getAllValues().get(1).onCompleted();
+
+        verify(forwardResponse, times(2)).onNext(TICK_RESPONSE);
+        verify(forwardResponse, never()).onCompleted();
+    }
+
+    @Test
+    void onNextWithUnsubscribeCancelsOnlyThatItem() {
+        multiplexedSubscriptionObserver.onNext(request("market/eggs=subscribe"));
+        multiplexedSubscriptionObserver.onNext(request("market-europe/eggs=subscribe"));
+        multiplexedSubscriptionObserver.onNext(request("market/milk=subscribe"));
+
+        multiplexedSubscriptionObserver.onNext(request("market/eggs=unsubscribe"));
+
+        assertTrue(subscriptionContexts.get(0).isCancelled());
+        assertTrue(subscriptionContexts.get(1).isCancelled());
+        assertFalse(subscriptionContexts.get(2).isCancelled());
+    }
+
+    @Test
+    void onNextWithRepeatedSubscribeCancelsReplacedSubscriptionOfSameTopic() {
+        multiplexedSubscriptionObserver.onNext(request("market/eggs=subscribe"));
+        multiplexedSubscriptionObserver.onNext(request("market-europe/eggs=subscribe"));
+        multiplexedSubscriptionObserver.onNext(request("market/eggs=subscribe"));
+
+        assertTrue(subscriptionContexts.get(0).isCancelled());
+        assertFalse(subscriptionContexts.get(1).isCancelled());
+        assertFalse(subscriptionContexts.get(2).isCancelled());
+    }
+
+    @Test
+    void onNextWithUnsupportedTopicIsIgnored() throws Exception {
+        multiplexedSubscriptionObserver.onNext(request("market/eggs"));
+
+        verify(subscribeMapper, never()).renderSubscribe(any(), any());
+        verify(forwardResponse, never()).onError(any());
+    }
+
+    @Test
+    void onCompletedCancelsAllItemsAndCompletesStream() throws Exception {
+        multiplexedSubscriptionObserver.onNext(request("market/eggs=subscribe"));
+        ArgumentCaptor<StreamObserver<Aurora.AuroraResponse>> observerCaptor = ArgumentCaptor.forClass(StreamObserver.class);
+        verify(subscribeMapper).renderSubscribe(any(), observerCaptor.capture());
+
+        multiplexedSubscriptionObserver.onCompleted();
+        observerCaptor.getValue().onNext(TICK_RESPONSE);
+
+        assertTrue(subscriptionContexts.get(0).isCancelled());
+        verify(forwardResponse, times(1)).onCompleted();
+        verify(forwardResponse, never()).onNext(any());
+    }
+
+    private Aurora.AuroraRequest request(String topic) {
+        return Aurora.AuroraRequest.newBuilder()
+                .setClientId(CLIENT_ID)
+                .setTopic(topic)
+                .build();
+    }
+
+}
@@ -13,6 +13,10 @@ import com.orderbook.CancelSubscriptionRequest;
 import com.orderbook.CancelSubscriptionResponse;
 import com.orderbook.InterestsRequest;
 import com.orderbook.InterestsResponse;
+import com.orderbook.ItemFillCostRequest;
+import com.orderbook.ItemFillCostResponse;
+import com.orderbook.ItemOrderBookBatchRequest;
+import com.orderbook.ItemOrderBookBatchResponse;
 import com.orderbook.ItemOrderBookRequest;
 import com.orderbook.ItemOrderBookResponse;
 import com.orderbook.OrderBookServiceGrpc;
@@ -165,6 +169,27 @@ public final class FakeServerGenerator {
                 responseObserver.onCompleted();
             }
 
+            @Override
+            public void getItemFillCost(ItemFillCostRequest request, StreamObserver<ItemFillCostResponse> responseObserver) {
+                responseObserver.onNext(ItemFillCostResponse.newBuilder()
+                        .setItemName(request.getItemName())
+                        .setQuantity(request.getQuantity())
+                        .build());
+
+                responseObserver.onCompleted();
+            }
+
+            @Override
+            public void getOrderBookItemLayersBatch(ItemOrderBookBatchRequest request, StreamObserver<ItemOrderBookBatchResponse> responseObserver) {
+                ItemOrderBookBatchResponse.Builder batchResponse = ItemOrderBookBatchResponse.newBuilder();
+                request.getRequestsList().forEach(itemRequest -> batchResponse.addResponses(ItemOrderBookResponse.newBuilder()
+                        .setItemName(itemRequest.getItemName())));
+
+                responseObserver.onNext(batchResponse.build());
+
+                responseObserver.onCompleted();
+            }
+
             @Override
             public void announceItemInterest(InterestsRequest request, StreamObserver<InterestsResponse> responseObserver) {
                 responseObserver.onNext(InterestsResponse.newBuilder()
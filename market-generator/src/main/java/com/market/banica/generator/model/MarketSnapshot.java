@@ -0,0 +1,20 @@
+package com.market.banica.generator.model;
+
+import com.market.TickResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Ticks of a good taken under a single read of the market, with the sequence of the last tick
+ * they include.
+ */
+@AllArgsConstructor
+@Getter
+public class MarketSnapshot {
+
+    private final long sequence;
+    private final List<TickResponse> ticks;
+
+}
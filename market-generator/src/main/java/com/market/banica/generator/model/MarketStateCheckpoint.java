@@ -0,0 +1,22 @@
+package com.market.banica.generator.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Net available quantity per price level of every good, as of the journal sequence of the last
+ * tick applied before the capture.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarketStateCheckpoint {
+
+    private long sequence;
+    private long timestamp;
+    private Map<String, Map<Double, Long>> levels;
+
+}
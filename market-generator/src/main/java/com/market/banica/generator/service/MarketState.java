@@ -2,6 +2,7 @@ package com.market.banica.generator.service;
 
 import com.market.TickResponse;
 import com.market.banica.common.exception.ProductNotAvailableException;
+import com.market.banica.generator.model.MarketSnapshot;
 import com.market.banica.generator.model.MarketTick;
 import com.market.banica.generator.util.PersistScheduler;
 
@@ -13,6 +14,8 @@ public interface MarketState {
 
     List<TickResponse> generateMarketTicks(String good);
 
+    MarketSnapshot snapshotMarketTicks(String good, boolean compacted);
+
     PersistScheduler getPersistScheduler();
 
     MarketTick removeItemFromState(String itemName, long itemQuantity, double itemPrice) throws ProductNotAvailableException;
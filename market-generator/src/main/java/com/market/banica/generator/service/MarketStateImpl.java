@@ -2,9 +2,12 @@ package com.market.banica.generator.service;
 
 import com.market.TickResponse;
 import com.market.banica.common.exception.ProductNotAvailableException;
+import com.market.banica.generator.model.MarketSnapshot;
+import com.market.banica.generator.model.MarketStateCheckpoint;
 import com.market.banica.generator.model.MarketTick;
 import com.market.banica.generator.util.PersistScheduler;
 import com.market.banica.generator.util.SnapshotPersistence;
+import com.market.banica.generator.util.TickJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,11 +16,13 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -34,8 +39,9 @@ public class MarketStateImpl implements MarketState {
 
     private final SnapshotPersistence snapshotPersistence;
 
-    private final Map<String, Set<MarketTick>> marketState;
-    private final Queue<MarketTick> marketSnapshot;
+    private final Map<String, List<MarketTick>> marketState;
+
+    private final Map<String, NavigableMap<Double, Long>> availableQuantities = new ConcurrentHashMap<>();
 
     private final ExecutorService executorService;
 
@@ -43,16 +49,24 @@ public class MarketStateImpl implements MarketState {
 
     private final PersistScheduler persistScheduler;
 
+    private long tickSequence;
+
     @Autowired
     public MarketStateImpl(@Value("${tick.market.state.file.name}") String stateFileName,
                            @Value("${tick.market.snapshot.file.name}") String snapshotFileName,
+                           @Value("${tick.market.journal.segment.size.bytes}") int journalSegmentSize,
+                           @Value("${tick.market.journal.fsync.policy}") String journalFsyncPolicy,
+                           @Value("${tick.market.journal.group.commit.records}") int groupCommitRecords,
+                           @Value("${tick.market.journal.group.commit.millis}") long groupCommitMillis,
                            MarketSubscriptionManager subscriptionManager) throws IOException {
-        snapshotPersistence = new SnapshotPersistence(stateFileName, snapshotFileName);
-        this.marketSnapshot = snapshotPersistence.loadMarketSnapshot();
-        this.marketState = snapshotPersistence.loadMarketState(marketSnapshot);
+        snapshotPersistence = new SnapshotPersistence(stateFileName, snapshotFileName, new TickJournal(snapshotFileName,
+                journalSegmentSize, TickJournal.FsyncPolicy.of(journalFsyncPolicy), groupCommitRecords, groupCommitMillis));
+        this.marketState = snapshotPersistence.loadMarketState();
+        this.tickSequence = snapshotPersistence.getLastSequence();
+        this.marketState.values().forEach(marketTicks -> marketTicks.forEach(this::indexAvailableQuantity));
         this.executorService = Executors.newSingleThreadExecutor();
         this.subscriptionManager = subscriptionManager;
-        persistScheduler = new PersistScheduler(marketDataLock, snapshotPersistence, marketState, marketSnapshot);
+        persistScheduler = new PersistScheduler(marketDataLock, snapshotPersistence, this::captureMarketState);
         persistScheduler.scheduleSnapshot();
     }
 
@@ -62,18 +76,7 @@ public class MarketStateImpl implements MarketState {
         executorService.execute(() -> {
             try {
                 marketDataLock.writeLock().lock();
-                marketSnapshot.add(marketTick);
-
-                String good = marketTick.getGood();
-                marketState.putIfAbsent(good, new TreeSet<>());
-                marketState.get(good).add(marketTick);
-
-                snapshotPersistence.persistMarketSnapshot(marketSnapshot);
-
-                subscriptionManager.notifySubscribers(convertMarketTickToTickResponse(marketTick));
-
-            } catch (IOException e) {
-                LOGGER.error("Could not persist market snapshot due to: {}", e.getMessage());
+                applyTick(marketTick);
             } finally {
                 marketDataLock.writeLock().unlock();
             }
@@ -86,9 +89,20 @@ public class MarketStateImpl implements MarketState {
             marketDataLock.readLock().lock();
 
             LOGGER.info("Generating market ticks for {} .", good);
-            return marketState.getOrDefault(good, new TreeSet<>()).stream()
-                    .map(this::convertMarketTickToTickResponse)
-                    .collect(Collectors.toList());
+            return convertMarketTicks(good);
+
+        } finally {
+            marketDataLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public MarketSnapshot snapshotMarketTicks(String good, boolean compacted) {
+        try {
+            marketDataLock.readLock().lock();
+
+            LOGGER.info("Taking {} snapshot of market ticks for {} .", compacted ? "compacted" : "full", good);
+            return new MarketSnapshot(tickSequence, compacted ? convertPriceLevels(good) : convertMarketTicks(good));
 
         } finally {
             marketDataLock.readLock().unlock();
@@ -105,14 +119,9 @@ public class MarketStateImpl implements MarketState {
         try {
             marketDataLock.writeLock().lock();
 
-            Set<MarketTick> marketTicks = marketState.get(itemName);
-            List<MarketTick> marketTicksWihEqualPrices = marketTicks
-                    .stream()
-                    .filter(marketTick -> marketTick.getPrice() == itemPrice)
-                    .collect(Collectors.toList());
-            long marketStateTicksQuantity = getQuantityForMarketTicksWithSamePrice(marketTicksWihEqualPrices);
+            Long availableQuantity = availableQuantities.getOrDefault(itemName, Collections.emptyNavigableMap()).get(itemPrice);
 
-            if (marketStateTicksQuantity < itemQuantity || marketTicksWihEqualPrices.size() == 0) {
+            if (availableQuantity == null || availableQuantity < itemQuantity) {
                 throw new ProductNotAvailableException(String.format("Product with name %s, price %.2f and quantity %d doesn't exist.",
                         itemName,
                         itemPrice,
@@ -120,7 +129,7 @@ public class MarketStateImpl implements MarketState {
             }
 
             MarketTick marketTick = new MarketTick(itemName, -itemQuantity, itemPrice, System.currentTimeMillis());
-            this.addTickToMarket(marketTick);
+            applyTick(marketTick);
             desireProduct = new MarketTick(itemName, itemQuantity, itemPrice, System.currentTimeMillis());
         } finally {
             marketDataLock.writeLock().unlock();
@@ -135,8 +144,50 @@ public class MarketStateImpl implements MarketState {
     }
 
 
-    private long getQuantityForMarketTicksWithSamePrice(List<MarketTick> marketTicks) {
-        return marketTicks.stream().mapToLong(MarketTick::getQuantity).sum();
+    /**
+     * Copies the net quantity of every price level, so the capture costs as much as the levels on
+     * the market and not as the whole tick history.
+     */
+    private MarketStateCheckpoint captureMarketState() {
+        Map<String, Map<Double, Long>> levels = new ConcurrentHashMap<>();
+        availableQuantities.forEach((good, goodLevels) -> levels.put(good, new TreeMap<>(goodLevels)));
+        return new MarketStateCheckpoint(tickSequence, System.currentTimeMillis(), levels);
+    }
+
+    private void applyTick(MarketTick marketTick) {
+        marketState.computeIfAbsent(marketTick.getGood(), good -> new ArrayList<>()).add(marketTick);
+        indexAvailableQuantity(marketTick);
+
+        try {
+            snapshotPersistence.appendMarketTick(++tickSequence, marketTick);
+        } catch (IOException e) {
+            LOGGER.error("Could not journal market tick due to: {}", e.getMessage());
+        }
+
+        subscriptionManager.notifySubscribers(convertMarketTickToTickResponse(marketTick), tickSequence);
+    }
+
+    private List<TickResponse> convertMarketTicks(String good) {
+        return marketState.getOrDefault(good, Collections.emptyList()).stream()
+                .map(this::convertMarketTickToTickResponse)
+                .collect(Collectors.toList());
+    }
+
+    private List<TickResponse> convertPriceLevels(String good) {
+        long timestamp = System.currentTimeMillis();
+        return availableQuantities.getOrDefault(good, Collections.emptyNavigableMap()).entrySet().stream()
+                .filter(priceLevel -> priceLevel.getValue() > 0)
+                .map(priceLevel -> convertMarketTickToTickResponse(
+                        new MarketTick(good, priceLevel.getValue(), priceLevel.getKey(), timestamp)))
+                .collect(Collectors.toList());
+    }
+
+    private void indexAvailableQuantity(MarketTick marketTick) {
+        availableQuantities.computeIfAbsent(marketTick.getGood(), good -> new TreeMap<>())
+                .compute(marketTick.getPrice(), (price, quantity) -> {
+                    long newQuantity = (quantity == null ? 0 : quantity) + marketTick.getQuantity();
+                    return newQuantity == 0 ? null : newQuantity;
+                });
     }
 
     private TickResponse convertMarketTickToTickResponse(MarketTick marketTick) {
@@ -160,5 +211,6 @@ public class MarketStateImpl implements MarketState {
             executorService.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        snapshotPersistence.close();
     }
 }
\ No newline at end of file
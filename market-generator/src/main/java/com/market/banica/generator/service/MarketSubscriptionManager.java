@@ -3,63 +3,159 @@ package com.market.banica.generator.service;
 import com.market.MarketDataRequest;
 import com.market.TickResponse;
 import io.grpc.Status;
-import io.grpc.StatusRuntimeException;
 import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class MarketSubscriptionManager implements SubscriptionManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(System.getenv("MARKET") + "." + MarketSubscriptionManager.class.getSimpleName());
 
-    private final Map<String, Set<StreamObserver<TickResponse>>> subscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Set<SubscriberQueue>> subscriptions = new ConcurrentHashMap<>();
 
+    private final ExecutorService fanOutExecutor;
+
+    private final int subscriberQueueCapacity;
+
+    private final SubscriberQueue.OverflowPolicy overflowPolicy;
+
+    private final int drainChunkSize;
+
+    @Autowired
+    public MarketSubscriptionManager(@Value("${market.subscriber.queue.capacity}") int subscriberQueueCapacity,
+                                     @Value("${market.subscriber.overflow.policy}") String overflowPolicy,
+                                     @Value("${market.subscriber.drain.chunk.size}") int drainChunkSize,
+                                     @Value("${market.subscriber.fan.out.queue.capacity}") int fanOutQueueCapacity) {
+        this(subscriberQueueCapacity, overflowPolicy, drainChunkSize, newFanOutExecutor(fanOutQueueCapacity));
+    }
+
+    public MarketSubscriptionManager(int subscriberQueueCapacity, String overflowPolicy, int drainChunkSize,
+                                     ExecutorService fanOutExecutor) {
+        this.subscriberQueueCapacity = subscriberQueueCapacity;
+        this.overflowPolicy = SubscriberQueue.OverflowPolicy.of(overflowPolicy);
+        this.drainChunkSize = drainChunkSize;
+        this.fanOutExecutor = fanOutExecutor;
+    }
+
+    /**
+     * A single fan-out thread behind a bounded queue. When the queue is full the market thread waits
+     * for room, so live ticks are neither dropped nor reordered. Drains the fan-out thread schedules
+     * for itself run in place, as it would deadlock waiting on its own queue.
+     */
+    static ExecutorService newFanOutExecutor(int queueCapacity) {
+        FanOutHandOff handOff = new FanOutHandOff();
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), handOff, handOff);
+    }
+
+    /**
+     * Registers a paused subscriber queue. Live ticks are kept in it until the subscriber is
+     * bootstrapped, so none are lost between the bootstrap snapshot and the subscription.
+     */
     @Override
-    public void subscribe(MarketDataRequest request, StreamObserver<TickResponse> responseObserver) {
+    public SubscriberQueue subscribe(MarketDataRequest request, StreamObserver<TickResponse> responseObserver) {
         String goodName = request.getGoodName();
         LOGGER.debug("{} Requested for subscription for good: {}.", responseObserver, goodName);
-        addSubscriber(responseObserver, goodName);
+        return addSubscriber(responseObserver, goodName);
     }
 
     @Override
-    public void notifySubscribers(TickResponse response) {
-        if (subscriptions.containsKey(response.getGoodName())) {
-            sendNotification(response, subscriptions.get(response.getGoodName()));
+    public void notifySubscribers(TickResponse response, long sequence) {
+        try {
+            fanOutExecutor.execute(() -> {
+                if (subscriptions.containsKey(response.getGoodName())) {
+                    sendNotification(response, sequence, subscriptions.get(response.getGoodName()));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Tick {} was not sent to subscribers, subscriptions are shutting down.", sequence);
         }
     }
 
-    private void addSubscriber(StreamObserver<TickResponse> responseObserver, String goodName) {
-        subscriptions.putIfAbsent(goodName, ConcurrentHashMap.newKeySet());
-        subscriptions.get(goodName).add(responseObserver);
+    private SubscriberQueue addSubscriber(StreamObserver<TickResponse> responseObserver, String goodName) {
+        SubscriberQueue subscriberQueue = new SubscriberQueue((ServerCallStreamObserver<TickResponse>) responseObserver,
+                goodName, subscriberQueueCapacity, overflowPolicy, drainChunkSize, fanOutExecutor);
+        subscriptions.computeIfAbsent(goodName, subscribers -> ConcurrentHashMap.newKeySet()).add(subscriberQueue);
+        return subscriberQueue;
     }
 
-    private void sendNotification(TickResponse response, Set<StreamObserver<TickResponse>> subscribers) {
-        for (StreamObserver<TickResponse> currentSubscriber : subscribers) {
-            ServerCallStreamObserver<TickResponse> cancellableSubscriber = (ServerCallStreamObserver<TickResponse>) currentSubscriber;
-            if (cancellableSubscriber.isCancelled()) {
-                currentSubscriber.onError(Status.CANCELLED
-                        .withDescription(currentSubscriber + " has stopped requesting product " + response.getGoodName())
+    private void sendNotification(TickResponse response, long sequence, Set<SubscriberQueue> subscribers) {
+        for (SubscriberQueue currentSubscriber : subscribers) {
+            if (currentSubscriber.isCancelled()) {
+                currentSubscriber.getSubscriber().onError(Status.CANCELLED
+                        .withDescription(currentSubscriber.getSubscriber() + " has stopped requesting product " + response.getGoodName())
                         .asException());
                 subscribers.remove(currentSubscriber);
-                LOGGER.debug("Subscriber {} unsubscribed.", currentSubscriber);
+                LOGGER.debug("Subscriber {} unsubscribed.", currentSubscriber.getSubscriber());
                 continue;
             }
 
-            try {
-                currentSubscriber.onNext(response);
-            } catch (StatusRuntimeException e) {
+            currentSubscriber.offer(response, sequence);
+            if (currentSubscriber.isClosed()) {
                 subscribers.remove(currentSubscriber);
-                LOGGER.debug("Subscriber {} unsubscribed.", currentSubscriber);
+                LOGGER.debug("Subscriber {} unsubscribed.", currentSubscriber.getSubscriber());
             }
         }
         LOGGER.debug("Notified subscribers successfully with: {}.", response);
     }
 
+    @PreDestroy
+    private void onDestroy() {
+        fanOutExecutor.shutdown();
+        try {
+            if (!fanOutExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                fanOutExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            fanOutExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class FanOutHandOff implements ThreadFactory, RejectedExecutionHandler {
+
+        private volatile Thread fanOutThread;
+
+        @Override
+        public Thread newThread(Runnable task) {
+            fanOutThread = new Thread(task, "market-fan-out");
+            return fanOutThread;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Fan-out executor has been shut down");
+            }
+            if (Thread.currentThread() == fanOutThread) {
+                task.run();
+                return;
+            }
+            try {
+                executor.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for the fan-out queue", e);
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,198 @@
+package com.market.banica.generator.service;
+
+import com.market.TickResponse;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SubscriberQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(System.getenv("MARKET") + "." + SubscriberQueue.class.getSimpleName());
+
+    public enum OverflowPolicy {
+        CONFLATE, DISCONNECT;
+
+        public static OverflowPolicy of(String policy) {
+            return valueOf(policy.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final ServerCallStreamObserver<TickResponse> subscriber;
+    private final String goodName;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final int drainChunkSize;
+    private final Executor drainExecutor;
+
+    private final Deque<TickResponse> bootstrapTicks = new ArrayDeque<>();
+    private final Map<Long, TickResponse> pendingTicks = new LinkedHashMap<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private long bootstrapSequence;
+    private volatile boolean bootstrapped;
+    private volatile boolean closed;
+
+    public SubscriberQueue(ServerCallStreamObserver<TickResponse> subscriber, String goodName, int capacity,
+                           OverflowPolicy overflowPolicy, int drainChunkSize, Executor drainExecutor) {
+        this.subscriber = subscriber;
+        this.goodName = goodName;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.drainChunkSize = drainChunkSize;
+        this.drainExecutor = drainExecutor;
+
+        subscriber.setOnReadyHandler(this::scheduleDrain);
+    }
+
+    public ServerCallStreamObserver<TickResponse> getSubscriber() {
+        return subscriber;
+    }
+
+    public boolean isCancelled() {
+        return subscriber.isCancelled();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Starts streaming the snapshot ticks, followed by the queued live ticks that came after the
+     * snapshot sequence. Live ticks the snapshot already includes are dropped.
+     */
+    public void bootstrap(List<TickResponse> ticks, long sequence) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            bootstrapTicks.addAll(ticks);
+            bootstrapSequence = sequence;
+            pendingTicks.keySet().removeIf(tickSequence -> tickSequence <= sequence);
+            bootstrapped = true;
+        }
+        scheduleDrain();
+    }
+
+    public void offer(TickResponse tick, long tickSequence) {
+        boolean overflown = false;
+        synchronized (this) {
+            if (closed || bootstrapped && tickSequence <= bootstrapSequence) {
+                return;
+            }
+
+            // until the bootstrap has dropped the ticks it covers, every queued tick keeps its own sequence
+            if (pendingTicks.size() < capacity) {
+                pendingTicks.put(tickSequence, tick);
+            } else if (overflowPolicy == OverflowPolicy.CONFLATE && bootstrapped && conflatePendingTicks(tick, tickSequence)) {
+                LOGGER.debug("Conflated pending ticks of slow subscriber {}.", subscriber);
+            } else {
+                overflown = true;
+                closed = true;
+                pendingTicks.clear();
+            }
+        }
+
+        if (overflown) {
+            LOGGER.warn("Subscriber {} fell behind by more than {} ticks and was disconnected.", subscriber, capacity);
+            subscriber.onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription(subscriber + " could not keep up with product " + goodName)
+                    .asException());
+            return;
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Sums the pending ticks, and the new one, per price level. Ticks are quantity deltas, so the
+     * subscriber ends up with the same levels. Returns false when the levels still overflow.
+     */
+    private boolean conflatePendingTicks(TickResponse tick, long tickSequence) {
+        pendingTicks.put(tickSequence, tick);
+
+        Map<Double, Long> levelSequences = new HashMap<>();
+        Map<Long, TickResponse> conflatedTicks = new LinkedHashMap<>();
+        for (Map.Entry<Long, TickResponse> pendingTick : pendingTicks.entrySet()) {
+            TickResponse levelTick = pendingTick.getValue();
+            Long levelSequence = levelSequences.putIfAbsent(levelTick.getPrice(), pendingTick.getKey());
+            if (levelSequence == null) {
+                conflatedTicks.put(pendingTick.getKey(), levelTick);
+                continue;
+            }
+            TickResponse conflatedTick = conflatedTicks.get(levelSequence);
+            conflatedTicks.put(levelSequence, conflatedTick.toBuilder()
+                    .setQuantity(conflatedTick.getQuantity() + levelTick.getQuantity())
+                    .setTimestamp(levelTick.getTimestamp())
+                    .build());
+        }
+        conflatedTicks.values().removeIf(conflatedTick -> conflatedTick.getQuantity() == 0);
+
+        pendingTicks.clear();
+        pendingTicks.putAll(conflatedTicks);
+        return pendingTicks.size() <= capacity;
+    }
+
+    private void scheduleDrain() {
+        if (!closed && bootstrapped && drainScheduled.compareAndSet(false, true)) {
+            try {
+                drainExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainScheduled.set(false);
+                LOGGER.debug("Could not drain subscriber {}, subscriptions are shutting down.", subscriber);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            TickResponse tick;
+            int sentTicks = 0;
+            // a chunk at a time, so a long bootstrap does not hold up the other subscribers
+            while (!closed && sentTicks < drainChunkSize && subscriber.isReady() && (tick = pollPendingTick()) != null) {
+                subscriber.onNext(tick);
+                sentTicks++;
+            }
+        } catch (StatusRuntimeException e) {
+            closed = true;
+            LOGGER.debug("Subscriber {} unsubscribed.", subscriber);
+        } finally {
+            drainScheduled.set(false);
+        }
+
+        if (!closed && hasPendingTicks() && subscriber.isReady()) {
+            scheduleDrain();
+        }
+    }
+
+    private synchronized TickResponse pollPendingTick() {
+        if (!bootstrapTicks.isEmpty()) {
+            return bootstrapTicks.pollFirst();
+        }
+        Iterator<TickResponse> oldestTick = pendingTicks.values().iterator();
+        if (!oldestTick.hasNext()) {
+            return null;
+        }
+        TickResponse tick = oldestTick.next();
+        oldestTick.remove();
+        return tick;
+    }
+
+    private synchronized boolean hasPendingTicks() {
+        return !bootstrapTicks.isEmpty() || !pendingTicks.isEmpty();
+    }
+
+}
@@ -6,8 +6,8 @@ import io.grpc.stub.StreamObserver;
 
 public interface SubscriptionManager {
 
-    void subscribe(MarketDataRequest request, StreamObserver<TickResponse> responseObserver);
+    SubscriberQueue subscribe(MarketDataRequest request, StreamObserver<TickResponse> responseObserver);
 
-    void notifySubscribers(TickResponse response);
+    void notifySubscribers(TickResponse response, long sequence);
 
 }
@@ -9,15 +9,16 @@ import com.market.MarketServiceGrpc;
 import com.market.ProductBuySellRequest;
 import com.market.TickResponse;
 import com.market.banica.common.exception.ProductNotAvailableException;
+import com.market.banica.generator.model.MarketSnapshot;
 import com.market.banica.generator.model.MarketTick;
 import com.market.banica.generator.service.MarketState;
+import com.market.banica.generator.service.SubscriberQueue;
 import com.market.banica.generator.service.SubscriptionManager;
-import io.grpc.Status;
-import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Service;
 
@@ -40,18 +41,21 @@ public class MarketService extends MarketServiceGrpc.MarketServiceImplBase {
 
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
+    private final boolean compactedBootstrap;
+
     @Autowired
-    public MarketService(SubscriptionManager subscriptionManager, MarketState marketState) {
+    public MarketService(SubscriptionManager subscriptionManager, MarketState marketState,
+                         @Value("${market.bootstrap.compacted}") boolean compactedBootstrap) {
         this.subscriptionManager = subscriptionManager;
         this.marketState = marketState;
+        this.compactedBootstrap = compactedBootstrap;
     }
 
     @Override
     public void subscribeForItem(MarketDataRequest request, StreamObserver<TickResponse> responseObserver) {
-        boolean hasSuccessfulBootstrap = bootstrapGeneratedTicks(request, responseObserver);
-        if (hasSuccessfulBootstrap) {
-            subscriptionManager.subscribe(request, responseObserver);
-        }
+        SubscriberQueue subscriber = subscriptionManager.subscribe(request, responseObserver);
+        MarketSnapshot snapshot = marketState.snapshotMarketTicks(request.getGoodName(), compactedBootstrap);
+        subscriber.bootstrap(snapshot.getTicks(), snapshot.getSequence());
     }
 
     @Override
@@ -170,19 +174,4 @@ public class MarketService extends MarketServiceGrpc.MarketServiceImplBase {
         MarketTick newMarketTick = new MarketTick(itemName, tick.getQuantity() + itemQuantity, itemPrice, timestamp);
         pendingOrders.get(itemName).put(itemPrice, newMarketTick);
     }
-
-    private boolean bootstrapGeneratedTicks(MarketDataRequest request, StreamObserver<TickResponse> responseStreamObserver) {
-        String goodName = request.getGoodName();
-        ServerCallStreamObserver<TickResponse> cancellableSubscriber = (ServerCallStreamObserver<TickResponse>) responseStreamObserver;
-        for (TickResponse tick : marketState.generateMarketTicks(goodName)) {
-            if (cancellableSubscriber.isCancelled()) {
-                responseStreamObserver.onError(Status.CANCELLED
-                        .withDescription(responseStreamObserver + " has stopped requesting product " + goodName)
-                        .asException());
-                return false;
-            }
-            responseStreamObserver.onNext(tick);
-        }
-        return true;
-    }
 }
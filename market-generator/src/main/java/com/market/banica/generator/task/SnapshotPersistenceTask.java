@@ -1,43 +1,42 @@
 package com.market.banica.generator.task;
 
-import com.market.banica.generator.model.MarketTick;
+import com.market.banica.generator.model.MarketStateCheckpoint;
 import com.market.banica.generator.util.SnapshotPersistence;
 import lombok.EqualsAndHashCode;
 import lombok.SneakyThrows;
 
-import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
 import java.util.TimerTask;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Supplier;
 
 @EqualsAndHashCode(callSuper = false)
 public class SnapshotPersistenceTask extends TimerTask {
 
     private final ReadWriteLock marketDataLock;
     private final SnapshotPersistence snapshotPersistence;
-    private final Map<String, Set<MarketTick>> marketState;
-    private final Queue<MarketTick> marketSnapshot;
+    private final Supplier<MarketStateCheckpoint> marketStateCapture;
 
     public SnapshotPersistenceTask(ReadWriteLock marketDataLock,
                                    SnapshotPersistence snapshotPersistence,
-                                   Map<String, Set<MarketTick>> marketState,
-                                   Queue<MarketTick> marketSnapshot) {
+                                   Supplier<MarketStateCheckpoint> marketStateCapture) {
         this.marketDataLock = marketDataLock;
         this.snapshotPersistence = snapshotPersistence;
-        this.marketState = marketState;
-        this.marketSnapshot = marketSnapshot;
+        this.marketStateCapture = marketStateCapture;
     }
 
     @SneakyThrows
     @Override
     public void run() {
+        MarketStateCheckpoint capturedMarketState;
+        long firstKeptSegment;
         try {
             marketDataLock.readLock().lock();
-            snapshotPersistence.persistMarketState(marketState, marketSnapshot);
+            capturedMarketState = marketStateCapture.get();
+            firstKeptSegment = snapshotPersistence.rollJournal();
         } finally {
             marketDataLock.readLock().unlock();
         }
+        snapshotPersistence.persistMarketState(capturedMarketState, firstKeptSegment);
     }
 
 }
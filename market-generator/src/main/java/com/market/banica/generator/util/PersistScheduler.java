@@ -1,16 +1,14 @@
 package com.market.banica.generator.util;
 
-import com.market.banica.generator.model.MarketTick;
+import com.market.banica.generator.model.MarketStateCheckpoint;
 import com.market.banica.generator.task.SnapshotPersistenceTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
 import java.util.Timer;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Supplier;
 
 public class PersistScheduler {
 
@@ -23,17 +21,14 @@ public class PersistScheduler {
 
     private final ReadWriteLock marketDataLock;
     private final SnapshotPersistence snapshotPersistence;
-    private final Map<String, Set<MarketTick>> marketState;
-    private final Queue<MarketTick> marketSnapshot;
+    private final Supplier<MarketStateCheckpoint> marketStateCapture;
 
     public PersistScheduler(ReadWriteLock marketDataLock,
                             SnapshotPersistence snapshotPersistence,
-                            Map<String, Set<MarketTick>> marketState,
-                            Queue<MarketTick> marketSnapshot) {
+                            Supplier<MarketStateCheckpoint> marketStateCapture) {
         this.marketDataLock = marketDataLock;
         this.snapshotPersistence = snapshotPersistence;
-        this.marketState = marketState;
-        this.marketSnapshot = marketSnapshot;
+        this.marketStateCapture = marketStateCapture;
     }
 
     public void setFrequency(int frequency) {
@@ -59,7 +54,7 @@ public class PersistScheduler {
     public synchronized void scheduleSnapshot() {
 
         this.currentSnapshotPersistenceTask = new SnapshotPersistenceTask(marketDataLock,
-                snapshotPersistence, marketState, marketSnapshot);
+                snapshotPersistence, marketStateCapture);
 
         persistTimer.scheduleAtFixedRate(currentSnapshotPersistenceTask,
                 TimeUnit.SECONDS.toMillis(frequencySchedule),
@@ -4,60 +4,84 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.market.banica.common.util.ApplicationDirectoryUtil;
+import com.market.banica.generator.model.MarketStateCheckpoint;
 import com.market.banica.generator.model.MarketTick;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
 
 public class SnapshotPersistence {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(System.getenv("MARKET") + "." + SnapshotPersistence.class.getSimpleName());
 
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
     private final String stateFileName;
     private final String snapshotFileName;
+    private final TickJournal tickJournal;
 
     private final Kryo kryoHandle = new Kryo();
 
-    public SnapshotPersistence(String stateFileName, String snapshotFileName) {
+    private long checkpointSequence = -1;
+
+    public SnapshotPersistence(String stateFileName, String snapshotFileName, TickJournal tickJournal) {
         initKryo();
         this.stateFileName = stateFileName;
         this.snapshotFileName = snapshotFileName;
+        this.tickJournal = tickJournal;
+    }
+
+    public long rollJournal() throws IOException {
+
+        return tickJournal.rollSegment();
+
     }
 
-    public void persistMarketState(Map<String, Set<MarketTick>> marketState, Queue<MarketTick> marketSnapshot) throws IOException {
+    public void persistMarketState(MarketStateCheckpoint checkpoint, long firstKeptSegment) throws IOException {
 
-        Output output = new Output(new FileOutputStream(ApplicationDirectoryUtil.getConfigFile(stateFileName)));
-        kryoHandle.writeClassAndObject(output, marketState);
-        output.close();
+        File stateFile = ApplicationDirectoryUtil.getConfigFile(stateFileName);
+        File tempStateFile = ApplicationDirectoryUtil.getConfigFile(stateFileName + TEMP_FILE_SUFFIX);
+
+        try (FileOutputStream stateStream = new FileOutputStream(tempStateFile);
+             Output output = new Output(stateStream)) {
+            kryoHandle.writeClassAndObject(output, checkpoint);
+            output.flush();
+            stateStream.getFD().sync();
+        }
+        Files.move(tempStateFile.toPath(), stateFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         LOGGER.debug("Persisting market state!");
 
-        marketSnapshot.clear();
-        persistMarketSnapshot(marketSnapshot);
+        tickJournal.deleteSegmentsBefore(firstKeptSegment);
 
     }
 
-    public void persistMarketSnapshot(Queue<MarketTick> marketSnapshot) throws IOException {
+    public void appendMarketTick(long sequence, MarketTick marketTick) throws IOException {
 
-        Output output = new Output(new FileOutputStream(ApplicationDirectoryUtil.getConfigFile(snapshotFileName)));
-        kryoHandle.writeClassAndObject(output, marketSnapshot);
-        output.close();
-        LOGGER.debug("Persisting market snapshot!");
+        tickJournal.append(sequence, marketTick);
 
     }
 
+    /**
+     * Loads the last checkpoint, one tick per price level, and adds the journaled ticks that came
+     * after it. Ticks are matched to the checkpoint by their journal sequence number.
+     */
     @SuppressWarnings({"unchecked"})
-    public Map<String, Set<MarketTick>> loadMarketState(Queue<MarketTick> marketSnapshot) throws IOException {
+    public Map<String, List<MarketTick>> loadMarketState() throws IOException {
 
-        Map<String, Set<MarketTick>> loadedMarketStateTicks = new ConcurrentHashMap<>();
+        Map<String, List<MarketTick>> loadedMarketStateTicks = new ConcurrentHashMap<>();
 
         if (!ApplicationDirectoryUtil.doesFileExist(stateFileName)) {
 
@@ -71,45 +95,70 @@ public class SnapshotPersistence {
         } else {
 
             Input input = new Input(new FileInputStream(ApplicationDirectoryUtil.getConfigFile(stateFileName)));
-            loadedMarketStateTicks = (Map<String, Set<MarketTick>>) kryoHandle.readClassAndObject(input);
+            Object state = kryoHandle.readClassAndObject(input);
             input.close();
+            if (state instanceof MarketStateCheckpoint) {
+                MarketStateCheckpoint checkpoint = (MarketStateCheckpoint) state;
+                checkpointSequence = checkpoint.getSequence();
+                checkpoint.getLevels().forEach((good, levels) -> levels.forEach((price, quantity) ->
+                        loadedMarketStateTicks.computeIfAbsent(good, ticks -> new ArrayList<>())
+                                .add(new MarketTick(good, quantity, price, checkpoint.getTimestamp()))));
+            } else {
+                ((Map<String, Set<MarketTick>>) state).forEach((good, ticks) ->
+                        loadedMarketStateTicks.put(good, new ArrayList<>(ticks)));
+            }
             LOGGER.info("Loaded market state ticks!");
 
         }
 
-        for (MarketTick currentTick : marketSnapshot) {
-            String good = currentTick.getGood();
-            loadedMarketStateTicks.putIfAbsent(good, new TreeSet<>());
-            loadedMarketStateTicks.get(good).add(currentTick);
+        for (MarketTick currentTick : loadMarketSnapshot()) {
+            loadedMarketStateTicks.computeIfAbsent(currentTick.getGood(), ticks -> new ArrayList<>()).add(currentTick);
         }
 
         return loadedMarketStateTicks;
 
     }
 
-    @SuppressWarnings({"unchecked"})
-    public Queue<MarketTick> loadMarketSnapshot() throws IOException {
+    public List<MarketTick> loadMarketSnapshot() throws IOException {
 
-        Queue<MarketTick> loadedSnapshotTicks = new LinkedBlockingQueue<>();
+        List<MarketTick> loadedSnapshotTicks = tickJournal.replay(checkpointSequence);
 
-        if (!ApplicationDirectoryUtil.doesFileExist(snapshotFileName)) {
+        if (ApplicationDirectoryUtil.doesFileExist(snapshotFileName)
+                && ApplicationDirectoryUtil.getConfigFile(snapshotFileName).length() > 0) {
+            migrateSnapshotFile(loadedSnapshotTicks);
+        }
+        return loadedSnapshotTicks;
 
-            LOGGER.info("Creating \"{}\" file!", snapshotFileName);
-            ApplicationDirectoryUtil.getConfigFile(snapshotFileName);
+    }
 
-        } else if (ApplicationDirectoryUtil.getConfigFile(snapshotFileName).length() == 0) {
+    public long getLastSequence() {
 
-            LOGGER.info("File \"{}\" is empty, no ticks were loaded!", snapshotFileName);
+        return Math.max(checkpointSequence, tickJournal.getLastSequence());
 
-        } else {
+    }
 
-            Input input = new Input(new FileInputStream(ApplicationDirectoryUtil.getConfigFile(snapshotFileName)));
-            loadedSnapshotTicks = (Queue<MarketTick>) kryoHandle.readClassAndObject(input);
-            input.close();
-            LOGGER.info("Loaded snapshot database!");
+    public void close() {
+
+        tickJournal.close();
+
+    }
 
+    @SuppressWarnings({"unchecked"})
+    private void migrateSnapshotFile(List<MarketTick> loadedSnapshotTicks) throws IOException {
+
+        File snapshotFile = ApplicationDirectoryUtil.getConfigFile(snapshotFileName);
+        Queue<MarketTick> snapshotTicks;
+        try (Input input = new Input(new FileInputStream(snapshotFile))) {
+            snapshotTicks = (Queue<MarketTick>) kryoHandle.readClassAndObject(input);
         }
-        return loadedSnapshotTicks;
+
+        for (MarketTick snapshotTick : snapshotTicks) {
+            tickJournal.append(getLastSequence() + 1, snapshotTick);
+            loadedSnapshotTicks.add(snapshotTick);
+        }
+        tickJournal.sync();
+        new FileOutputStream(snapshotFile).close();
+        LOGGER.info("Moved {} ticks of snapshot database into the tick journal!", snapshotTicks.size());
 
     }
 
@@ -119,7 +168,9 @@ public class SnapshotPersistence {
         kryoHandle.register(java.util.TreeSet.class);
         kryoHandle.register(java.util.concurrent.LinkedBlockingQueue.class);
         kryoHandle.register(MarketTick.class);
+        kryoHandle.register(MarketStateCheckpoint.class);
+        kryoHandle.register(java.util.TreeMap.class);
 
     }
 
-}
\ No newline at end of file
+}
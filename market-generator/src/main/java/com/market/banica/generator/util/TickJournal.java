@@ -0,0 +1,337 @@
+package com.market.banica.generator.util;
+
+import com.market.banica.common.util.ApplicationDirectoryUtil;
+import com.market.banica.generator.model.MarketTick;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+public class TickJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(System.getenv("MARKET") + "." + TickJournal.class.getSimpleName());
+
+    private static final int SEGMENT_MAGIC = 0x544A4E32;
+    private static final int SEGMENT_HEADER_SIZE = Integer.BYTES;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES;
+    private static final int RECORD_CHECKSUM_SIZE = Long.BYTES;
+    private static final int TICK_SIZE = Long.BYTES + Short.BYTES + 2 * Long.BYTES + Double.BYTES;
+
+    public enum FsyncPolicy {
+        ALWAYS, GROUP, NONE;
+
+        public static FsyncPolicy of(String policy) {
+            return valueOf(policy.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final String journalFileName;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final int groupCommitRecords;
+    private final long groupCommitMillis;
+    private final ExecutorService groupCommitExecutor;
+    private final Semaphore groupCommitRequests = new Semaphore(0);
+    private final Object syncLock = new Object();
+
+    private long segmentNumber = -1;
+    private MappedByteBuffer segmentBuffer;
+    private final List<MappedByteBuffer> unsyncedSegments = new ArrayList<>();
+    private int pendingRecords;
+    private long lastSequence = -1;
+
+    public TickJournal(String journalFileName, int segmentSize, FsyncPolicy fsyncPolicy,
+                       int groupCommitRecords, long groupCommitMillis) {
+        this.journalFileName = journalFileName;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.groupCommitRecords = groupCommitRecords;
+        this.groupCommitMillis = groupCommitMillis;
+
+        if (fsyncPolicy == FsyncPolicy.GROUP) {
+            this.groupCommitExecutor = Executors.newSingleThreadExecutor();
+            this.groupCommitExecutor.execute(this::commitGroups);
+        } else {
+            this.groupCommitExecutor = null;
+        }
+    }
+
+    public List<MarketTick> replay() throws IOException {
+
+        return replay(-1);
+
+    }
+
+    /**
+     * Replays the ticks journaled with a sequence number above the given one. Each segment is read up
+     * to its first invalid record and new ticks go to a fresh segment, so nothing is ever appended
+     * behind a torn record.
+     */
+    public synchronized List<MarketTick> replay(long afterSequence) throws IOException {
+
+        List<MarketTick> journaledTicks = new ArrayList<>();
+        TreeMap<Long, File> segments = listSegments();
+        for (File segment : segments.values()) {
+            readSegment(segment, afterSequence, journaledTicks);
+        }
+
+        openSegment(segments.isEmpty() ? 0 : segments.lastKey() + 1);
+        LOGGER.info("Replayed {} journaled ticks from {} segments!", journaledTicks.size(), segments.size());
+        return journaledTicks;
+
+    }
+
+    public synchronized long getLastSequence() {
+
+        return lastSequence;
+
+    }
+
+    public synchronized void append(long sequence, MarketTick marketTick) throws IOException {
+
+        byte[] good = marketTick.getGood().getBytes(StandardCharsets.UTF_8);
+        int payloadSize = TICK_SIZE + good.length;
+        int recordSize = RECORD_HEADER_SIZE + payloadSize + RECORD_CHECKSUM_SIZE;
+        if (recordSize > segmentSize - SEGMENT_HEADER_SIZE) {
+            throw new IOException("Tick of " + marketTick.getGood() + " does not fit in a journal segment!");
+        }
+
+        if (segmentBuffer == null) {
+            openNextSegment();
+        }
+        if (segmentBuffer.remaining() < recordSize) {
+            openSegment(segmentNumber + 1);
+        }
+
+        int payloadStart = segmentBuffer.position() + RECORD_HEADER_SIZE;
+        segmentBuffer.putInt(payloadSize);
+        segmentBuffer.putLong(sequence);
+        segmentBuffer.putShort((short) good.length);
+        segmentBuffer.put(good);
+        segmentBuffer.putLong(marketTick.getQuantity());
+        segmentBuffer.putDouble(marketTick.getPrice());
+        segmentBuffer.putLong(marketTick.getTimestamp());
+        segmentBuffer.putLong(checksum(segmentBuffer, payloadStart, payloadSize));
+        lastSequence = sequence;
+
+        pendingRecords++;
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            segmentBuffer.force();
+            pendingRecords = 0;
+        } else if (fsyncPolicy == FsyncPolicy.GROUP && pendingRecords == groupCommitRecords) {
+            groupCommitRequests.release();
+        }
+
+    }
+
+    /**
+     * Forces the records appended so far to disk. Appends are not blocked while the pages are written.
+     */
+    public void sync() {
+
+        synchronized (syncLock) {
+            List<MappedByteBuffer> buffers;
+            synchronized (this) {
+                buffers = new ArrayList<>(unsyncedSegments);
+                unsyncedSegments.clear();
+                if (pendingRecords > 0 && segmentBuffer != null) {
+                    buffers.add(segmentBuffer);
+                    pendingRecords = 0;
+                }
+            }
+            for (MappedByteBuffer buffer : buffers) {
+                buffer.force();
+            }
+        }
+
+    }
+
+    public synchronized long rollSegment() throws IOException {
+
+        if (segmentBuffer == null) {
+            openNextSegment();
+        }
+        if (segmentBuffer.position() > SEGMENT_HEADER_SIZE) {
+            openSegment(segmentNumber + 1);
+        }
+        return segmentNumber;
+
+    }
+
+    public synchronized void deleteSegmentsBefore(long firstKeptSegment) throws IOException {
+
+        for (File segment : listSegments().headMap(firstKeptSegment).values()) {
+            if (!segment.delete()) {
+                LOGGER.warn("Could not delete journal segment \"{}\"!", segment.getName());
+            }
+        }
+
+    }
+
+    public void close() {
+
+        if (groupCommitExecutor != null) {
+            groupCommitExecutor.shutdownNow();
+        }
+        sync();
+        synchronized (this) {
+            if (segmentBuffer != null) {
+                segmentBuffer.force();
+            }
+        }
+
+    }
+
+    private void commitGroups() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (groupCommitMillis > 0) {
+                    groupCommitRequests.tryAcquire(groupCommitMillis, TimeUnit.MILLISECONDS);
+                } else {
+                    groupCommitRequests.acquire();
+                }
+                groupCommitRequests.drainPermits();
+                syncQuietly();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not sync tick journal due to: {}", e.getMessage());
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        TreeMap<Long, File> segments = listSegments();
+        openSegment(segments.isEmpty() ? 0 : segments.lastKey() + 1);
+    }
+
+    private void openSegment(long number) throws IOException {
+
+        if (segmentBuffer != null && pendingRecords > 0) {
+            // the rolled segment is forced by the next sync, never by the appending thread
+            if (fsyncPolicy == FsyncPolicy.GROUP) {
+                unsyncedSegments.add(segmentBuffer);
+                groupCommitRequests.release();
+            }
+            pendingRecords = 0;
+        }
+        File segment = ApplicationDirectoryUtil.getConfigFile(segmentFileName(number));
+        try (RandomAccessFile segmentAccess = new RandomAccessFile(segment, "rw");
+             FileChannel segmentChannel = segmentAccess.getChannel()) {
+            segmentAccess.setLength(segmentSize);
+            segmentBuffer = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segmentNumber = number;
+
+        segmentBuffer.putInt(0, SEGMENT_MAGIC);
+        segmentBuffer.position(SEGMENT_HEADER_SIZE);
+
+    }
+
+    private void readSegment(File segment, long afterSequence, List<MarketTick> journaledTicks) throws IOException {
+
+        try (RandomAccessFile segmentAccess = new RandomAccessFile(segment, "r");
+             FileChannel segmentChannel = segmentAccess.getChannel()) {
+            if (segmentChannel.size() < SEGMENT_HEADER_SIZE) {
+                return;
+            }
+            MappedByteBuffer buffer = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+            if (buffer.getInt(0) != SEGMENT_MAGIC) {
+                LOGGER.warn("Journal segment \"{}\" has no valid header and will be ignored!", segment.getName());
+                return;
+            }
+
+            int endOfRecords = endOfRecords(buffer);
+            buffer.position(SEGMENT_HEADER_SIZE);
+            while (buffer.position() < endOfRecords) {
+                buffer.getInt();
+                long sequence = buffer.getLong();
+                byte[] good = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(good);
+                long quantity = buffer.getLong();
+                double price = buffer.getDouble();
+                long timestamp = buffer.getLong();
+                buffer.getLong();
+                lastSequence = Math.max(lastSequence, sequence);
+                if (sequence > afterSequence) {
+                    journaledTicks.add(new MarketTick(new String(good, StandardCharsets.UTF_8), quantity, price, timestamp));
+                }
+            }
+        }
+
+    }
+
+    private int endOfRecords(ByteBuffer buffer) {
+
+        int position = SEGMENT_HEADER_SIZE;
+        long previousSequence = Long.MIN_VALUE;
+        while (buffer.limit() - position >= RECORD_HEADER_SIZE) {
+            int payloadSize = buffer.getInt(position);
+            int payloadStart = position + RECORD_HEADER_SIZE;
+            if (payloadSize < TICK_SIZE || buffer.limit() - payloadStart < payloadSize + RECORD_CHECKSUM_SIZE
+                    || buffer.getLong(payloadStart) <= previousSequence
+                    || buffer.getLong(payloadStart + payloadSize) != checksum(buffer, payloadStart, payloadSize)) {
+                break;
+            }
+            previousSequence = buffer.getLong(payloadStart);
+            position = payloadStart + payloadSize + RECORD_CHECKSUM_SIZE;
+        }
+        return position;
+
+    }
+
+    private TreeMap<Long, File> listSegments() throws IOException {
+
+        File journalFile = ApplicationDirectoryUtil.getConfigFile(journalFileName);
+        String segmentPrefix = journalFile.getName() + ".";
+        File[] files = journalFile.getAbsoluteFile().getParentFile().listFiles();
+
+        TreeMap<Long, File> segments = new TreeMap<>();
+        if (files != null) {
+            for (File file : files) {
+                String suffix = file.getName().startsWith(segmentPrefix) ? file.getName().substring(segmentPrefix.length()) : "";
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    segments.put(Long.parseLong(suffix), file);
+                }
+            }
+        }
+        return segments;
+
+    }
+
+    private String segmentFileName(long number) {
+        return String.format("%s.%06d", journalFileName, number);
+    }
+
+    private long checksum(ByteBuffer buffer, int offset, int length) {
+
+        ByteBuffer checksummedBytes = buffer.duplicate();
+        checksummedBytes.limit(offset + length).position(offset);
+        CRC32 crc = new CRC32();
+        crc.update(checksummedBytes);
+        return crc.getValue();
+
+    }
+
+}
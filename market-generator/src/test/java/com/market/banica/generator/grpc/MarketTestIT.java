@@ -32,10 +32,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Set;
+import java.util.NavigableMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
@@ -80,8 +79,8 @@ public class MarketTestIT {
     @BeforeEach
     public void setup() {
 
-        ReflectionTestUtils.setField(marketState, "marketState", new ConcurrentHashMap<String, Set<MarketTick>>());
-        ReflectionTestUtils.setField(marketState, "marketSnapshot", new LinkedBlockingQueue<MarketTick>());
+        ReflectionTestUtils.setField(marketState, "marketState", new ConcurrentHashMap<String, List<MarketTick>>());
+        ReflectionTestUtils.setField(marketState, "availableQuantities", new ConcurrentHashMap<String, NavigableMap<Double, Long>>());
 
         marketName = InProcessServerBuilder.generateName();
         marketChannel = InProcessChannelBuilder
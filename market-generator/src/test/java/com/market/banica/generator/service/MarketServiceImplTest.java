@@ -8,6 +8,7 @@ import com.market.MarketDataRequest;
 import com.market.ProductBuySellRequest;
 import com.market.TickResponse;
 import com.market.banica.common.exception.ProductNotAvailableException;
+import com.market.banica.generator.model.MarketSnapshot;
 import com.market.banica.generator.model.MarketTick;
 import com.market.banica.generator.service.grpc.MarketService;
 import io.grpc.Status;
@@ -15,12 +16,13 @@ import io.grpc.stub.ServerCallStreamObserver;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -29,6 +31,7 @@ import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -43,7 +46,9 @@ class MarketServiceImplTest {
     @Mock
     private MarketState marketState;
 
-    @InjectMocks
+    @Mock
+    private SubscriberQueue subscriberQueue;
+
     private MarketService marketService;
 
     private final String GOOD_BANICA = "banica";
@@ -58,6 +63,7 @@ class MarketServiceImplTest {
 
     @BeforeEach
     public void setUpPendingOrders() {
+        marketService = new MarketService(marketSubscriptionServiceImpl, marketState, false);
         ReflectionTestUtils.setField(marketService, "pendingOrders", pendingOrders);
     }
 
@@ -85,38 +91,31 @@ class MarketServiceImplTest {
 
         List<TickResponse> ticks = Arrays.asList(tick1, tick2);
 
-        when(marketState.generateMarketTicks(GOOD_BANICA)).thenReturn(ticks);
+        when(marketSubscriptionServiceImpl.subscribe(MARKET_DATA_REQUEST, subscriberSubscribe)).thenReturn(subscriberQueue);
+        when(marketState.snapshotMarketTicks(GOOD_BANICA, false)).thenReturn(new MarketSnapshot(7, ticks));
 
         marketService.subscribeForItem(MARKET_DATA_REQUEST, subscriberSubscribe);
 
-        verify(marketSubscriptionServiceImpl, times(1))
-                .subscribe(MARKET_DATA_REQUEST, subscriberSubscribe);
-        verify(marketState, times(1)).generateMarketTicks(GOOD_BANICA);
-        verify(subscriberSubscribe, times(1)).onNext(tick1);
-        verify(subscriberSubscribe, times(1)).onNext(tick2);
+        verify(marketState, times(1)).snapshotMarketTicks(GOOD_BANICA, false);
+        verify(subscriberQueue, times(1)).bootstrap(ticks, 7);
 
     }
 
     @Test
-    void subscribe_StreamCancelled_BootstrapFailAndNoAddedSubscriber() {
-        TickResponse tick1 = TickResponse.newBuilder()
-                .setGoodName(GOOD_BANICA)
-                .build();
-        TickResponse tick2 = TickResponse.newBuilder()
-                .setGoodName(GOOD_BANICA)
-                .build();
+    void subscribe_RegistersSubscriberBeforeSnapshot() {
+        TickResponse level = TickResponse.newBuilder().setGoodName(GOOD_BANICA).setPrice(PRICE_1).build();
+        MarketService compactedMarketService = new MarketService(marketSubscriptionServiceImpl, marketState, true);
 
-        List<TickResponse> ticks = Arrays.asList(tick1, tick2);
+        when(marketSubscriptionServiceImpl.subscribe(MARKET_DATA_REQUEST, subscriberSubscribe)).thenReturn(subscriberQueue);
+        when(marketState.snapshotMarketTicks(GOOD_BANICA, true))
+                .thenReturn(new MarketSnapshot(3, Collections.singletonList(level)));
 
-        when(marketState.generateMarketTicks(GOOD_BANICA)).thenReturn(ticks);
-        when(subscriberSubscribe.isCancelled()).thenReturn(true);
-
-        marketService.subscribeForItem(MARKET_DATA_REQUEST, subscriberSubscribe);
+        compactedMarketService.subscribeForItem(MARKET_DATA_REQUEST, subscriberSubscribe);
 
-        verify(marketSubscriptionServiceImpl, times(0)).subscribe(MARKET_DATA_REQUEST, subscriberSubscribe);
-        verify(marketState, times(1)).generateMarketTicks(GOOD_BANICA);
-        verify(subscriberSubscribe, times(0)).onNext(tick1);
-        verify(subscriberSubscribe, times(0)).onNext(tick2);
+        InOrder inOrder = inOrder(marketSubscriptionServiceImpl, marketState, subscriberQueue);
+        inOrder.verify(marketSubscriptionServiceImpl).subscribe(MARKET_DATA_REQUEST, subscriberSubscribe);
+        inOrder.verify(marketState).snapshotMarketTicks(GOOD_BANICA, true);
+        inOrder.verify(subscriberQueue).bootstrap(Collections.singletonList(level), 3);
 
     }
 
@@ -5,6 +5,8 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.market.TickResponse;
 import com.market.banica.common.exception.ProductNotAvailableException;
 import com.market.banica.common.util.ApplicationDirectoryUtil;
+import com.market.banica.generator.model.MarketSnapshot;
+import com.market.banica.generator.model.MarketStateCheckpoint;
 import com.market.banica.generator.model.MarketTick;
 import com.market.banica.generator.util.PersistScheduler;
 import com.market.banica.generator.util.SnapshotPersistence;
@@ -18,19 +20,20 @@ import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
-import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -43,9 +46,7 @@ class MarketStateImplTest {
 
     private static final MarketSubscriptionManager subscriptionManager = mock(MarketSubscriptionManager.class);
     @SuppressWarnings("unchecked")
-    private static final Map<String, Set<MarketTick>> marketStateMap = mock(Map.class);
-    @SuppressWarnings("unchecked")
-    private static final Queue<MarketTick> marketSnapshot = mock(Queue.class);
+    private static final Map<String, List<MarketTick>> marketStateMap = mock(Map.class);
     private static final PersistScheduler persistScheduler = mock(PersistScheduler.class);
     private static final SnapshotPersistence snapshotPersistence = mock(SnapshotPersistence.class);
 
@@ -57,9 +58,8 @@ class MarketStateImplTest {
     @BeforeAll
     static void beforeAll() throws IOException {
 
-        marketState = new MarketStateImpl(stateFileName, snapshotFileName, subscriptionManager);
+        marketState = new MarketStateImpl(stateFileName, snapshotFileName, 65536, "none", 64, 0, subscriptionManager);
         ReflectionTestUtils.setField(marketState, "marketState", marketStateMap);
-        ReflectionTestUtils.setField(marketState, "marketSnapshot", marketSnapshot);
         ReflectionTestUtils.setField(marketState, "executorService", MoreExecutors.newDirectExecutorService());
         ReflectionTestUtils.setField(marketState, "persistScheduler", persistScheduler);
         ReflectionTestUtils.setField(marketState, "snapshotPersistence", snapshotPersistence);
@@ -75,6 +75,14 @@ class MarketStateImplTest {
         File testSnapshotFile = ApplicationDirectoryUtil.getConfigFile(snapshotFileName);
         testStateFile.deleteOnExit();
         testSnapshotFile.deleteOnExit();
+        File[] files = testSnapshotFile.getAbsoluteFile().getParentFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(testSnapshotFile.getName() + ".")) {
+                    file.deleteOnExit();
+                }
+            }
+        }
 
     }
 
@@ -84,9 +92,9 @@ class MarketStateImplTest {
 
         reset(subscriptionManager);
         reset(marketStateMap);
-        reset(marketSnapshot);
         reset(persistScheduler);
         reset(snapshotPersistence);
+        ReflectionTestUtils.setField(marketState, "availableQuantities", new ConcurrentHashMap<>());
 
     }
 
@@ -94,23 +102,58 @@ class MarketStateImplTest {
     void addTickToMarketSnapshot() throws IOException {
 
         MarketTick marketTick = mock(MarketTick.class);
-        TreeSet<MarketTick> emptySet = new TreeSet<>();
-        TreeSet<MarketTick> emptySetSpy = spy(emptySet);
+        List<MarketTick> marketTicks = new ArrayList<>();
 
         when(marketTick.getGood()).thenReturn(GOOD_BANICA);
-        when(marketStateMap.containsKey(GOOD_BANICA)).thenReturn(false);
-        when(marketStateMap.put(GOOD_BANICA, emptySet)).thenReturn(emptySet);
-        when(marketStateMap.get(GOOD_BANICA)).thenReturn(emptySetSpy);
+        when(marketStateMap.computeIfAbsent(eq(GOOD_BANICA), any())).thenReturn(marketTicks);
 
 
         marketState.addTickToMarket(marketTick);
 
 
-        verify(marketSnapshot, times(1)).add(marketTick);
-        verify(marketStateMap, times(1)).putIfAbsent(GOOD_BANICA, new TreeSet<>());
-        verify(emptySetSpy, times(1)).add(marketTick);
-        verify(snapshotPersistence, times(1)).persistMarketSnapshot(marketSnapshot);
-        verify(subscriptionManager, times(1)).notifySubscribers(convertMarketTickToTickResponse(marketTick));
+        assertEquals(Collections.singletonList(marketTick), marketTicks);
+        verify(snapshotPersistence, times(1)).appendMarketTick(anyLong(), eq(marketTick));
+        verify(subscriptionManager, times(1)).notifySubscribers(eq(convertMarketTickToTickResponse(marketTick)), anyLong());
+
+    }
+
+    @Test
+    void addTickToMarket_KeepsTicksWithTheSameTimestamp() {
+
+        Map<String, List<MarketTick>> liveMarketState = new ConcurrentHashMap<>();
+        ReflectionTestUtils.setField(marketState, "marketState", liveMarketState);
+
+        try {
+            marketState.addTickToMarket(new MarketTick(GOOD_BANICA, 2, 1, 5));
+            marketState.addTickToMarket(new MarketTick(GOOD_BANICA, 3, 2, 5));
+
+            assertEquals(2, liveMarketState.get(GOOD_BANICA).size());
+            assertEquals(2, marketState.generateMarketTicks(GOOD_BANICA).size());
+        } finally {
+            ReflectionTestUtils.setField(marketState, "marketState", marketStateMap);
+        }
+
+    }
+
+    @Test
+    void captureMarketState_CopiesPriceLevelsInsteadOfTicks() {
+
+        Map<String, List<MarketTick>> liveMarketState = new ConcurrentHashMap<>();
+        ReflectionTestUtils.setField(marketState, "marketState", liveMarketState);
+
+        try {
+            marketState.addTickToMarket(new MarketTick(GOOD_BANICA, 1, 1, 1));
+            marketState.addTickToMarket(new MarketTick(GOOD_BANICA, 4, 1, 2));
+            MarketStateCheckpoint captured = ReflectionTestUtils.invokeMethod(marketState, "captureMarketState");
+            marketState.addTickToMarket(new MarketTick(GOOD_BANICA, 2, 2, 3));
+            marketState.addTickToMarket(new MarketTick(GOOD_BANICA, 3, 1, 4));
+
+            assert captured != null;
+            assertEquals(Collections.singletonMap(1.0, 5L), captured.getLevels().get(GOOD_BANICA));
+            assertEquals(4, liveMarketState.get(GOOD_BANICA).size());
+        } finally {
+            ReflectionTestUtils.setField(marketState, "marketState", marketStateMap);
+        }
 
     }
 
@@ -122,9 +165,9 @@ class MarketStateImplTest {
         MarketTick marketTick3 = new MarketTick(GOOD_EGGS, 3, 3, 3);
         MarketTick marketTick4 = new MarketTick(GOOD_BANICA, 4, 4, 4);
 
-        Set<MarketTick> marketTicks = new TreeSet<>(Arrays.asList(marketTick1, marketTick2, marketTick3, marketTick4));
+        List<MarketTick> marketTicks = Arrays.asList(marketTick1, marketTick2, marketTick3, marketTick4);
 
-        when(marketStateMap.getOrDefault(GOOD_BANICA, new TreeSet<>()))
+        when(marketStateMap.getOrDefault(GOOD_BANICA, Collections.emptyList()))
                 .thenReturn(marketTicks);
 
         List<TickResponse> actual = Arrays.asList(convertMarketTickToTickResponse(marketTick1),
@@ -137,7 +180,53 @@ class MarketStateImplTest {
 
 
         assertEquals(actual, result);
-        verify(marketStateMap, times(1)).getOrDefault(GOOD_BANICA, new TreeSet<>());
+        verify(marketStateMap, times(1)).getOrDefault(GOOD_BANICA, Collections.emptyList());
+
+    }
+
+    @Test
+    void snapshotMarketTicks_Compacted_ReturnsNetQuantityPerPriceLevel() {
+
+        List<MarketTick> marketTicks = Arrays.asList(
+                new MarketTick(GOOD_BANICA, 5, 2, 1),
+                new MarketTick(GOOD_BANICA, 3, 1, 2),
+                new MarketTick(GOOD_BANICA, -3, 1, 3),
+                new MarketTick(GOOD_BANICA, 4, 3, 4),
+                new MarketTick(GOOD_BANICA, 2, 2, 5));
+        indexAvailableQuantities(marketTicks);
+        ReflectionTestUtils.setField(marketState, "tickSequence", 5L);
+
+        MarketSnapshot snapshot = marketState.snapshotMarketTicks(GOOD_BANICA, true);
+
+        assertEquals(5, snapshot.getSequence());
+        assertEquals(2, snapshot.getTicks().size());
+        assertEquals(2, snapshot.getTicks().get(0).getPrice());
+        assertEquals(7, snapshot.getTicks().get(0).getQuantity());
+        assertEquals(3, snapshot.getTicks().get(1).getPrice());
+        assertEquals(4, snapshot.getTicks().get(1).getQuantity());
+        assertEquals(Collections.emptyList(), marketState.snapshotMarketTicks(GOOD_EGGS, true).getTicks());
+
+    }
+
+    @Test
+    void snapshotMarketTicks_TakesSequenceOfTheLastAppliedTick() {
+
+        Map<String, List<MarketTick>> liveMarketState = new ConcurrentHashMap<>();
+        ReflectionTestUtils.setField(marketState, "marketState", liveMarketState);
+        ReflectionTestUtils.setField(marketState, "tickSequence", 0L);
+
+        try {
+            MarketTick marketTick = new MarketTick(GOOD_BANICA, 2, 1, 1);
+            marketState.addTickToMarket(marketTick);
+
+            MarketSnapshot snapshot = marketState.snapshotMarketTicks(GOOD_BANICA, false);
+
+            assertEquals(1, snapshot.getSequence());
+            assertEquals(Collections.singletonList(convertMarketTickToTickResponse(marketTick)), snapshot.getTicks());
+            verify(subscriptionManager, times(1)).notifySubscribers(convertMarketTickToTickResponse(marketTick), 1);
+        } finally {
+            ReflectionTestUtils.setField(marketState, "marketState", marketStateMap);
+        }
 
     }
 
@@ -148,16 +237,16 @@ class MarketStateImplTest {
         MarketTick marketTick2 = new MarketTick(GOOD_EGGS, 2, 1, 2);
         MarketTick marketTick3 = new MarketTick(GOOD_EGGS, 7, 1, 3);
 
-        Set<MarketTick> marketTicks = new TreeSet<>(Arrays.asList(marketTick1, marketTick2, marketTick3));
+        List<MarketTick> marketTicks = new ArrayList<>(Arrays.asList(marketTick1, marketTick2, marketTick3));
 
-        when(marketStateMap.get(GOOD_EGGS)).thenReturn(marketTicks);
+        when(marketStateMap.computeIfAbsent(eq(GOOD_EGGS), any())).thenReturn(marketTicks);
+        indexAvailableQuantities(marketTicks);
 
         marketState.removeItemFromState(GOOD_EGGS, 8, 1);
 
-        TreeSet<MarketTick> resultMap = (TreeSet<MarketTick>) marketStateMap.get(GOOD_EGGS);
-        long marketTicksQuantitySum = resultMap.stream().mapToLong(MarketTick::getQuantity).sum();
+        long marketTicksQuantitySum = marketTicks.stream().mapToLong(MarketTick::getQuantity).sum();
 
-        assertEquals(4, resultMap.size());
+        assertEquals(4, marketTicks.size());
         assertEquals(3, marketTicksQuantitySum);
 
     }
@@ -168,16 +257,16 @@ class MarketStateImplTest {
         MarketTick marketTick1 = new MarketTick(GOOD_EGGS, 7, 1, 1);
         MarketTick marketTick2 = new MarketTick(GOOD_EGGS, 8, 1, 2);
 
-        Set<MarketTick> marketTicks = new TreeSet<>(Arrays.asList(marketTick1, marketTick2));
+        List<MarketTick> marketTicks = new ArrayList<>(Arrays.asList(marketTick1, marketTick2));
 
-        when(marketStateMap.get(GOOD_EGGS)).thenReturn(marketTicks);
+        when(marketStateMap.computeIfAbsent(eq(GOOD_EGGS), any())).thenReturn(marketTicks);
+        indexAvailableQuantities(marketTicks);
 
         marketState.removeItemFromState(GOOD_EGGS, 5, 1);
 
-        Set<MarketTick> resultMap = marketStateMap.get(GOOD_EGGS);
-        long marketTicksQuantitySum = resultMap.stream().mapToLong(MarketTick::getQuantity).sum();
+        long marketTicksQuantitySum = marketTicks.stream().mapToLong(MarketTick::getQuantity).sum();
 
-        assertEquals(3, resultMap.size());
+        assertEquals(3, marketTicks.size());
         assertEquals(10, marketTicksQuantitySum);
 
     }
@@ -188,16 +277,16 @@ class MarketStateImplTest {
         MarketTick marketTick1 = new MarketTick(GOOD_EGGS, 2, 1, 1);
         MarketTick marketTick2 = new MarketTick(GOOD_EGGS, 2, 1, 2);
 
-        Set<MarketTick> marketTicks = new TreeSet<>(Arrays.asList(marketTick1, marketTick2));
+        List<MarketTick> marketTicks = new ArrayList<>(Arrays.asList(marketTick1, marketTick2));
 
-        when(marketStateMap.get(GOOD_EGGS)).thenReturn(marketTicks);
+        when(marketStateMap.computeIfAbsent(eq(GOOD_EGGS), any())).thenReturn(marketTicks);
+        indexAvailableQuantities(marketTicks);
 
         marketState.removeItemFromState(GOOD_EGGS, 4, 1);
 
-        Set<MarketTick> resultMap = marketStateMap.get(GOOD_EGGS);
-        long marketTicksQuantitySum = resultMap.stream().mapToLong(MarketTick::getQuantity).sum();
+        long marketTicksQuantitySum = marketTicks.stream().mapToLong(MarketTick::getQuantity).sum();
 
-        assertEquals(3, resultMap.size());
+        assertEquals(3, marketTicks.size());
         assertEquals(0, marketTicksQuantitySum);
 
     }
@@ -205,8 +294,6 @@ class MarketStateImplTest {
     @Test
     public void removeItemFromStateThrowsExceptionWhenRequestedItemIsNotAvailableOnMarket() {
 
-        when(marketStateMap.get(GOOD_EGGS)).thenReturn(Collections.emptySet());
-
         assertThrows(ProductNotAvailableException.class, () -> marketState.removeItemFromState(GOOD_EGGS, 8, 1));
 
     }
@@ -216,27 +303,53 @@ class MarketStateImplTest {
 
         MarketTick marketTick1 = new MarketTick(GOOD_EGGS, 7, 1, 1);
 
-        Set<MarketTick> marketTicks = new TreeSet<>(Collections.singletonList(marketTick1));
+        List<MarketTick> marketTicks = new ArrayList<>(Collections.singletonList(marketTick1));
 
-        when(marketStateMap.get(GOOD_EGGS)).thenReturn(marketTicks);
+        when(marketStateMap.computeIfAbsent(eq(GOOD_EGGS), any())).thenReturn(marketTicks);
+        indexAvailableQuantities(marketTicks);
 
         assertThrows(ProductNotAvailableException.class, () -> marketState.removeItemFromState(GOOD_EGGS, 8, 1));
 
     }
 
     @Test
-    public void addGoodToStateCreatesNewTreeSetWhenMarketStateDoesNotContainMarketTickWithGivenName() {
+    public void removeItemFromStateThrowsExceptionWhenRequestedPriceIsNotAvailableOnMarket() {
+
+        List<MarketTick> marketTicks = new ArrayList<>(Collections.singletonList(new MarketTick(GOOD_EGGS, 7, 2, 1)));
+
+        when(marketStateMap.computeIfAbsent(eq(GOOD_EGGS), any())).thenReturn(marketTicks);
+        indexAvailableQuantities(marketTicks);
+
+        assertThrows(ProductNotAvailableException.class, () -> marketState.removeItemFromState(GOOD_EGGS, 1, 1));
+
+    }
+
+    @Test
+    public void removeItemFromStateReservesQuantityBeforeTheNextRequest() throws ProductNotAvailableException {
+
+        List<MarketTick> marketTicks = new ArrayList<>(Collections.singletonList(new MarketTick(GOOD_EGGS, 7, 1, 1)));
+
+        when(marketStateMap.computeIfAbsent(eq(GOOD_EGGS), any())).thenReturn(marketTicks);
+        indexAvailableQuantities(marketTicks);
+
+        marketState.removeItemFromState(GOOD_EGGS, 5, 1);
+
+        assertThrows(ProductNotAvailableException.class, () -> marketState.removeItemFromState(GOOD_EGGS, 5, 1));
+
+    }
+
+    @Test
+    public void addGoodToStateCreatesNewTickListWhenMarketStateDoesNotContainMarketTickWithGivenName() {
 
         long quantity = 5;
         double price = 1.0;
+        List<MarketTick> marketTicks = new ArrayList<>();
 
-        when(marketStateMap.get(GOOD_EGGS)).thenReturn(new TreeSet<>());
+        when(marketStateMap.computeIfAbsent(eq(GOOD_EGGS), any())).thenReturn(marketTicks);
 
         marketState.addProductToMarketState(GOOD_EGGS, price, quantity);
 
-        TreeSet<MarketTick> expectedMarketTicks = (TreeSet<MarketTick>) marketStateMap.get(GOOD_EGGS);
-
-        assertEquals(1, expectedMarketTicks.size());
+        assertEquals(1, marketTicks.size());
 
     }
 
@@ -245,18 +358,16 @@ class MarketStateImplTest {
 
         MarketTick firstMarketTick = new MarketTick(GOOD_EGGS, 7, 2, 1);
 
-        Set<MarketTick> marketTickSet = new TreeSet<>();
-        marketTickSet.add(firstMarketTick);
+        List<MarketTick> marketTicks = new ArrayList<>();
+        marketTicks.add(firstMarketTick);
 
-        when(marketStateMap.get(GOOD_EGGS)).thenReturn(marketTickSet);
+        when(marketStateMap.computeIfAbsent(eq(GOOD_EGGS), any())).thenReturn(marketTicks);
 
         marketState.addProductToMarketState(GOOD_EGGS, 1, 8);
 
-        TreeSet<MarketTick> expectedMarketTicks = (TreeSet<MarketTick>) marketStateMap.get(GOOD_EGGS);
+        MarketTick availableMarketTick = marketTicks.get(0);
 
-        MarketTick availableMarketTick = expectedMarketTicks.first();
-
-        assertEquals(2, expectedMarketTicks.size());
+        assertEquals(2, marketTicks.size());
         assertEquals(7, availableMarketTick.getQuantity());
 
     }
@@ -268,6 +379,10 @@ class MarketStateImplTest {
 
     }
 
+    private void indexAvailableQuantities(List<MarketTick> marketTicks) {
+        marketTicks.forEach(marketTick -> ReflectionTestUtils.invokeMethod(marketState, "indexAvailableQuantity", marketTick));
+    }
+
     private TickResponse convertMarketTickToTickResponse(MarketTick marketTick) {
         return TickResponse.newBuilder()
                 .setOrigin(MarketTick.getOrigin())
@@ -1,20 +1,38 @@
 package com.market.banica.generator.service;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.market.MarketDataRequest;
 import com.market.Origin;
 import com.market.TickResponse;
 import io.grpc.Status;
+import io.grpc.StatusException;
 import io.grpc.StatusRuntimeException;
 import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
-
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -23,9 +41,10 @@ import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 class MarketSubscriptionManagerTest {
 
-    @InjectMocks
     private MarketSubscriptionManager marketSubscriptionManager;
 
+    private long tickSequence;
+
     @SuppressWarnings("unchecked")
     private final ServerCallStreamObserver<TickResponse> subscriberOne = mock(ServerCallStreamObserver.class);
     @SuppressWarnings("unchecked")
@@ -41,6 +60,13 @@ class MarketSubscriptionManagerTest {
             .setGoodName(GOOD_EGGS)
             .build();
 
+    @BeforeEach
+    void setUp() {
+
+        marketSubscriptionManager = createSubscriptionManager(2, "conflate");
+
+    }
+
     @Test
     void subscribe_SubscribesOnlySubscribersWithSameGoodName() {
 
@@ -52,9 +78,11 @@ class MarketSubscriptionManagerTest {
                 .setTimestamp(new Date().getTime())
                 .build();
 
-        marketSubscriptionManager.subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
-        marketSubscriptionManager.subscribe(MARKET_DATA_REQUEST_EGGS, subscriberTwo);
-        marketSubscriptionManager.notifySubscribers(tickResponse);
+        when(subscriberOne.isReady()).thenReturn(true);
+
+        subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
+        subscribe(MARKET_DATA_REQUEST_EGGS, subscriberTwo);
+        notifySubscribers(tickResponse);
 
         verify(subscriberOne, times(1)).onNext(tickResponse);
         verify(subscriberTwo, times(0)).onNext(tickResponse);
@@ -64,8 +92,10 @@ class MarketSubscriptionManagerTest {
     @Test
     void notifySubscribers_SpecificSubscriberToSpecificFood() {
 
-        marketSubscriptionManager.subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
-        marketSubscriptionManager.subscribe(MARKET_DATA_REQUEST_EGGS, subscriberTwo);
+        when(subscriberOne.isReady()).thenReturn(true);
+        when(subscriberTwo.isReady()).thenReturn(true);
+        subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
+        subscribe(MARKET_DATA_REQUEST_EGGS, subscriberTwo);
 
         TickResponse banicaTick = TickResponse.newBuilder()
                 .setOrigin(Origin.AMERICA)
@@ -84,8 +114,8 @@ class MarketSubscriptionManagerTest {
                 .build();
 
 
-        marketSubscriptionManager.notifySubscribers(banicaTick);
-        marketSubscriptionManager.notifySubscribers(eggsTick);
+        notifySubscribers(banicaTick);
+        notifySubscribers(eggsTick);
 
 
         verify(subscriberOne, times(1)).onNext(banicaTick);
@@ -98,7 +128,7 @@ class MarketSubscriptionManagerTest {
     @Test
     void notifySubscribers_StreamCancelled_ReturnOnErrorAndRemoveSubscriber() {
 
-        marketSubscriptionManager.subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
+        subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
         TickResponse banicaTick = TickResponse.newBuilder()
                 .setOrigin(Origin.AMERICA)
                 .setGoodName(GOOD_BANICA)
@@ -110,8 +140,8 @@ class MarketSubscriptionManagerTest {
         when(subscriberOne.isCancelled()).thenReturn(true);
 
 
-        marketSubscriptionManager.notifySubscribers(banicaTick);
-        marketSubscriptionManager.notifySubscribers(banicaTick);
+        notifySubscribers(banicaTick);
+        notifySubscribers(banicaTick);
 
 
         verify(subscriberOne, times(1)).isCancelled();
@@ -125,7 +155,7 @@ class MarketSubscriptionManagerTest {
     @Test
     void notifySubscribers_StreamThrowsRuntimeException_RemoveSubscriber() {
 
-        marketSubscriptionManager.subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
+        subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
 
         TickResponse banicaTick = TickResponse.newBuilder()
                 .setOrigin(Origin.AMERICA)
@@ -135,15 +165,237 @@ class MarketSubscriptionManagerTest {
                 .setTimestamp(new Date().getTime())
                 .build();
 
+        when(subscriberOne.isReady()).thenReturn(true);
         doThrow(StatusRuntimeException.class).when(subscriberOne).onNext(banicaTick);
 
 
-        marketSubscriptionManager.notifySubscribers(banicaTick);
-        marketSubscriptionManager.notifySubscribers(banicaTick);
+        notifySubscribers(banicaTick);
+        notifySubscribers(banicaTick);
 
 
         verify(subscriberOne, times(1)).onNext(banicaTick);
 
     }
 
-}
\ No newline at end of file
+    @Test
+    void notifySubscribers_SubscriberNotReady_QueuesTicksUntilOnReady() {
+
+        subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
+        Runnable onReadyHandler = captureOnReadyHandler(subscriberOne);
+        TickResponse firstTick = createBanicaTick(2.4, 10);
+        TickResponse secondTick = createBanicaTick(2.5, 3);
+
+        notifySubscribers(firstTick);
+        notifySubscribers(secondTick);
+
+        verify(subscriberOne, times(0)).onNext(any(TickResponse.class));
+
+        when(subscriberOne.isReady()).thenReturn(true);
+        onReadyHandler.run();
+
+        InOrder inOrder = inOrder(subscriberOne);
+        inOrder.verify(subscriberOne).onNext(firstTick);
+        inOrder.verify(subscriberOne).onNext(secondTick);
+
+    }
+
+    @Test
+    void notifySubscribers_ConflatePolicy_KeepsTicksApartBelowCapacity() {
+
+        subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
+        Runnable onReadyHandler = captureOnReadyHandler(subscriberOne);
+        TickResponse firstTick = createBanicaTick(2.4, 10);
+        TickResponse secondTick = createBanicaTick(2.4, -4);
+
+        notifySubscribers(firstTick);
+        notifySubscribers(secondTick);
+        when(subscriberOne.isReady()).thenReturn(true);
+        onReadyHandler.run();
+
+        InOrder inOrder = inOrder(subscriberOne);
+        inOrder.verify(subscriberOne).onNext(firstTick);
+        inOrder.verify(subscriberOne).onNext(secondTick);
+
+    }
+
+    @Test
+    void notifySubscribers_ConflatePolicy_SumsPendingTicksOfSamePriceLevelAtCapacity() {
+
+        subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
+        Runnable onReadyHandler = captureOnReadyHandler(subscriberOne);
+        TickResponse firstTick = createBanicaTick(2.4, 10);
+        TickResponse secondTick = createBanicaTick(2.5, 3);
+        TickResponse thirdTick = createBanicaTick(2.4, -4);
+
+        notifySubscribers(firstTick);
+        notifySubscribers(secondTick);
+        notifySubscribers(thirdTick);
+        when(subscriberOne.isReady()).thenReturn(true);
+        onReadyHandler.run();
+
+        InOrder inOrder = inOrder(subscriberOne);
+        inOrder.verify(subscriberOne).onNext(firstTick.toBuilder()
+                .setQuantity(6)
+                .setTimestamp(thirdTick.getTimestamp())
+                .build());
+        inOrder.verify(subscriberOne).onNext(secondTick);
+        verify(subscriberOne, times(2)).onNext(any(TickResponse.class));
+        verify(subscriberOne, times(0)).onError(any(StatusException.class));
+
+    }
+
+    @Test
+    void notifySubscribers_ConflatePolicy_DisconnectsWhenPriceLevelsOverflow() {
+
+        subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
+
+        notifySubscribers(createBanicaTick(2.4, 10));
+        notifySubscribers(createBanicaTick(2.5, 10));
+        notifySubscribers(createBanicaTick(2.6, 10));
+
+        verify(subscriberOne, times(1)).onError(any(StatusException.class));
+        verify(subscriberOne, times(0)).onNext(any(TickResponse.class));
+
+    }
+
+    @Test
+    void notifySubscribers_DisconnectPolicy_ReturnOnErrorAndRemoveSubscriber() {
+
+        marketSubscriptionManager = createSubscriptionManager(1, "disconnect");
+        subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
+
+        notifySubscribers(createBanicaTick(2.4, 10));
+        notifySubscribers(createBanicaTick(2.5, 10));
+        notifySubscribers(createBanicaTick(2.6, 10));
+
+        verify(subscriberOne, times(1)).onError(any(StatusException.class));
+        verify(subscriberOne, times(2)).isCancelled();
+        verify(subscriberOne, times(0)).onNext(any(TickResponse.class));
+
+    }
+
+    @Test
+    void bootstrap_SendsSnapshotThenLiveTicksAfterSnapshotSequence() {
+
+        SubscriberQueue subscriberQueue = marketSubscriptionManager.subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
+        TickResponse level = createBanicaTick(2.4, 10);
+        TickResponse coveredTick = createBanicaTick(2.4, 4);
+        TickResponse firstLiveTick = createBanicaTick(2.5, 3);
+        TickResponse secondLiveTick = createBanicaTick(2.6, 1);
+
+        when(subscriberOne.isReady()).thenReturn(true);
+        marketSubscriptionManager.notifySubscribers(coveredTick, 1);
+        marketSubscriptionManager.notifySubscribers(firstLiveTick, 2);
+
+        verify(subscriberOne, times(0)).onNext(any(TickResponse.class));
+
+        subscriberQueue.bootstrap(Collections.singletonList(level), 1);
+        marketSubscriptionManager.notifySubscribers(coveredTick, 1);
+        marketSubscriptionManager.notifySubscribers(secondLiveTick, 3);
+
+        InOrder inOrder = inOrder(subscriberOne);
+        inOrder.verify(subscriberOne).onNext(level);
+        inOrder.verify(subscriberOne).onNext(firstLiveTick);
+        inOrder.verify(subscriberOne).onNext(secondLiveTick);
+        verify(subscriberOne, times(0)).onNext(coveredTick);
+
+    }
+
+    @Test
+    void bootstrap_SubscriberNotReady_StreamsSnapshotOnReady() {
+
+        SubscriberQueue subscriberQueue = marketSubscriptionManager.subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
+        Runnable onReadyHandler = captureOnReadyHandler(subscriberOne);
+        List<TickResponse> levels = Arrays.asList(createBanicaTick(2.4, 10), createBanicaTick(2.5, 3), createBanicaTick(2.6, 1));
+
+        subscriberQueue.bootstrap(levels, 0);
+
+        verify(subscriberOne, times(0)).onNext(any(TickResponse.class));
+
+        when(subscriberOne.isReady()).thenReturn(true);
+        onReadyHandler.run();
+
+        InOrder inOrder = inOrder(subscriberOne);
+        for (TickResponse level : levels) {
+            inOrder.verify(subscriberOne).onNext(level);
+        }
+
+    }
+
+    @Test
+    void notifySubscribers_AfterShutdown_DoesNotThrow() {
+
+        subscribe(MARKET_DATA_REQUEST_BANICA, subscriberOne);
+
+        ReflectionTestUtils.invokeMethod(marketSubscriptionManager, "onDestroy");
+
+        assertDoesNotThrow(() -> notifySubscribers(createBanicaTick(2.4, 10)));
+        verify(subscriberOne, times(0)).onNext(any(TickResponse.class));
+
+    }
+
+    @Test
+    void newFanOutExecutor_WhenQueueIsFull_WaitsForRoomInOrder() throws InterruptedException {
+
+        ExecutorService fanOutExecutor = MarketSubscriptionManager.newFanOutExecutor(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> completedTasks = Collections.synchronizedList(new ArrayList<>());
+
+        fanOutExecutor.execute(() -> {
+            awaitQuietly(release);
+            completedTasks.add(1);
+        });
+        fanOutExecutor.execute(() -> completedTasks.add(2));
+        Thread producer = new Thread(() -> fanOutExecutor.execute(() -> completedTasks.add(3)));
+        producer.start();
+        producer.join(200);
+
+        assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join();
+        fanOutExecutor.shutdown();
+
+        assertTrue(fanOutExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2, 3), completedTasks);
+        assertThrows(RejectedExecutionException.class, () -> fanOutExecutor.execute(() -> completedTasks.add(4)));
+
+    }
+
+    private MarketSubscriptionManager createSubscriptionManager(int queueCapacity, String overflowPolicy) {
+        return new MarketSubscriptionManager(queueCapacity, overflowPolicy, 2, MoreExecutors.newDirectExecutorService());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void subscribe(MarketDataRequest request, ServerCallStreamObserver<TickResponse> subscriber) {
+        marketSubscriptionManager.subscribe(request, subscriber).bootstrap(Collections.emptyList(), tickSequence);
+    }
+
+    private void notifySubscribers(TickResponse tick) {
+        marketSubscriptionManager.notifySubscribers(tick, ++tickSequence);
+    }
+
+    private Runnable captureOnReadyHandler(ServerCallStreamObserver<TickResponse> subscriber) {
+        ArgumentCaptor<Runnable> onReadyHandler = ArgumentCaptor.forClass(Runnable.class);
+        verify(subscriber).setOnReadyHandler(onReadyHandler.capture());
+        return onReadyHandler.getValue();
+    }
+
+    private TickResponse createBanicaTick(double price, long quantity) {
+        return TickResponse.newBuilder()
+                .setOrigin(Origin.AMERICA)
+                .setGoodName(GOOD_BANICA)
+                .setQuantity(quantity)
+                .setPrice(price)
+                .setTimestamp(System.nanoTime())
+                .build();
+    }
+
+}
@@ -1,23 +1,21 @@
 package com.market.banica.generator.task;
 
-import com.market.banica.generator.model.MarketTick;
+import com.market.banica.generator.model.MarketStateCheckpoint;
 import com.market.banica.generator.util.SnapshotPersistence;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,9 +24,8 @@ class SnapshotPersistenceTaskTest {
     private static final ReadWriteLock marketDataLock = mock(ReadWriteLock.class);
     private static final SnapshotPersistence snapshotPersistence = mock(SnapshotPersistence.class);
     @SuppressWarnings("unchecked")
-    private static final Map<String, Set<MarketTick>> marketState = mock(Map.class);
-    @SuppressWarnings("unchecked")
-    private static final Queue<MarketTick> marketSnapshot = mock(Queue.class);
+    private static final Supplier<MarketStateCheckpoint> marketStateCapture = mock(Supplier.class);
+    private static final MarketStateCheckpoint marketState = mock(MarketStateCheckpoint.class);
 
     private static SnapshotPersistenceTask snapshotPersistenceTask;
 
@@ -36,21 +33,26 @@ class SnapshotPersistenceTaskTest {
     static void beforeAll() {
 
         snapshotPersistenceTask = new SnapshotPersistenceTask(marketDataLock,
-                snapshotPersistence, marketState, marketSnapshot);
+                snapshotPersistence, marketStateCapture);
 
     }
 
     @Test
-    void run() throws IOException {
+    void run_CapturesUnderReadLockAndPersistsAfterUnlock() throws IOException {
 
         Lock newTicksReadLock = mock(ReentrantReadWriteLock.ReadLock.class);
         when(marketDataLock.readLock()).thenReturn(newTicksReadLock);
+        when(marketStateCapture.get()).thenReturn(marketState);
+        when(snapshotPersistence.rollJournal()).thenReturn(7L);
 
         snapshotPersistenceTask.run();
 
-        verify(newTicksReadLock, times(1)).lock();
-        verify(snapshotPersistence, times(1)).persistMarketState(marketState, marketSnapshot);
-        verify(newTicksReadLock, times(1)).unlock();
+        InOrder inOrder = inOrder(newTicksReadLock, marketStateCapture, snapshotPersistence);
+        inOrder.verify(newTicksReadLock).lock();
+        inOrder.verify(marketStateCapture).get();
+        inOrder.verify(snapshotPersistence).rollJournal();
+        inOrder.verify(newTicksReadLock).unlock();
+        inOrder.verify(snapshotPersistence).persistMarketState(marketState, 7L);
 
     }
 
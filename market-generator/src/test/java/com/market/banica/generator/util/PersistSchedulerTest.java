@@ -1,6 +1,6 @@
 package com.market.banica.generator.util;
 
-import com.market.banica.generator.model.MarketTick;
+import com.market.banica.generator.model.MarketStateCheckpoint;
 import com.market.banica.generator.task.SnapshotPersistenceTask;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,12 +9,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
 import java.util.Timer;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -31,9 +29,7 @@ class PersistSchedulerTest {
     private static final ReadWriteLock marketStateLock = mock(ReadWriteLock.class);
     private static final SnapshotPersistence snapshotPersistence = mock(SnapshotPersistence.class);
     @SuppressWarnings("unchecked")
-    private static final Map<String, Set<MarketTick>> marketState = mock(Map.class);
-    @SuppressWarnings("unchecked")
-    private static final Queue<MarketTick> marketSnapshot = mock(Queue.class);
+    private static final Supplier<MarketStateCheckpoint> marketStateCapture = mock(Supplier.class);
     private static final SnapshotPersistenceTask currentSnapshotPersistenceTask = mock(SnapshotPersistenceTask.class);
 
     private static PersistScheduler persistScheduler;
@@ -41,7 +37,7 @@ class PersistSchedulerTest {
     @BeforeAll
     static void beforeAll() {
 
-        persistScheduler = new PersistScheduler(marketStateLock, snapshotPersistence, marketState, marketSnapshot);
+        persistScheduler = new PersistScheduler(marketStateLock, snapshotPersistence, marketStateCapture);
         ReflectionTestUtils.setField(persistScheduler, "persistTimer", persistTimer);
         ReflectionTestUtils.setField(persistScheduler, "currentSnapshotPersistenceTask",
                 currentSnapshotPersistenceTask);
@@ -55,8 +51,7 @@ class PersistSchedulerTest {
         reset(persistTimer);
         reset(marketStateLock);
         reset(snapshotPersistence);
-        reset(marketState);
-        reset(marketSnapshot);
+        reset(marketStateCapture);
         reset(currentSnapshotPersistenceTask);
 
     }
@@ -121,7 +116,7 @@ class PersistSchedulerTest {
         SnapshotPersistenceTask newPersistenceTask = (SnapshotPersistenceTask) ReflectionTestUtils
                 .getField(persistScheduler, "currentSnapshotPersistenceTask");
 
-        assertEquals(new SnapshotPersistenceTask(marketStateLock, snapshotPersistence, marketState, marketSnapshot)
+        assertEquals(new SnapshotPersistenceTask(marketStateLock, snapshotPersistence, marketStateCapture)
                 , newPersistenceTask);
 
         verify(persistTimer).scheduleAtFixedRate(newPersistenceTask,
@@ -3,19 +3,26 @@ package com.market.banica.generator.util;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Output;
 import com.market.banica.common.util.ApplicationDirectoryUtil;
+import com.market.banica.generator.model.MarketStateCheckpoint;
 import com.market.banica.generator.model.MarketTick;
 import org.junit.jupiter.api.AfterEach;
-import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -24,79 +31,89 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.reset;
-import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
 class SnapshotPersistenceTest {
 
-    private static final Kryo kryoHandle = mock(Kryo.class);
-
     private static final String stateFileName = "test-marketState.dat";
     private static final String snapshotFileName = "test-marketSnapshot.dat";
 
     private static final String GOOD_NAME = "banica";
+    private static final int SEGMENT_SIZE = 64 * 1024;
 
-    private static SnapshotPersistence snapshotPersistence;
+    private SnapshotPersistence snapshotPersistence;
 
-    @BeforeAll
-    static void beforeAll() {
+    @BeforeEach
+    void setUp() {
 
-        snapshotPersistence = new SnapshotPersistence(stateFileName, snapshotFileName);
+        snapshotPersistence = createSnapshotPersistence();
 
     }
 
     @AfterEach
     void teardown() throws IOException {
 
-        reset(kryoHandle);
+        snapshotPersistence.close();
         File stateFile = ApplicationDirectoryUtil.getConfigFile(stateFileName);
         File snapshotFile = ApplicationDirectoryUtil.getConfigFile(snapshotFileName);
         assert stateFile.delete();
         assert snapshotFile.delete();
+        deleteJournalSegments(snapshotFile);
 
     }
 
     @Test
     void persistMarketState() throws IOException {
 
-        SnapshotPersistence snapshotPersistence = new SnapshotPersistence(stateFileName, snapshotFileName);
-        SnapshotPersistence snapshotPersistenceSpy = spy(snapshotPersistence);
-        ReflectionTestUtils.setField(snapshotPersistenceSpy, "kryoHandle", kryoHandle);
+        Kryo kryoHandle = mock(Kryo.class);
+        ReflectionTestUtils.setField(snapshotPersistence, "kryoHandle", kryoHandle);
+        Map<String, Map<Double, Long>> levels = new ConcurrentHashMap<>();
+
 
-        Map<String, Set<MarketTick>> marketState = new ConcurrentHashMap<>();
-        Map<String, Set<MarketTick>> marketStateSpy = spy(marketState);
+        persistLevels(levels);
 
-        Queue<MarketTick> marketSnapshot = new LinkedBlockingQueue<>();
-        Queue<MarketTick> marketSnapshotSpy = spy(marketSnapshot);
 
+        verify(kryoHandle, times(1)).writeClassAndObject(any(Output.class), any(MarketStateCheckpoint.class));
 
-        snapshotPersistenceSpy.persistMarketState(marketStateSpy, marketSnapshotSpy);
+    }
+
+    @Test
+    void persistMarketState_DropsJournaledTicksCoveredByState() throws IOException {
 
+        snapshotPersistence.loadMarketSnapshot();
+        snapshotPersistence.appendMarketTick(1, new MarketTick(GOOD_NAME, 1, 1, 1));
+        persistLevels(new ConcurrentHashMap<>());
+        snapshotPersistence.appendMarketTick(2, new MarketTick(GOOD_NAME, 2, 2, 2));
+        snapshotPersistence.close();
 
-        verify(marketSnapshotSpy, times(1)).clear();
-        assertTrue(marketSnapshot.isEmpty());
+        snapshotPersistence = createSnapshotPersistence();
+        List<MarketTick> actual = snapshotPersistence.loadMarketSnapshot();
 
-        verify(kryoHandle, times(1)).writeClassAndObject(any(Output.class), eq(marketStateSpy));
-        verify(snapshotPersistenceSpy, times(1)).persistMarketSnapshot(marketSnapshotSpy);
+        assertEquals(Collections.singletonList(new MarketTick(GOOD_NAME, 2, 2, 2)), actual);
 
     }
 
     @Test
-    void persistMarketSnapshot() throws IOException {
+    void loadMarketState_SkipsJournaledTicksCoveredByCheckpoint() throws IOException {
 
-        SnapshotPersistence snapshotPersistence = new SnapshotPersistence(stateFileName, snapshotFileName);
-        ReflectionTestUtils.setField(snapshotPersistence, "kryoHandle", kryoHandle);
-        Queue<MarketTick> marketSnapshot = new LinkedBlockingQueue<>();
-        Queue<MarketTick> marketSnapshotSpy = spy(marketSnapshot);
+        MarketTick coveredTick = new MarketTick(GOOD_NAME, 1, 1, 1);
+        MarketTick journaledTick = new MarketTick(GOOD_NAME, 2, 2, 2);
+        Map<String, Map<Double, Long>> checkpointedLevels = new ConcurrentHashMap<>();
+        checkpointedLevels.put(GOOD_NAME, new TreeMap<>(Collections.singletonMap(1.0, 1L)));
+        snapshotPersistence.loadMarketSnapshot();
+        snapshotPersistence.appendMarketTick(1, coveredTick);
+        snapshotPersistence.appendMarketTick(2, journaledTick);
+        snapshotPersistence.persistMarketState(new MarketStateCheckpoint(1, 1, checkpointedLevels), 0);
+        snapshotPersistence.close();
 
-        snapshotPersistence.persistMarketSnapshot(marketSnapshotSpy);
+        snapshotPersistence = createSnapshotPersistence();
+        Map<String, List<MarketTick>> actual = snapshotPersistence.loadMarketState();
 
-        verify(kryoHandle, times(1)).writeClassAndObject(any(Output.class), eq(marketSnapshotSpy));
+        assertEquals(Arrays.asList(coveredTick, journaledTick), actual.get(GOOD_NAME));
+        assertEquals(2, snapshotPersistence.getLastSequence());
 
     }
 
@@ -105,7 +122,7 @@ class SnapshotPersistenceTest {
 
         assertFalse(ApplicationDirectoryUtil.doesFileExist(stateFileName));
 
-        Map<String, Set<MarketTick>> result = snapshotPersistence.loadMarketState(new LinkedBlockingQueue<>());
+        Map<String, List<MarketTick>> result = snapshotPersistence.loadMarketState();
 
         assertTrue(ApplicationDirectoryUtil.doesFileExist(stateFileName));
         assertEquals(new ConcurrentHashMap<>(), result);
@@ -118,7 +135,7 @@ class SnapshotPersistenceTest {
         ApplicationDirectoryUtil.getConfigFile(stateFileName);
         assertTrue(ApplicationDirectoryUtil.doesFileExist(stateFileName));
 
-        Map<String, Set<MarketTick>> result = snapshotPersistence.loadMarketState(new LinkedBlockingQueue<>());
+        Map<String, List<MarketTick>> result = snapshotPersistence.loadMarketState();
 
         assertTrue(ApplicationDirectoryUtil.doesFileExist(stateFileName));
         assertEquals(new ConcurrentHashMap<>(), result);
@@ -128,66 +145,123 @@ class SnapshotPersistenceTest {
     @Test
     void loadMarketState_WhenFileExistsAndHasTicks() throws IOException {
 
-        Queue<MarketTick> marketSnapshotQueue = new LinkedBlockingQueue<>();
-        marketSnapshotQueue.add(new MarketTick(GOOD_NAME, 3, 3, 3));
-        marketSnapshotQueue.add(new MarketTick(GOOD_NAME, 4, 4, 4));
+        Map<String, Map<Double, Long>> levels = new ConcurrentHashMap<>();
+        levels.put(GOOD_NAME, new TreeMap<>());
+        levels.get(GOOD_NAME).put(1.0, 1L);
+        levels.get(GOOD_NAME).put(2.0, 2L);
+        persistLevels(levels);
+        snapshotPersistence.appendMarketTick(1, new MarketTick(GOOD_NAME, 3, 3, 3));
+        snapshotPersistence.appendMarketTick(2, new MarketTick(GOOD_NAME, 4, 4, 4));
+        snapshotPersistence.close();
+
+        snapshotPersistence = createSnapshotPersistence();
+        List<MarketTick> actual = snapshotPersistence.loadMarketState().get(GOOD_NAME);
+
+        assertEquals(4, actual.size());
+        assertEquals(1, actual.get(0).getPrice());
+        assertEquals(1, actual.get(0).getQuantity());
+        assertEquals(2, actual.get(1).getPrice());
+        assertEquals(2, actual.get(1).getQuantity());
+        assertEquals(Arrays.asList(new MarketTick(GOOD_NAME, 3, 3, 3), new MarketTick(GOOD_NAME, 4, 4, 4)),
+                actual.subList(2, 4));
 
-        snapshotPersistence.persistMarketSnapshot(marketSnapshotQueue);
+    }
 
-        Map<String, Set<MarketTick>> expected = new ConcurrentHashMap<>();
-        expected.put(GOOD_NAME, new TreeSet<>());
-        expected.get(GOOD_NAME).add(new MarketTick(GOOD_NAME, 1, 1, 1));
-        expected.get(GOOD_NAME).add(new MarketTick(GOOD_NAME, 2, 2, 2));
-        snapshotPersistence.persistMarketState(expected, new LinkedBlockingQueue<>());
+    @Test
+    void loadMarketState_ReadsLegacyTickState() throws IOException {
 
-        Map<String, Set<MarketTick>> actual = snapshotPersistence.loadMarketState(marketSnapshotQueue);
+        Map<String, Set<MarketTick>> legacyState = new ConcurrentHashMap<>();
+        legacyState.put(GOOD_NAME, new TreeSet<>(Arrays.asList(
+                new MarketTick(GOOD_NAME, 1, 1, 1),
+                new MarketTick(GOOD_NAME, 2, 2, 2))));
+        Kryo kryoHandle = (Kryo) ReflectionTestUtils.getField(snapshotPersistence, "kryoHandle");
+        assert kryoHandle != null;
+        try (Output output = new Output(new FileOutputStream(ApplicationDirectoryUtil.getConfigFile(stateFileName)))) {
+            kryoHandle.writeClassAndObject(output, legacyState);
+        }
 
-        expected.get(GOOD_NAME).add(new MarketTick(GOOD_NAME, 3, 3, 3));
-        expected.get(GOOD_NAME).add(new MarketTick(GOOD_NAME, 4, 4, 4));
+        Map<String, List<MarketTick>> actual = snapshotPersistence.loadMarketState();
 
-        assertEquals(expected, actual);
+        assertEquals(new ArrayList<>(legacyState.get(GOOD_NAME)), actual.get(GOOD_NAME));
 
     }
 
     @Test
-    void loadMarketSnapshot_WhenFileDoesNotExist() throws IOException {
-
-        assertFalse(ApplicationDirectoryUtil.doesFileExist(snapshotFileName));
+    void loadMarketSnapshot_WhenNothingWasJournaled() throws IOException {
 
-        Queue<MarketTick> result = snapshotPersistence.loadMarketSnapshot();
+        List<MarketTick> result = snapshotPersistence.loadMarketSnapshot();
 
-        assertTrue(ApplicationDirectoryUtil.doesFileExist(snapshotFileName));
         assertTrue(result.isEmpty());
-        assertTrue(result instanceof LinkedBlockingQueue);
 
     }
 
     @Test
-    void loadMarketSnapshot_WhenFileExistsButIsEmpty() throws IOException {
+    void loadMarketSnapshot_WhenTicksWereJournaled() throws IOException {
 
-        ApplicationDirectoryUtil.getConfigFile(snapshotFileName);
-        assertTrue(ApplicationDirectoryUtil.doesFileExist(snapshotFileName));
+        List<MarketTick> expected = Arrays.asList(
+                new MarketTick(GOOD_NAME, 1, 1, 1),
+                new MarketTick(GOOD_NAME, 2, 2, 2));
+        snapshotPersistence.loadMarketSnapshot();
+        for (int sequence = 0; sequence < expected.size(); sequence++) {
+            snapshotPersistence.appendMarketTick(sequence, expected.get(sequence));
+        }
+        snapshotPersistence.close();
 
-        Queue<MarketTick> result = snapshotPersistence.loadMarketSnapshot();
+        snapshotPersistence = createSnapshotPersistence();
+        List<MarketTick> actual = snapshotPersistence.loadMarketSnapshot();
 
-        assertTrue(ApplicationDirectoryUtil.doesFileExist(snapshotFileName));
-        assertTrue(result.isEmpty());
-        assertTrue(result instanceof LinkedBlockingQueue);
+        assertEquals(expected, actual);
 
     }
 
     @Test
-    void loadMarketSnapshot_WhenFileExistsAndHasTicks() throws IOException {
+    void loadMarketSnapshot_MovesLegacySnapshotFileIntoJournal() throws IOException {
+
+        Queue<MarketTick> legacySnapshot = new LinkedBlockingQueue<>(Arrays.asList(
+                new MarketTick(GOOD_NAME, 1, 1, 1),
+                new MarketTick(GOOD_NAME, 2, 2, 2)));
+        Kryo kryoHandle = (Kryo) ReflectionTestUtils.getField(snapshotPersistence, "kryoHandle");
+        assert kryoHandle != null;
+        try (Output output = new Output(new FileOutputStream(ApplicationDirectoryUtil.getConfigFile(snapshotFileName)))) {
+            kryoHandle.writeClassAndObject(output, legacySnapshot);
+        }
+
+        List<MarketTick> migrated = snapshotPersistence.loadMarketSnapshot();
+        snapshotPersistence.close();
+        snapshotPersistence = createSnapshotPersistence();
+        List<MarketTick> replayed = snapshotPersistence.loadMarketSnapshot();
+
+        assertEquals(Arrays.asList(legacySnapshot.toArray()), migrated);
+        assertEquals(migrated, replayed);
+        assertEquals(0, ApplicationDirectoryUtil.getConfigFile(snapshotFileName).length());
+
+    }
+
+    private static SnapshotPersistence createSnapshotPersistence() {
 
-        Queue<MarketTick> expected = new LinkedBlockingQueue<>();
-        expected.add(new MarketTick(GOOD_NAME, 1, 1, 1));
-        expected.add(new MarketTick(GOOD_NAME, 2, 2, 2));
-        snapshotPersistence.persistMarketSnapshot(expected);
+        return new SnapshotPersistence(stateFileName, snapshotFileName,
+                new TickJournal(snapshotFileName, SEGMENT_SIZE, TickJournal.FsyncPolicy.NONE, 64, 0));
 
-        Queue<MarketTick> actual = snapshotPersistence.loadMarketSnapshot();
+    }
+
+    private void persistLevels(Map<String, Map<Double, Long>> levels) throws IOException {
+
+        snapshotPersistence.persistMarketState(new MarketStateCheckpoint(snapshotPersistence.getLastSequence(),
+                System.currentTimeMillis(), levels), snapshotPersistence.rollJournal());
+
+    }
 
-        assertEquals(expected.size(), actual.size());
-        actual.forEach(marketTick -> assertEquals(expected.poll(), marketTick));
+    private static void deleteJournalSegments(File journalFile) {
+
+        File[] files = journalFile.getAbsoluteFile().getParentFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith(journalFile.getName() + ".")) {
+                assert file.delete();
+            }
+        }
 
     }
 
@@ -0,0 +1,213 @@
+package com.market.banica.generator.util;
+
+import com.market.banica.common.util.ApplicationDirectoryUtil;
+import com.market.banica.generator.model.MarketTick;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TickJournalTest {
+
+    private static final String journalFileName = "test-tickJournal.dat";
+
+    private static final String GOOD_NAME = "banica";
+    private static final int RECORD_SIZE = 4 + 8 + 2 + GOOD_NAME.length() + 8 + 8 + 8 + 8;
+
+    private final List<TickJournal> openJournals = new ArrayList<>();
+
+    @AfterEach
+    void teardown() throws IOException {
+
+        openJournals.forEach(TickJournal::close);
+        File journalFile = ApplicationDirectoryUtil.getConfigFile(journalFileName);
+        for (File segment : segmentFiles(journalFile)) {
+            assert segment.delete();
+        }
+        assert journalFile.delete();
+
+    }
+
+    @Test
+    void append_ThenReplay_ReturnsTicksInOrder() throws IOException {
+
+        List<MarketTick> expected = Arrays.asList(tick(3), tick(1), tick(2));
+        TickJournal tickJournal = openJournal(1024);
+        tickJournal.replay();
+        for (int sequence = 0; sequence < expected.size(); sequence++) {
+            tickJournal.append(sequence, expected.get(sequence));
+        }
+        tickJournal.close();
+
+        List<MarketTick> actual = openJournal(1024).replay();
+
+        assertEquals(expected, actual);
+
+    }
+
+    @Test
+    void append_WhenSegmentIsFull_RollsToNextSegment() throws IOException {
+
+        TickJournal tickJournal = openJournal(4 + 2 * RECORD_SIZE);
+        for (int i = 1; i <= 5; i++) {
+            tickJournal.append(i, tick(i));
+        }
+        tickJournal.close();
+        int segments = segmentFiles(ApplicationDirectoryUtil.getConfigFile(journalFileName)).size();
+
+        List<MarketTick> actual = openJournal(4 + 2 * RECORD_SIZE).replay();
+
+        assertEquals(3, segments);
+        assertEquals(Arrays.asList(tick(1), tick(2), tick(3), tick(4), tick(5)), actual);
+
+    }
+
+    @Test
+    void append_WhenTickDoesNotFitInSegment_Throws() {
+
+        TickJournal tickJournal = openJournal(RECORD_SIZE);
+
+        assertThrows(IOException.class, () -> tickJournal.append(1, tick(1)));
+
+    }
+
+    @Test
+    void deleteSegmentsBefore_DropsTicksOfRolledSegments() throws IOException {
+
+        TickJournal tickJournal = openJournal(1024);
+        tickJournal.append(1, tick(1));
+        tickJournal.append(2, tick(2));
+        long firstKeptSegment = tickJournal.rollSegment();
+        tickJournal.append(3, tick(3));
+        tickJournal.deleteSegmentsBefore(firstKeptSegment);
+        tickJournal.close();
+
+        List<MarketTick> actual = openJournal(1024).replay();
+
+        assertEquals(1, firstKeptSegment);
+        assertEquals(Collections.singletonList(tick(3)), actual);
+
+    }
+
+    @Test
+    void rollSegment_WhenSegmentIsEmpty_KeepsCurrentSegment() throws IOException {
+
+        TickJournal tickJournal = openJournal(1024);
+
+        assertEquals(0, tickJournal.rollSegment());
+        assertEquals(0, tickJournal.rollSegment());
+
+    }
+
+    @Test
+    void replay_StopsAtTornRecordAndAppendsToNewSegment() throws IOException {
+
+        TickJournal tickJournal = openJournal(1024);
+        tickJournal.append(1, tick(1));
+        tickJournal.append(2, tick(2));
+        tickJournal.append(3, tick(3));
+        tickJournal.close();
+        File segment = segmentFiles(ApplicationDirectoryUtil.getConfigFile(journalFileName)).get(0);
+        try (RandomAccessFile segmentAccess = new RandomAccessFile(segment, "rw")) {
+            segmentAccess.seek(4 + RECORD_SIZE + 16);
+            segmentAccess.write(0xFF);
+        }
+
+        TickJournal reopenedJournal = openJournal(1024);
+        List<MarketTick> replayed = reopenedJournal.replay();
+        long lastSequence = reopenedJournal.getLastSequence();
+        reopenedJournal.append(2, tick(4));
+        reopenedJournal.close();
+        int segments = segmentFiles(ApplicationDirectoryUtil.getConfigFile(journalFileName)).size();
+        List<MarketTick> actual = openJournal(1024).replay();
+
+        assertEquals(Collections.singletonList(tick(1)), replayed);
+        assertEquals(1, lastSequence);
+        assertEquals(Arrays.asList(tick(1), tick(4)), actual);
+        assertEquals(2, segments);
+
+    }
+
+    @Test
+    void replay_SkipsTicksUpToGivenSequence() throws IOException {
+
+        TickJournal tickJournal = openJournal(1024);
+        tickJournal.append(1, tick(5));
+        tickJournal.append(2, tick(5));
+        tickJournal.append(3, tick(6));
+        tickJournal.close();
+
+        TickJournal reopenedJournal = openJournal(1024);
+        List<MarketTick> actual = reopenedJournal.replay(1);
+
+        assertEquals(Arrays.asList(tick(5), tick(6)), actual);
+        assertEquals(3, reopenedJournal.getLastSequence());
+
+    }
+
+    @Test
+    void sync_WithGroupPolicy_ForcesRecordsFromFlusherThread() throws IOException, InterruptedException {
+
+        TickJournal tickJournal = new TickJournal(journalFileName, 1024, TickJournal.FsyncPolicy.GROUP, 2, 0);
+        openJournals.add(tickJournal);
+        tickJournal.append(1, tick(1));
+        tickJournal.append(2, tick(2));
+
+        long deadline = System.currentTimeMillis() + 1000;
+        while (pendingRecords(tickJournal) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, pendingRecords(tickJournal));
+
+    }
+
+    private TickJournal openJournal(int segmentSize) {
+
+        TickJournal tickJournal = new TickJournal(journalFileName, segmentSize, TickJournal.FsyncPolicy.ALWAYS, 1, 0);
+        openJournals.add(tickJournal);
+        return tickJournal;
+
+    }
+
+    private static int pendingRecords(TickJournal tickJournal) {
+
+        synchronized (tickJournal) {
+            Integer pendingRecords = (Integer) ReflectionTestUtils.getField(tickJournal, "pendingRecords");
+            assert pendingRecords != null;
+            return pendingRecords;
+        }
+
+    }
+
+    private static List<File> segmentFiles(File journalFile) {
+
+        List<File> segments = new ArrayList<>();
+        File[] files = journalFile.getAbsoluteFile().getParentFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(journalFile.getName() + ".")) {
+                    segments.add(file);
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+
+    }
+
+    private static MarketTick tick(long timestamp) {
+        return new MarketTick(GOOD_NAME, timestamp, timestamp, timestamp);
+    }
+
+}
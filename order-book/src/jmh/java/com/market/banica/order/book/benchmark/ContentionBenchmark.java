@@ -0,0 +1,72 @@
+package com.market.banica.order.book.benchmark;
+
+import com.market.TickResponse;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
+import com.market.banica.order.book.model.ItemMarket;
+import com.orderbook.OrderBookLayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentionBenchmark {
+
+    private static final int TICK_COUNT = 1 << 16;
+    private static final int BATCH_SIZE = 16;
+    private static final long REQUESTED_QUANTITY = 5_000;
+
+    @Param({"tree", "primitive"})
+    private String bookImplementation;
+
+    private ItemMarket itemMarket;
+    private List<List<TickResponse>> batches;
+    private int nextBatch;
+
+    @Setup
+    public void setUp() {
+        itemMarket = new ItemMarket(bookImplementation, new OrderBookMetrics());
+        itemMarket.addTrackedItem(TickDistribution.GOOD_NAME);
+
+        List<TickResponse> ticks = new TickDistribution(42).nextTicks(TICK_COUNT);
+        batches = new ArrayList<>();
+        for (int tick = 0; tick < TICK_COUNT; tick += BATCH_SIZE) {
+            batches.add(ticks.subList(tick, tick + BATCH_SIZE));
+        }
+        itemMarket.updateItems(TickDistribution.GOOD_NAME, ticks);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void writer() {
+        itemMarket.updateItems(TickDistribution.GOOD_NAME, batches.get(nextBatch));
+        nextBatch = (nextBatch + 1) % batches.size();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public List<OrderBookLayer> reader() {
+        return itemMarket.getRequestedItem(TickDistribution.GOOD_NAME, REQUESTED_QUANTITY);
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.market.banica.order.book.benchmark;
+
+import com.aurora.Aurora;
+import com.google.protobuf.Any;
+import com.market.TickResponse;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
+import com.market.banica.order.book.model.ItemMarket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestionBenchmark {
+
+    private static final int TICK_COUNT = 1 << 16;
+    private static final int BATCH_SIZE = 64;
+
+    @Param({"tree", "primitive"})
+    private String bookImplementation;
+
+    private ItemMarket itemMarket;
+    private Aurora.AuroraResponse[] responses;
+    private List<List<TickResponse>> batches;
+    private int nextResponse;
+    private int nextBatch;
+
+    @Setup
+    public void setUp() {
+        itemMarket = new ItemMarket(bookImplementation, new OrderBookMetrics());
+        itemMarket.addTrackedItem(TickDistribution.GOOD_NAME);
+
+        List<TickResponse> ticks = new TickDistribution(42).nextTicks(TICK_COUNT);
+        responses = new Aurora.AuroraResponse[TICK_COUNT];
+        for (int tick = 0; tick < TICK_COUNT; tick++) {
+            responses[tick] = Aurora.AuroraResponse.newBuilder().setMessage(Any.pack(ticks.get(tick))).build();
+        }
+        batches = new ArrayList<>();
+        for (int tick = 0; tick < TICK_COUNT; tick += BATCH_SIZE) {
+            batches.add(ticks.subList(tick, tick + BATCH_SIZE));
+        }
+
+        for (Aurora.AuroraResponse response : responses) {
+            itemMarket.updateItem(response);
+        }
+    }
+
+    @Benchmark
+    public void updateItem() {
+        itemMarket.updateItem(responses[nextResponse]);
+        nextResponse = (nextResponse + 1) & (TICK_COUNT - 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void updateItems() {
+        itemMarket.updateItems(TickDistribution.GOOD_NAME, batches.get(nextBatch));
+        nextBatch = (nextBatch + 1) % batches.size();
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.market.banica.order.book.benchmark;
+
+import com.market.TickResponse;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
+import com.market.banica.order.book.model.ItemMarket;
+import com.orderbook.ItemFillCostResponse;
+import com.orderbook.OrderBookLayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayerQueryBenchmark {
+
+    @Param({"tree", "primitive"})
+    private String bookImplementation;
+
+    @Param({"10", "100", "1000"})
+    private int depth;
+
+    @Param({"0.1", "0.5", "1.0"})
+    private double filledFraction;
+
+    private ItemMarket itemMarket;
+    private long quantity;
+
+    @Setup
+    public void setUp() {
+        itemMarket = new ItemMarket(bookImplementation, new OrderBookMetrics());
+        itemMarket.addTrackedItem(TickDistribution.GOOD_NAME);
+
+        List<TickResponse> ticks = new TickDistribution(42).depthTicks(depth);
+        itemMarket.updateItems(TickDistribution.GOOD_NAME, ticks);
+        quantity = Math.max(1, Math.round(itemMarket.getProductsQuantity().get(TickDistribution.GOOD_NAME) * filledFraction));
+    }
+
+    @Benchmark
+    public List<OrderBookLayer> getRequestedItem() {
+        return itemMarket.getRequestedItem(TickDistribution.GOOD_NAME, quantity);
+    }
+
+    @Benchmark
+    public ItemFillCostResponse getFillCost() {
+        return itemMarket.getFillCost(TickDistribution.GOOD_NAME, quantity);
+    }
+
+}
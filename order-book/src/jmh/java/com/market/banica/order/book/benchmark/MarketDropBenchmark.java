@@ -0,0 +1,59 @@
+package com.market.banica.order.book.benchmark;
+
+import com.market.TickResponse;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
+import com.market.banica.order.book.model.ItemMarket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+public class MarketDropBenchmark {
+
+    private static final String DROPPED_MARKET = "market-europe";
+
+    @Param({"tree", "primitive"})
+    private String bookImplementation;
+
+    @Param({"100", "1000", "10000"})
+    private int depth;
+
+    private List<TickResponse> ticks;
+    private ItemMarket itemMarket;
+
+    @Setup(Level.Trial)
+    public void generateTicks() {
+        ticks = new TickDistribution(42).depthTicks(depth);
+    }
+
+    @Setup(Level.Iteration)
+    public void populateBook() {
+        itemMarket = new ItemMarket(bookImplementation, new OrderBookMetrics());
+        itemMarket.addTrackedItem(TickDistribution.GOOD_NAME);
+        itemMarket.updateItems(TickDistribution.GOOD_NAME, ticks);
+    }
+
+    @Benchmark
+    public ItemMarket zeroingMarketProductsFromMarket() {
+        itemMarket.zeroingMarketProductsFromMarket(DROPPED_MARKET, TickDistribution.GOOD_NAME);
+        return itemMarket;
+    }
+
+}
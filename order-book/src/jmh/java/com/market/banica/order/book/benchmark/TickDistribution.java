@@ -0,0 +1,67 @@
+package com.market.banica.order.book.benchmark;
+
+import com.market.Origin;
+import com.market.TickResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public final class TickDistribution {
+
+    public static final String GOOD_NAME = "eggs";
+
+    private static final Origin[] ORIGINS = {Origin.AMERICA, Origin.ASIA, Origin.EUROPE};
+    private static final double MID_PRICE = 5.0;
+    private static final double PRICE_DEVIATION = 0.5;
+    private static final double MIN_PRICE = 0.01;
+    private static final double CANCELLATION_RATIO = 0.2;
+    private static final int MAX_QUANTITY = 100;
+
+    private final Random random;
+
+    public TickDistribution(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public List<TickResponse> nextTicks(int count) {
+        List<TickResponse> ticks = new ArrayList<>(count);
+        for (int tick = 0; tick < count; tick++) {
+            ticks.add(nextTick());
+        }
+        return ticks;
+    }
+
+    public TickResponse nextTick() {
+        long quantity = 1 + random.nextInt(MAX_QUANTITY);
+        return tick(nextPrice(), random.nextDouble() < CANCELLATION_RATIO ? -quantity : quantity, nextOrigin());
+    }
+
+    public List<TickResponse> depthTicks(int depth) {
+        List<TickResponse> ticks = new ArrayList<>(depth);
+        for (int level = 0; level < depth; level++) {
+            ticks.add(tick(MIN_PRICE * (level + 1), 1 + random.nextInt(MAX_QUANTITY), ORIGINS[level % ORIGINS.length]));
+        }
+        return ticks;
+    }
+
+    private double nextPrice() {
+        double price = MID_PRICE + random.nextGaussian() * PRICE_DEVIATION;
+        return Math.max(MIN_PRICE, Math.round(price * 100) / 100.0);
+    }
+
+    private Origin nextOrigin() {
+        return ORIGINS[random.nextInt(ORIGINS.length)];
+    }
+
+    private static TickResponse tick(double price, long quantity, Origin origin) {
+        return TickResponse.newBuilder()
+                .setGoodName(GOOD_NAME)
+                .setPrice(price)
+                .setQuantity(quantity)
+                .setOrigin(origin)
+                .setTimestamp(System.currentTimeMillis())
+                .build();
+    }
+
+}
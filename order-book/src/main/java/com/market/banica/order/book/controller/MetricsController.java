@@ -0,0 +1,25 @@
+package com.market.banica.order.book.controller;
+
+import com.market.banica.order.book.metrics.OrderBookMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class MetricsController {
+
+    private static final String TEXT_FORMAT = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final OrderBookMetrics metrics;
+
+    @Autowired
+    public MetricsController(OrderBookMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @GetMapping(value = "/metrics", produces = TEXT_FORMAT)
+    public String scrapeMetrics() {
+        return metrics.scrape();
+    }
+
+}
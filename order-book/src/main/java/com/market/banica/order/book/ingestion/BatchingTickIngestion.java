@@ -0,0 +1,151 @@
+package com.market.banica.order.book.ingestion;
+
+import com.aurora.Aurora;
+import com.market.TickResponse;
+import com.market.banica.common.exception.IncorrectResponseException;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
+import com.market.banica.order.book.model.ItemMarket;
+import lombok.AllArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@ConditionalOnProperty(name = "orderbook.ingestion.mode", havingValue = "batching")
+public class BatchingTickIngestion implements TickIngestion {
+
+    private static final Logger LOGGER = LogManager.getLogger(BatchingTickIngestion.class);
+    private static final String INGESTION_MODE = "batching";
+
+    private final TickBatch tickBatch;
+    private final TickConflator tickConflator;
+    private final int batchSize;
+    private final long batchDeadlineNanos;
+    private final BlockingQueue<PendingTick> pendingTicks;
+    private final ExecutorService ingestionExecutor = Executors.newSingleThreadExecutor();
+
+    @Autowired
+    public BatchingTickIngestion(ItemMarket itemMarket, OrderBookMetrics metrics,
+                                 @Value("${orderbook.ingestion.batch.size}") final int batchSize,
+                                 @Value("${orderbook.ingestion.batch.deadline.micros}") final long batchDeadlineMicros,
+                                 @Value("${orderbook.ingestion.queue.capacity}") final int queueCapacity,
+                                 @Value("${orderbook.ingestion.conflation.enabled}") final boolean conflating) {
+        this.tickBatch = new TickBatch(itemMarket, metrics.getTickToBookNanos(INGESTION_MODE));
+        this.tickConflator = conflating ? new TickConflator() : null;
+        this.batchSize = batchSize;
+        this.batchDeadlineNanos = TimeUnit.MICROSECONDS.toNanos(batchDeadlineMicros);
+        this.pendingTicks = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @Override
+    public void ingestTick(Aurora.AuroraResponse response) {
+        TickResponse tickResponse;
+        try {
+            tickResponse = TickBatch.unpackTick(response);
+        } catch (IncorrectResponseException e) {
+            LOGGER.error(e.getMessage());
+            return;
+        }
+
+        long enqueuedAt = System.nanoTime();
+        if (tickConflator == null) {
+            enqueue(new PendingTick(tickResponse, null, null, enqueuedAt));
+            return;
+        }
+
+        TickConflator.ConflatedTick conflatedTick = tickConflator.conflate(tickResponse, enqueuedAt);
+        if (conflatedTick != null) {
+            enqueue(new PendingTick(null, conflatedTick, null, enqueuedAt));
+        }
+    }
+
+    @Override
+    public void runAfterPendingTicks(Runnable task) {
+        if (tickConflator != null) {
+            tickConflator.startNewTicks();
+        }
+        enqueue(new PendingTick(null, null, task, 0));
+    }
+
+    @PostConstruct
+    private void start() {
+        ingestionExecutor.execute(this::drainPendingTicks);
+    }
+
+    @PreDestroy
+    private void stop() {
+        ingestionExecutor.shutdownNow();
+    }
+
+    private void enqueue(PendingTick pendingTick) {
+        try {
+            pendingTicks.put(pendingTick);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while queueing tick for ingestion!");
+        }
+    }
+
+    private void drainPendingTicks() {
+        List<PendingTick> batch = new ArrayList<>(batchSize);
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(pendingTicks.take());
+                long deadline = System.nanoTime() + batchDeadlineNanos;
+
+                pendingTicks.drainTo(batch, batchSize - batch.size());
+                while (batch.size() < batchSize) {
+                    PendingTick pendingTick = pendingTicks.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (pendingTick == null) {
+                        break;
+                    }
+                    batch.add(pendingTick);
+                }
+
+                applyBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void applyBatch(List<PendingTick> batch) {
+        for (PendingTick pendingTick : batch) {
+            if (pendingTick.task != null) {
+                tickBatch.runAfterTicks(pendingTick.task);
+            } else if (pendingTick.conflatedTick != null) {
+                tickBatch.addTick(pendingTick.conflatedTick);
+            } else {
+                tickBatch.addTick(pendingTick.tickResponse, pendingTick.enqueuedAt);
+            }
+        }
+        tickBatch.apply();
+    }
+
+    @AllArgsConstructor
+    private static class PendingTick {
+
+        private final TickResponse tickResponse;
+        private final TickConflator.ConflatedTick conflatedTick;
+        private final Runnable task;
+        private final long enqueuedAt;
+
+    }
+
+}
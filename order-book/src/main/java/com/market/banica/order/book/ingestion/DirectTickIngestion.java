@@ -0,0 +1,38 @@
+package com.market.banica.order.book.ingestion;
+
+import com.aurora.Aurora;
+import com.market.banica.order.book.metrics.LatencyHistogram;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
+import com.market.banica.order.book.model.ItemMarket;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "orderbook.ingestion.mode", havingValue = "direct", matchIfMissing = true)
+public class DirectTickIngestion implements TickIngestion {
+
+    private static final String INGESTION_MODE = "direct";
+
+    private final ItemMarket itemMarket;
+    private final LatencyHistogram tickToBookNanos;
+
+    @Autowired
+    public DirectTickIngestion(ItemMarket itemMarket, OrderBookMetrics metrics) {
+        this.itemMarket = itemMarket;
+        this.tickToBookNanos = metrics.getTickToBookNanos(INGESTION_MODE);
+    }
+
+    @Override
+    public void ingestTick(Aurora.AuroraResponse response) {
+        long receivedAt = System.nanoTime();
+        itemMarket.updateItem(response);
+        tickToBookNanos.record(System.nanoTime() - receivedAt);
+    }
+
+    @Override
+    public void runAfterPendingTicks(Runnable task) {
+        task.run();
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.market.banica.order.book.ingestion;
+
+import com.aurora.Aurora;
+import com.market.TickResponse;
+import com.market.banica.common.exception.IncorrectResponseException;
+import com.market.banica.order.book.metrics.LatencyHistogram;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
+import com.market.banica.order.book.model.ItemMarket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+@Component
+@ConditionalOnProperty(name = "orderbook.ingestion.mode", havingValue = "ring-buffer")
+public class RingBufferTickIngestion implements TickIngestion {
+
+    private static final Logger LOGGER = LogManager.getLogger(RingBufferTickIngestion.class);
+    private static final String INGESTION_MODE = "ring-buffer";
+    private static final int IDLE_SPINS = 100;
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    private final ItemMarket itemMarket;
+    private final TickRingBuffer[] shards;
+    private final int batchSize;
+    private final TickConflator tickConflator;
+    private final LatencyHistogram tickToBookNanos;
+    private final ExecutorService writerExecutor;
+    private final ThreadLocal<TickRingBuffer> ownedShard = new ThreadLocal<>();
+
+    @Autowired
+    public RingBufferTickIngestion(ItemMarket itemMarket, OrderBookMetrics metrics,
+                                   @Value("${orderbook.ingestion.ring.shards}") final int shardsCount,
+                                   @Value("${orderbook.ingestion.ring.capacity}") final int ringCapacity,
+                                   @Value("${orderbook.ingestion.batch.size}") final int batchSize,
+                                   @Value("${orderbook.ingestion.conflation.enabled}") final boolean conflating) {
+        this.itemMarket = itemMarket;
+        this.shards = new TickRingBuffer[shardsCount];
+        this.batchSize = batchSize;
+        this.tickConflator = conflating ? new TickConflator() : null;
+        this.tickToBookNanos = metrics.getTickToBookNanos(INGESTION_MODE);
+        this.writerExecutor = Executors.newFixedThreadPool(shardsCount);
+
+        for (int shard = 0; shard < shardsCount; shard++) {
+            shards[shard] = new TickRingBuffer(ringCapacity);
+        }
+    }
+
+    @Override
+    public void ingestTick(Aurora.AuroraResponse response) {
+        TickResponse tickResponse;
+        try {
+            tickResponse = TickBatch.unpackTick(response);
+        } catch (IncorrectResponseException e) {
+            LOGGER.error(e.getMessage());
+            return;
+        }
+
+        TickRingBuffer shard = shardOf(tickResponse.getGoodName());
+        if (tickConflator == null) {
+            shard.publishTick(tickResponse);
+            return;
+        }
+
+        TickConflator.ConflatedTick conflatedTick = tickConflator.conflate(tickResponse, System.nanoTime());
+        if (conflatedTick != null) {
+            shard.publishTick(conflatedTick);
+        }
+    }
+
+    @Override
+    public void runAfterPendingTicks(Runnable task) {
+        if (tickConflator != null) {
+            tickConflator.startNewTicks();
+        }
+        AtomicInteger pendingShards = new AtomicInteger(shards.length);
+        Runnable shardBarrier = () -> {
+            if (pendingShards.decrementAndGet() == 0) {
+                task.run();
+            }
+        };
+
+        for (TickRingBuffer shard : shards) {
+            shard.publishTask(shardBarrier);
+        }
+    }
+
+    @PostConstruct
+    private void start() {
+        for (TickRingBuffer shard : shards) {
+            writerExecutor.execute(() -> writeShard(shard));
+        }
+        itemMarket.setBookWriter(this::executeOnWriter);
+    }
+
+    @PreDestroy
+    private void stop() {
+        itemMarket.setBookWriter(null);
+        writerExecutor.shutdownNow();
+    }
+
+    private TickRingBuffer shardOf(String goodName) {
+        return shards[Math.floorMod(goodName.hashCode(), shards.length)];
+    }
+
+    private void executeOnWriter(String itemName, Runnable mutation) {
+        TickRingBuffer shard = shardOf(itemName);
+        if (ownedShard.get() == shard) {
+            mutation.run();
+        } else {
+            shard.publishTask(mutation);
+        }
+    }
+
+    private void writeShard(TickRingBuffer shard) {
+        ownedShard.set(shard);
+        TickBatch tickBatch = new TickBatch(itemMarket, tickToBookNanos, true);
+        int idleSpins = 0;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            if (shard.consume(tickBatch, batchSize) > 0) {
+                idleSpins = 0;
+            } else if (idleSpins < IDLE_SPINS) {
+                idleSpins++;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+}
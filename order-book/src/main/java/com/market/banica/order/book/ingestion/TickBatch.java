@@ -0,0 +1,103 @@
+package com.market.banica.order.book.ingestion;
+
+import com.aurora.Aurora;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.market.TickResponse;
+import com.market.banica.common.exception.IncorrectResponseException;
+import com.market.banica.order.book.metrics.LatencyHistogram;
+import com.market.banica.order.book.model.ItemMarket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class TickBatch {
+
+    private static final Logger LOGGER = LogManager.getLogger(TickBatch.class);
+
+    private final ItemMarket itemMarket;
+    private final LatencyHistogram tickToBookNanos;
+    private final boolean owningBooks;
+    private final Map<String, List<TickResponse>> ticksByGood = new LinkedHashMap<>();
+
+    private long[] enqueuedAt = new long[64];
+    private int pendingTicks;
+
+    TickBatch(ItemMarket itemMarket) {
+        this(itemMarket, new LatencyHistogram());
+    }
+
+    TickBatch(ItemMarket itemMarket, LatencyHistogram tickToBookNanos) {
+        this(itemMarket, tickToBookNanos, false);
+    }
+
+    TickBatch(ItemMarket itemMarket, LatencyHistogram tickToBookNanos, boolean owningBooks) {
+        this.itemMarket = itemMarket;
+        this.tickToBookNanos = tickToBookNanos;
+        this.owningBooks = owningBooks;
+    }
+
+    static TickResponse unpackTick(Aurora.AuroraResponse response) {
+        try {
+            return response.getMessage().unpack(TickResponse.class);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IncorrectResponseException("Incorrect response! Response must be from TickResponse type.");
+        }
+    }
+
+    void addTick(TickResponse tickResponse, long tickEnqueuedAt) {
+        recordEnqueuedAt(tickEnqueuedAt);
+        ticksByGood.computeIfAbsent(tickResponse.getGoodName(), goodName -> new ArrayList<>()).add(tickResponse);
+    }
+
+    void addTick(TickConflator.ConflatedTick conflatedTick) {
+        recordEnqueuedAt(conflatedTick.getEnqueuedAt());
+        TickResponse tickResponse = conflatedTick.release();
+        // ticks of a level net out to nothing, so there is no level to open or update
+        if (tickResponse.getQuantity() != 0) {
+            ticksByGood.computeIfAbsent(tickResponse.getGoodName(), goodName -> new ArrayList<>()).add(tickResponse);
+        }
+    }
+
+    void runAfterTicks(Runnable task) {
+        apply();
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            LOGGER.error("Task queued after pending ticks has failed: {}", e.getMessage());
+        }
+    }
+
+    void apply() {
+        for (Map.Entry<String, List<TickResponse>> goodTicks : ticksByGood.entrySet()) {
+            try {
+                if (owningBooks) {
+                    itemMarket.updateOwnedItems(goodTicks.getKey(), goodTicks.getValue());
+                } else {
+                    itemMarket.updateItems(goodTicks.getKey(), goodTicks.getValue());
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not apply {} ticks for {}: {}", goodTicks.getValue().size(), goodTicks.getKey(), e.getMessage());
+            }
+        }
+        ticksByGood.clear();
+
+        long appliedAt = System.nanoTime();
+        for (int tick = 0; tick < pendingTicks; tick++) {
+            tickToBookNanos.record(appliedAt - enqueuedAt[tick]);
+        }
+        pendingTicks = 0;
+    }
+
+    private void recordEnqueuedAt(long tickEnqueuedAt) {
+        if (pendingTicks == enqueuedAt.length) {
+            enqueuedAt = Arrays.copyOf(enqueuedAt, pendingTicks * 2);
+        }
+        enqueuedAt[pendingTicks++] = tickEnqueuedAt;
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.market.banica.order.book.ingestion;
+
+import com.market.Origin;
+import com.market.TickResponse;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+class TickConflator {
+
+    private final ConcurrentMap<LevelKey, ConflatedTick> queuedTicks = new ConcurrentHashMap<>();
+
+    /**
+     * Merges the tick into the tick of the same good, origin and price that is still queued.
+     * Returns the tick to queue when there is none, or null when the tick was merged.
+     */
+    ConflatedTick conflate(TickResponse tickResponse, long enqueuedAt) {
+        LevelKey level = new LevelKey(tickResponse.getGoodName(), tickResponse.getOrigin(), tickResponse.getPrice());
+        ConflatedTick[] queuedTick = new ConflatedTick[1];
+
+        queuedTicks.compute(level, (key, conflatedTick) -> {
+            if (conflatedTick != null) {
+                conflatedTick.merge(tickResponse);
+                return conflatedTick;
+            }
+            queuedTick[0] = new ConflatedTick(key, tickResponse.toBuilder(), enqueuedAt);
+            return queuedTick[0];
+        });
+        return queuedTick[0];
+    }
+
+    /**
+     * Ticks arriving after this call are queued on their own, so they are never applied ahead of
+     * a task queued in between.
+     */
+    void startNewTicks() {
+        queuedTicks.clear();
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class LevelKey {
+
+        private final String goodName;
+        private final Origin origin;
+        private final double price;
+
+    }
+
+    final class ConflatedTick {
+
+        private final LevelKey level;
+        private final TickResponse.Builder tick;
+        private final long enqueuedAt;
+
+        private ConflatedTick(LevelKey level, TickResponse.Builder tick, long enqueuedAt) {
+            this.level = level;
+            this.tick = tick;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        long getEnqueuedAt() {
+            return enqueuedAt;
+        }
+
+        /**
+         * Dequeues the tick, so later ticks of its level are queued again, and returns its net quantity.
+         */
+        TickResponse release() {
+            queuedTicks.remove(level, this);
+            synchronized (this) {
+                return tick.build();
+            }
+        }
+
+        private synchronized void merge(TickResponse tickResponse) {
+            tick.setQuantity(tick.getQuantity() + tickResponse.getQuantity())
+                    .setTimestamp(tickResponse.getTimestamp());
+        }
+
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.market.banica.order.book.ingestion;
+
+import com.aurora.Aurora;
+
+public interface TickIngestion {
+
+    void ingestTick(Aurora.AuroraResponse response);
+
+    void runAfterPendingTicks(Runnable task);
+
+}
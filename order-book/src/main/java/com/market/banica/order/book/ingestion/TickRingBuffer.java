@@ -0,0 +1,96 @@
+package com.market.banica.order.book.ingestion;
+
+import com.market.TickResponse;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+class TickRingBuffer {
+
+    private static final long FULL_BUFFER_PARK_NANOS = 1_000;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimedSequence = new AtomicLong(-1);
+    private volatile long consumedSequence = -1;
+
+    TickRingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of two but was " + capacity);
+        }
+        this.slots = new Slot[capacity];
+        this.mask = capacity - 1;
+        for (int index = 0; index < capacity; index++) {
+            slots[index] = new Slot();
+        }
+    }
+
+    void publishTick(TickResponse tickResponse) {
+        publish(tickResponse, null, null);
+    }
+
+    void publishTick(TickConflator.ConflatedTick conflatedTick) {
+        publish(null, conflatedTick, null);
+    }
+
+    void publishTask(Runnable task) {
+        publish(null, null, task);
+    }
+
+    int consume(TickBatch tickBatch, int maxTicks) {
+        long nextSequence = consumedSequence + 1;
+        int consumed = 0;
+
+        while (consumed < maxTicks) {
+            Slot slot = slots[(int) nextSequence & mask];
+            if (slot.sequence != nextSequence) {
+                break;
+            }
+
+            if (slot.task != null) {
+                tickBatch.runAfterTicks(slot.task);
+            } else if (slot.conflatedTick != null) {
+                tickBatch.addTick(slot.conflatedTick);
+            } else {
+                tickBatch.addTick(slot.tickResponse, slot.publishedAt);
+            }
+            slot.tickResponse = null;
+            slot.conflatedTick = null;
+            slot.task = null;
+
+            consumedSequence = nextSequence;
+            nextSequence++;
+            consumed++;
+        }
+
+        if (consumed > 0) {
+            tickBatch.apply();
+        }
+        return consumed;
+    }
+
+    private void publish(TickResponse tickResponse, TickConflator.ConflatedTick conflatedTick, Runnable task) {
+        long sequence = claimedSequence.incrementAndGet();
+        while (sequence - slots.length > consumedSequence) {
+            LockSupport.parkNanos(FULL_BUFFER_PARK_NANOS);
+        }
+
+        Slot slot = slots[(int) sequence & mask];
+        slot.tickResponse = tickResponse;
+        slot.conflatedTick = conflatedTick;
+        slot.task = task;
+        slot.publishedAt = System.nanoTime();
+        slot.sequence = sequence;
+    }
+
+    private static class Slot {
+
+        private TickResponse tickResponse;
+        private TickConflator.ConflatedTick conflatedTick;
+        private Runnable task;
+        private long publishedAt;
+        private volatile long sequence = -1;
+
+    }
+
+}
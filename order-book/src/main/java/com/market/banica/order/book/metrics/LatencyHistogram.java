@@ -0,0 +1,100 @@
+package com.market.banica.order.book.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    private static final double[] REPORTED_PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] REPORTED_PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long recordedValue = Math.min(Math.max(value, 0), MAX_VALUE);
+        buckets.incrementAndGet(bucketIndex(recordedValue));
+        count.increment();
+        sum.add(recordedValue);
+        if (recordedValue > max.get()) {
+            max.accumulateAndGet(recordedValue, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long recordedCount = count.sum();
+        return recordedCount == 0 ? 0 : sum.sum() / recordedCount;
+    }
+
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long totalCount = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts[bucket] = buckets.get(bucket);
+            totalCount += counts[bucket];
+        }
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seenCount = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seenCount += counts[bucket];
+            if (seenCount >= rank) {
+                return Math.min(highestEquivalentValue(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("count", getCount());
+        statistics.put("mean", getMean());
+        for (int percentile = 0; percentile < REPORTED_PERCENTILES.length; percentile++) {
+            statistics.put(REPORTED_PERCENTILE_NAMES[percentile], getValueAtPercentile(REPORTED_PERCENTILES[percentile]));
+        }
+        statistics.put("max", getMax());
+        return statistics;
+    }
+
+    private static int bucketIndex(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1));
+        return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+    }
+
+    private static long highestEquivalentValue(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKET_HALF_COUNT - 1;
+        long subBucket = bucket - (long) shift * SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+}
@@ -0,0 +1,245 @@
+package com.market.banica.order.book.metrics;
+
+import com.market.Origin;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+@Component
+public class OrderBookMetrics {
+
+    private static final Origin[] ORIGINS = {Origin.AMERICA, Origin.ASIA, Origin.EUROPE};
+    public static final int ORIGIN_SLOTS = Origin.EUROPE.getNumber() + 1;
+
+    private final Map<String, ItemMetrics> itemMetrics = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> tickToBookNanosByMode = new ConcurrentHashMap<>();
+
+    private final LongAdder[] ticksByOrigin = createCounters();
+    private final LatencyHistogram[] tickAgeMillisByOrigin = createHistograms();
+
+    @Getter
+    private final LongAdder receivedMessages = new LongAdder();
+    @Getter
+    private final LongAdder streamErrors = new LongAdder();
+    @Getter
+    private final LongAdder streamCompletions = new LongAdder();
+    @Getter
+    private final LatencyHistogram ingestionNanos = new LatencyHistogram();
+
+    public ItemMetrics addItem(String itemName, IntSupplier depth) {
+        ItemMetrics metrics = new ItemMetrics(depth);
+        itemMetrics.put(itemName, metrics);
+        return metrics;
+    }
+
+    public void removeItem(String itemName) {
+        itemMetrics.remove(itemName);
+    }
+
+    public ItemMetrics getItemMetrics(String itemName) {
+        return itemMetrics.get(itemName);
+    }
+
+    public void recordTickAge(Origin origin, long ageMillis) {
+        if (origin == Origin.UNSPECIFIED || origin == Origin.UNRECOGNIZED) {
+            return;
+        }
+        tickAgeMillisByOrigin[origin.getNumber()].record(ageMillis);
+    }
+
+    public void recordTicks(ItemMetrics metrics, int[] ticksByOrigin) {
+        for (Origin origin : ORIGINS) {
+            int ticks = ticksByOrigin[origin.getNumber()];
+            if (ticks == 0) {
+                continue;
+            }
+            if (metrics != null) {
+                metrics.ticksByOrigin[origin.getNumber()].add(ticks);
+            }
+            this.ticksByOrigin[origin.getNumber()].add(ticks);
+        }
+    }
+
+    public void recordLayerQuery(String itemName, long nanos) {
+        ItemMetrics metrics = itemMetrics.get(itemName);
+        if (metrics != null) {
+            metrics.layerQueryNanos.record(nanos);
+        }
+    }
+
+    public void recordFillCostQuery(String itemName, long nanos) {
+        ItemMetrics metrics = itemMetrics.get(itemName);
+        if (metrics != null) {
+            metrics.fillCostQueryNanos.record(nanos);
+        }
+    }
+
+    public LatencyHistogram getTickToBookNanos(String ingestionMode) {
+        return tickToBookNanosByMode.computeIfAbsent(ingestionMode, mode -> new LatencyHistogram());
+    }
+
+    public long getTicks(Origin origin) {
+        return ticksByOrigin[origin.getNumber()].sum();
+    }
+
+    public LatencyHistogram getTickAgeMillis(Origin origin) {
+        return tickAgeMillisByOrigin[origin.getNumber()];
+    }
+
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new TreeMap<>();
+        statistics.put("receivedMessages", receivedMessages.sum());
+        statistics.put("streamErrors", streamErrors.sum());
+        statistics.put("streamCompletions", streamCompletions.sum());
+        putHistogram(statistics, "ingestionNanos", ingestionNanos);
+        for (Map.Entry<String, LatencyHistogram> mode : tickToBookNanosByMode.entrySet()) {
+            putHistogram(statistics, "tickToBookNanos." + mode.getKey(), mode.getValue());
+        }
+        for (Origin origin : ORIGINS) {
+            statistics.put(origin + ".ticks", getTicks(origin));
+            putHistogram(statistics, origin + ".tickAgeMillis", getTickAgeMillis(origin));
+        }
+        for (Map.Entry<String, ItemMetrics> item : itemMetrics.entrySet()) {
+            ItemMetrics metrics = item.getValue();
+            String prefix = item.getKey() + ".";
+            statistics.put(prefix + "depth", (long) metrics.getDepth());
+            for (Origin origin : ORIGINS) {
+                statistics.put(prefix + origin + ".ticks", metrics.getTicks(origin));
+            }
+            putHistogram(statistics, prefix + "lockWaitNanos", metrics.lockWaitNanos);
+            putHistogram(statistics, prefix + "updateNanos", metrics.updateNanos);
+            putHistogram(statistics, prefix + "layerQueryNanos", metrics.layerQueryNanos);
+            putHistogram(statistics, prefix + "fillCostQueryNanos", metrics.fillCostQueryNanos);
+        }
+        return statistics;
+    }
+
+    public String scrape() {
+        StringBuilder scrape = new StringBuilder();
+        appendType(scrape, "orderbook_received_messages_total", "counter");
+        appendSample(scrape, "orderbook_received_messages_total", "", receivedMessages.sum());
+        appendType(scrape, "orderbook_stream_errors_total", "counter");
+        appendSample(scrape, "orderbook_stream_errors_total", "", streamErrors.sum());
+        appendType(scrape, "orderbook_stream_completions_total", "counter");
+        appendSample(scrape, "orderbook_stream_completions_total", "", streamCompletions.sum());
+        appendType(scrape, "orderbook_ingestion_nanos", "summary");
+        appendSummary(scrape, "orderbook_ingestion_nanos", "", ingestionNanos);
+        appendType(scrape, "orderbook_tick_to_book_nanos", "summary");
+        for (Map.Entry<String, LatencyHistogram> mode : new TreeMap<>(tickToBookNanosByMode).entrySet()) {
+            appendSummary(scrape, "orderbook_tick_to_book_nanos", "mode=\"" + mode.getKey() + "\"", mode.getValue());
+        }
+
+        appendType(scrape, "orderbook_tick_age_millis", "summary");
+        for (Origin origin : ORIGINS) {
+            appendSummary(scrape, "orderbook_tick_age_millis", "origin=\"" + origin + "\"", getTickAgeMillis(origin));
+        }
+
+        Map<String, ItemMetrics> items = new TreeMap<>(itemMetrics);
+        appendType(scrape, "orderbook_ticks_total", "counter");
+        for (Map.Entry<String, ItemMetrics> item : items.entrySet()) {
+            for (Origin origin : ORIGINS) {
+                appendSample(scrape, "orderbook_ticks_total", itemLabel(item.getKey()) + ",origin=\"" + origin + "\"",
+                        item.getValue().getTicks(origin));
+            }
+        }
+        appendType(scrape, "orderbook_depth_levels", "gauge");
+        for (Map.Entry<String, ItemMetrics> item : items.entrySet()) {
+            appendSample(scrape, "orderbook_depth_levels", itemLabel(item.getKey()), item.getValue().getDepth());
+        }
+        appendItemSummaries(scrape, items, "orderbook_lock_wait_nanos", ItemMetrics::getLockWaitNanos);
+        appendItemSummaries(scrape, items, "orderbook_update_nanos", ItemMetrics::getUpdateNanos);
+        appendItemSummaries(scrape, items, "orderbook_layer_query_nanos", ItemMetrics::getLayerQueryNanos);
+        appendItemSummaries(scrape, items, "orderbook_fill_cost_query_nanos", ItemMetrics::getFillCostQueryNanos);
+        return scrape.toString();
+    }
+
+    private static void appendItemSummaries(StringBuilder scrape, Map<String, ItemMetrics> items, String name,
+                                            Function<ItemMetrics, LatencyHistogram> histogram) {
+        appendType(scrape, name, "summary");
+        for (Map.Entry<String, ItemMetrics> item : items.entrySet()) {
+            appendSummary(scrape, name, itemLabel(item.getKey()), histogram.apply(item.getValue()));
+        }
+    }
+
+    private static void putHistogram(Map<String, Long> statistics, String name, LatencyHistogram histogram) {
+        for (Map.Entry<String, Long> statistic : histogram.getStatistics().entrySet()) {
+            statistics.put(name + "." + statistic.getKey(), statistic.getValue());
+        }
+    }
+
+    private static void appendType(StringBuilder scrape, String name, String type) {
+        scrape.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void appendSample(StringBuilder scrape, String name, String labels, long value) {
+        scrape.append(name);
+        if (!labels.isEmpty()) {
+            scrape.append('{').append(labels).append('}');
+        }
+        scrape.append(' ').append(value).append('\n');
+    }
+
+    private static void appendSummary(StringBuilder scrape, String name, String labels, LatencyHistogram histogram) {
+        String separator = labels.isEmpty() ? "" : ",";
+        appendSample(scrape, name, labels + separator + "quantile=\"0.5\"", histogram.getValueAtPercentile(50));
+        appendSample(scrape, name, labels + separator + "quantile=\"0.9\"", histogram.getValueAtPercentile(90));
+        appendSample(scrape, name, labels + separator + "quantile=\"0.99\"", histogram.getValueAtPercentile(99));
+        appendSample(scrape, name, labels + separator + "quantile=\"0.999\"", histogram.getValueAtPercentile(99.9));
+        appendSample(scrape, name + "_sum", labels, histogram.getSum());
+        appendSample(scrape, name + "_count", labels, histogram.getCount());
+    }
+
+    private static String itemLabel(String itemName) {
+        return "item=\"" + itemName.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static LongAdder[] createCounters() {
+        LongAdder[] counters = new LongAdder[ORIGIN_SLOTS];
+        for (int origin = 0; origin < ORIGIN_SLOTS; origin++) {
+            counters[origin] = new LongAdder();
+        }
+        return counters;
+    }
+
+    private static LatencyHistogram[] createHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[ORIGIN_SLOTS];
+        for (int origin = 0; origin < ORIGIN_SLOTS; origin++) {
+            histograms[origin] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    @Getter
+    public static final class ItemMetrics {
+
+        @Getter(AccessLevel.NONE)
+        private final IntSupplier depth;
+        @Getter(AccessLevel.NONE)
+        private final LongAdder[] ticksByOrigin = createCounters();
+        private final LatencyHistogram lockWaitNanos = new LatencyHistogram();
+        private final LatencyHistogram updateNanos = new LatencyHistogram();
+        private final LatencyHistogram layerQueryNanos = new LatencyHistogram();
+        private final LatencyHistogram fillCostQueryNanos = new LatencyHistogram();
+
+        private ItemMetrics(IntSupplier depth) {
+            this.depth = depth;
+        }
+
+        public int getDepth() {
+            return depth.getAsInt();
+        }
+
+        public long getTicks(Origin origin) {
+            return ticksByOrigin[origin.getNumber()].sum();
+        }
+
+    }
+
+}
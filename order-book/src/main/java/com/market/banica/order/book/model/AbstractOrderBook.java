@@ -0,0 +1,137 @@
+package com.market.banica.order.book.model;
+
+import com.market.Origin;
+import lombok.Getter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public abstract class AbstractOrderBook implements OrderBook {
+
+    private static final Logger LOGGER = LogManager.getLogger(AbstractOrderBook.class);
+    private static final int INITIAL_CHANGES_CAPACITY = 16;
+
+    @Getter
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Getter
+    protected volatile long version;
+    private final AtomicReference<ItemOrderBookSnapshot> snapshot =
+            new AtomicReference<>(new ItemOrderBookSnapshot(0, Collections.emptyList()));
+
+    private final List<ItemOrderBookListener> listeners = new CopyOnWriteArrayList<>();
+
+    private double[] changedPrices = new double[INITIAL_CHANGES_CAPACITY];
+    private long[] changedQuantities = new long[INITIAL_CHANGES_CAPACITY];
+    private Origin[] changedOrigins = new Origin[INITIAL_CHANGES_CAPACITY];
+    private int changedLevels;
+
+    @Override
+    public void addListener(ItemOrderBookListener listener) {
+        listener.onSnapshot(publishSnapshot());
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(ItemOrderBookListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void publishChanges() {
+        if (changedLevels == 0) {
+            return;
+        }
+
+        // listeners keep the levels after this call, so only they are allocated, once per published batch
+        List<Item> changes = new ArrayList<>(changedLevels);
+        for (int change = 0; change < changedLevels; change++) {
+            changes.add(new Item(changedPrices[change], changedQuantities[change], changedOrigins[change]));
+        }
+        changedLevels = 0;
+        List<Item> publishedLevels = Collections.unmodifiableList(changes);
+        for (ItemOrderBookListener listener : listeners) {
+            try {
+                listener.onLevelsChanged(version, publishedLevels);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Removing order book listener after failed update: {}", e.getMessage());
+                listeners.remove(listener);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (ItemOrderBookListener listener : listeners) {
+            try {
+                listener.onClosed();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Order book listener failed while closing: {}", e.getMessage());
+            }
+        }
+        listeners.clear();
+    }
+
+    @Override
+    public ItemOrderBookSnapshot getSnapshot() {
+        ItemOrderBookSnapshot publishedSnapshot = snapshot.get();
+        if (publishedSnapshot.getVersion() == version) {
+            return publishedSnapshot;
+        }
+
+        // readers never wait for a writer, while one holds the lock they get the last published snapshot
+        if (!lock.readLock().tryLock()) {
+            return publishedSnapshot;
+        }
+        try {
+            return publishSnapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ItemOrderBookSnapshot getPublishedSnapshot() {
+        return snapshot.get();
+    }
+
+    @Override
+    public ItemOrderBookSnapshot publishSnapshot() {
+        ItemOrderBookSnapshot publishedSnapshot = snapshot.get();
+        long currentVersion = version;
+        if (publishedSnapshot.getVersion() == currentVersion) {
+            return publishedSnapshot;
+        }
+
+        // readers holding the read lock may race to build the same version, only the first one is published
+        ItemOrderBookSnapshot builtSnapshot = takeSnapshot(currentVersion);
+        return snapshot.compareAndSet(publishedSnapshot, builtSnapshot) ? builtSnapshot : snapshot.get();
+    }
+
+    protected abstract ItemOrderBookSnapshot takeSnapshot(long snapshotVersion);
+
+    protected void recordChange(double price, long quantity, Origin origin) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+
+        if (changedLevels == changedPrices.length) {
+            changedPrices = Arrays.copyOf(changedPrices, changedLevels * 2);
+            changedQuantities = Arrays.copyOf(changedQuantities, changedLevels * 2);
+            changedOrigins = Arrays.copyOf(changedOrigins, changedLevels * 2);
+        }
+        changedPrices[changedLevels] = price;
+        // levels without a positive quantity are not part of the book's depth
+        changedQuantities[changedLevels] = Math.max(quantity, 0);
+        changedOrigins[changedLevels] = origin;
+        changedLevels++;
+    }
+
+}
@@ -1,13 +1,11 @@
 package com.market.banica.order.book.model;
 
 import com.market.Origin;
-import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-@AllArgsConstructor
 @NoArgsConstructor
 @Getter
 @Setter
@@ -17,6 +15,14 @@ public class Item implements Comparable<Item> {
     private double price;
     private long quantity;
     private Origin origin;
+    @EqualsAndHashCode.Exclude
+    private long updatedAt;
+
+    public Item(double price, long quantity, Origin origin) {
+        this.price = price;
+        this.quantity = quantity;
+        this.origin = origin;
+    }
 
     @Override
     public int compareTo(Item other) {
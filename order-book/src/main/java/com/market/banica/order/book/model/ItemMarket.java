@@ -2,43 +2,91 @@ package com.market.banica.order.book.model;
 
 import com.aurora.Aurora;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.market.Origin;
 import com.market.TickResponse;
 import com.market.banica.common.exception.IncorrectResponseException;
 import com.market.banica.common.validator.DataValidator;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
+import com.orderbook.ItemFillCostResponse;
+import com.orderbook.ItemOrderBookRequest;
 import com.orderbook.OrderBookLayer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 @Component
 public class ItemMarket {
 
     private static final Logger LOGGER = LogManager.getLogger(ItemMarket.class);
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-    private final Map<String, TreeSet<Item>> allItems;
+    private static final Map<String, Origin> MARKET_ORIGINS = mapMarketOrigins();
+    private static final String PRIMITIVE_BOOK = "primitive";
+    private final Map<String, OrderBook> allItems;
     private final Map<String, Long> productsQuantity;
+    private final Map<String, List<Item>> restoredItems;
+    private final LongAdder evictedLevels = new LongAdder();
+    private final LongAdder evictedQuantity = new LongAdder();
+    private volatile OrderBookBounds bounds = OrderBookBounds.UNBOUNDED;
+    private volatile OrderBookWriter bookWriter;
+
+    private final Supplier<OrderBook> orderBookFactory;
+    private final OrderBookMetrics metrics;
 
-    @Autowired
     public ItemMarket() {
+        this(ItemOrderBook::new, new OrderBookMetrics());
+    }
+
+    @Autowired
+    public ItemMarket(@Value("${orderbook.book.implementation:tree}") final String bookImplementation,
+                      OrderBookMetrics metrics) {
+        this(PRIMITIVE_BOOK.equals(bookImplementation) ? PrimitiveOrderBook::new : ItemOrderBook::new, metrics);
+        LOGGER.info("Using {} order book implementation", bookImplementation);
+    }
+
+    private ItemMarket(Supplier<OrderBook> orderBookFactory, OrderBookMetrics metrics) {
+        this.orderBookFactory = orderBookFactory;
+        this.metrics = metrics;
         this.allItems = new ConcurrentHashMap<>();
         this.productsQuantity = new ConcurrentHashMap<>();
+        this.restoredItems = new ConcurrentHashMap<>();
     }
 
 
     public Optional<Set<Item>> getItemSetByName(String itemName) {
-        return Optional.ofNullable(this.allItems.get(itemName));
+        OrderBook itemOrderBook = this.allItems.get(itemName);
+        if (itemOrderBook == null) {
+            return Optional.empty();
+        }
+
+        if (this.bookWriter != null) {
+            return Optional.of(itemsOf(snapshotOf(itemName, itemOrderBook)));
+        }
+
+        try {
+            itemOrderBook.getLock().readLock().lock();
+            return Optional.of(itemOrderBook.getItems());
+        } finally {
+            itemOrderBook.getLock().readLock().unlock();
+        }
     }
 
     public Set<String> getItemNameSet() {
@@ -49,133 +97,403 @@ public class ItemMarket {
         return productsQuantity;
     }
 
+    public OrderBookBounds getBounds() {
+        return bounds;
+    }
+
+    public void setBounds(OrderBookBounds bounds) {
+        this.bounds = bounds;
+        LOGGER.info("Order book bounds set to max depth: {}, price band: {}, max level age: {} ms",
+                bounds.getMaxDepth(), bounds.getPriceBand(), bounds.getMaxLevelAgeMillis());
+        if (bounds.isTrimming() || bounds.getMaxLevelAgeMillis() > 0) {
+            LOGGER.warn("Bounded order books are lossy: ticks for an evicted level are applied to an empty level "
+                    + "until the item is resubscribed");
+        }
+    }
+
+    public void setBookWriter(OrderBookWriter bookWriter) {
+        this.bookWriter = bookWriter;
+        LOGGER.info(bookWriter == null ? "Order books are updated under their locks"
+                : "Order books are updated by their owning writers without locks");
+    }
+
+    public long getEvictedLevels() {
+        return evictedLevels.sum();
+    }
+
+    public long getEvictedQuantity() {
+        return evictedQuantity.sum();
+    }
+
     public void addTrackedItem(String itemName) {
-        this.allItems.put(itemName, new TreeSet<>());
-        this.productsQuantity.put(itemName, 0L);
+        OrderBook itemOrderBook = orderBookFactory.get();
+        List<Item> itemLevels = this.restoredItems.remove(itemName);
+        long restoredQuantity = itemLevels == null ? 0 : itemOrderBook.restoreItems(itemLevels);
+        itemOrderBook.publishChanges();
+
+        this.allItems.put(itemName, itemOrderBook);
+        this.productsQuantity.put(itemName, restoredQuantity);
+        this.metrics.addItem(itemName, itemOrderBook::size);
+    }
+
+    public void restoreItems(Map<String, List<Item>> itemLevels) {
+        this.restoredItems.putAll(itemLevels);
+        LOGGER.info("Restored order book levels of {} items", itemLevels.size());
+    }
+
+    public Map<String, ItemOrderBookSnapshot> getSnapshots() {
+        Map<String, ItemOrderBookSnapshot> snapshots = new TreeMap<>();
+        for (Map.Entry<String, List<Item>> restoredItem : this.restoredItems.entrySet()) {
+            snapshots.put(restoredItem.getKey(), new ItemOrderBookSnapshot(0, restoredItem.getValue()));
+        }
+        for (Map.Entry<String, OrderBook> trackedItem : this.allItems.entrySet()) {
+            snapshots.put(trackedItem.getKey(), snapshotOf(trackedItem.getKey(), trackedItem.getValue()));
+        }
+        return snapshots;
     }
 
     public void removeUntrackedItem(String itemName) {
-        this.allItems.remove(itemName);
+        OrderBook itemOrderBook = this.allItems.remove(itemName);
         this.productsQuantity.remove(itemName);
+        this.metrics.removeItem(itemName);
+
+        if (itemOrderBook != null) {
+            mutateBook(itemName, itemOrderBook, itemOrderBook::close);
+        }
+    }
+
+    public boolean addDepthListener(String itemName, ItemOrderBookListener listener) {
+        OrderBook itemOrderBook = this.allItems.get(itemName);
+        if (itemOrderBook == null) {
+            return false;
+        }
+
+        mutateBook(itemName, itemOrderBook, () -> itemOrderBook.addListener(listener));
+        return true;
+    }
+
+    public void removeDepthListener(String itemName, ItemOrderBookListener listener) {
+        OrderBook itemOrderBook = this.allItems.get(itemName);
+        if (itemOrderBook != null) {
+            itemOrderBook.removeListener(listener);
+        }
     }
 
     public void updateItem(Aurora.AuroraResponse response) {
+        TickResponse tickResponse;
         try {
-            lock.writeLock().lock();
-            TickResponse tickResponse;
-            try {
-                tickResponse = response.getMessage().unpack(TickResponse.class);
-            } catch (InvalidProtocolBufferException e) {
-                throw new IncorrectResponseException("Incorrect response! Response must be from TickResponse type.");
-            }
-            String goodName = tickResponse.getGoodName();
-            DataValidator.validateIncomingData(goodName);
+            tickResponse = response.getMessage().unpack(TickResponse.class);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IncorrectResponseException("Incorrect response! Response must be from TickResponse type.");
+        }
+
+        updateItems(tickResponse.getGoodName(), tickResponse, null, false);
+    }
+
+    public void updateItems(String goodName, List<TickResponse> tickResponses) {
+        updateItems(goodName, null, tickResponses, false);
+    }
+
+    // must only be called by the writer that owns the book of the good, see setBookWriter
+    public void updateOwnedItems(String goodName, List<TickResponse> tickResponses) {
+        updateItems(goodName, null, tickResponses, true);
+    }
+
+    private void updateItems(String goodName, TickResponse singleTick, List<TickResponse> tickResponses, boolean owned) {
+        DataValidator.validateIncomingData(goodName);
+
+        OrderBook itemOrderBook = this.allItems.get(goodName);
+        if (itemOrderBook == null) {
+            LOGGER.error("Item: {} is not being tracked and cannot be added to itemMarket!", goodName);
+            return;
+        }
 
-            Set<Item> itemSet = this.allItems.get(goodName);
-            if (itemSet == null) {
-                LOGGER.error("Item: {} is not being tracked and cannot be added to itemMarket!", goodName);
-                return;
+        OrderBookMetrics.ItemMetrics itemMetrics = this.metrics.getItemMetrics(goodName);
+        long lockRequestedAt = System.nanoTime();
+        long lockAcquiredAt = lockRequestedAt;
+        int[] ticksByOrigin = new int[OrderBookMetrics.ORIGIN_SLOTS];
+        try {
+            if (!owned) {
+                itemOrderBook.getLock().writeLock().lock();
+                lockAcquiredAt = System.nanoTime();
             }
-            Item item = populateItem(tickResponse);
-            this.productsQuantity.merge(goodName, tickResponse.getQuantity(), Long::sum);
-            LOGGER.debug("Products data updated with value: {}" + tickResponse.toString());
-
-            if (itemSet.contains(item)) {
-                Item presentItem = itemSet
-                        .stream()
-                        .filter(currentItem -> currentItem.compareTo(item) == 0)
-                        .findFirst()
-                        .get();
-
-                long quantity = presentItem.getQuantity() + item.getQuantity();
-                if (quantity == 0) {
-                    itemSet.remove(presentItem);
-                    return;
+            long addedQuantity = 0;
+            long updatedAt = System.currentTimeMillis();
+            if (singleTick != null) {
+                addedQuantity += applyTick(itemOrderBook, ticksByOrigin, singleTick, updatedAt);
+            } else {
+                for (TickResponse tickResponse : tickResponses) {
+                    addedQuantity += applyTick(itemOrderBook, ticksByOrigin, tickResponse, updatedAt);
                 }
-                presentItem.setQuantity(quantity);
-                return;
             }
-            itemSet.add(item);
+            addedQuantity -= trimLevels(itemOrderBook);
+            this.productsQuantity.merge(goodName, addedQuantity, Long::sum);
+            itemOrderBook.publishChanges();
         } finally {
-            lock.writeLock().unlock();
+            if (!owned) {
+                itemOrderBook.getLock().writeLock().unlock();
+            }
+        }
+        this.metrics.recordTicks(itemMetrics, ticksByOrigin);
+        if (itemMetrics != null) {
+            if (!owned) {
+                itemMetrics.getLockWaitNanos().record(lockAcquiredAt - lockRequestedAt);
+            }
+            itemMetrics.getUpdateNanos().record(System.nanoTime() - lockAcquiredAt);
         }
+        LOGGER.debug("Products data for {} updated with {} ticks", goodName, singleTick != null ? 1 : tickResponses.size());
+    }
+
+    private long applyTick(OrderBook itemOrderBook, int[] ticksByOrigin, TickResponse tickResponse, long updatedAt) {
+        Origin origin = tickResponse.getOrigin();
+        if (origin == Origin.UNRECOGNIZED) {
+            LOGGER.warn("Ignoring tick for {} with unrecognized origin {}", tickResponse.getGoodName(),
+                    tickResponse.getOriginValue());
+            return 0;
+        }
+
+        long addedQuantity = 0;
+        if (itemOrderBook.isRestoredOrigin(origin)) {
+            addedQuantity -= itemOrderBook.removeItemsByOrigin(origin);
+        }
+        addedQuantity += itemOrderBook.addLevel(tickResponse.getPrice(), tickResponse.getQuantity(), origin, updatedAt);
+        ticksByOrigin[origin.getNumber()]++;
+        this.metrics.recordTickAge(origin, updatedAt - tickResponse.getTimestamp());
+        return addedQuantity;
     }
 
     public List<OrderBookLayer> getRequestedItem(String itemName, long quantity) {
         LOGGER.info("Getting requested item: {} with quantity: {}", itemName, quantity);
         DataValidator.validateIncomingData(itemName);
 
-        TreeSet<Item> items = this.allItems.get(itemName);
-        Long productQuantity = this.productsQuantity.get(itemName);
-
-        if (items == null || productQuantity < quantity) {
+        OrderBook itemOrderBook = this.allItems.get(itemName);
+        if (itemOrderBook == null) {
 
             return Collections.emptyList();
         }
 
-        List<OrderBookLayer> layers;
-        try {
-            lock.readLock().lock();
-            layers = new ArrayList<>();
-            Iterator<Item> iterator = items.iterator();
-            long itemLeft = quantity;
+        return populateItemLayers(snapshotOf(itemName, itemOrderBook), quantity);
+    }
 
-            while (itemLeft > 0) {
-                Item currentItem = iterator.next();
+    public ItemFillCostResponse getFillCost(String itemName, long quantity) {
+        LOGGER.info("Getting fill cost of item: {} with quantity: {}", itemName, quantity);
+        DataValidator.validateIncomingData(itemName);
+
+        ItemFillCostResponse.Builder fillCost = ItemFillCostResponse.newBuilder()
+                .setItemName(itemName)
+                .setQuantity(quantity);
+
+        OrderBook itemOrderBook = this.allItems.get(itemName);
+        if (itemOrderBook == null || quantity <= 0) {
+
+            return fillCost.build();
+        }
+
+        ItemOrderBookSnapshot snapshot = snapshotOf(itemName, itemOrderBook);
+        int levels = snapshot.levelsToFill(quantity);
+        if (levels < 0) {
+
+            return fillCost.build();
+        }
 
-                OrderBookLayer.Builder currentLayer = populateItemLayer(itemLeft, currentItem);
+        double totalCost = snapshot.costToFill(quantity);
+        return fillCost
+                .setFillable(true)
+                .setTotalCost(totalCost)
+                .setAveragePrice(totalCost / quantity)
+                .setWorstPrice(snapshot.getPrice(levels - 1))
+                .setLevels(levels)
+                .build();
+    }
+
+    public List<List<OrderBookLayer>> getRequestedItems(List<ItemOrderBookRequest> requests) {
+        LOGGER.info("Getting {} requested items", requests.size());
+
+        Map<String, OrderBook> requestedBooks = new TreeMap<>();
+        for (ItemOrderBookRequest request : requests) {
+            DataValidator.validateIncomingData(request.getItemName());
+            OrderBook itemOrderBook = this.allItems.get(request.getItemName());
+            if (itemOrderBook != null) {
+                requestedBooks.put(request.getItemName(), itemOrderBook);
+            }
+        }
+
+        Map<String, ItemOrderBookSnapshot> snapshots = takeSnapshots(requestedBooks);
 
-                itemLeft -= currentLayer.getQuantity();
+        List<List<OrderBookLayer>> requestedItems = new ArrayList<>(requests.size());
+        for (ItemOrderBookRequest request : requests) {
+            ItemOrderBookSnapshot snapshot = snapshots.get(request.getItemName());
+            if (snapshot == null) {
+                requestedItems.add(Collections.emptyList());
+            } else {
+                requestedItems.add(populateItemLayers(snapshot, request.getQuantity()));
+            }
+        }
+        return requestedItems;
+    }
 
-                OrderBookLayer orderBookLayer = currentLayer
-                        .setOrigin(currentItem.getOrigin())
-                        .build();
-                layers.add(orderBookLayer);
+    private Map<String, ItemOrderBookSnapshot> takeSnapshots(Map<String, OrderBook> requestedBooks) {
+        Map<String, ItemOrderBookSnapshot> snapshots = new HashMap<>();
+        Deque<OrderBook> lockedBooks = new ArrayDeque<>();
+        try {
+            // books with an owning writer are not locked, so their snapshots are consistent per item only
+            if (this.bookWriter == null) {
+                for (OrderBook itemOrderBook : requestedBooks.values()) {
+                    itemOrderBook.getLock().readLock().lock();
+                    lockedBooks.push(itemOrderBook);
+                }
+            }
+            for (Map.Entry<String, OrderBook> requestedBook : requestedBooks.entrySet()) {
+                snapshots.put(requestedBook.getKey(), snapshotOf(requestedBook.getKey(), requestedBook.getValue()));
             }
         } finally {
-            lock.readLock().unlock();
+            while (!lockedBooks.isEmpty()) {
+                lockedBooks.pop().getLock().readLock().unlock();
+            }
+        }
+        return snapshots;
+    }
+
+    private List<OrderBookLayer> populateItemLayers(ItemOrderBookSnapshot snapshot, long quantity) {
+        int levels = snapshot.levelsToFill(quantity);
+        if (levels <= 0) {
+
+            return Collections.emptyList();
+        }
+
+        List<OrderBookLayer> layers = new ArrayList<>(levels);
+        for (int level = 0; level < levels; level++) {
+            layers.add(OrderBookLayer.newBuilder()
+                    .setPrice(snapshot.getPrice(level))
+                    .setQuantity(snapshot.getFilledQuantity(level, quantity))
+                    .setOrigin(snapshot.getOrigin(level))
+                    .build());
         }
         return layers;
     }
 
-    private OrderBookLayer.Builder populateItemLayer(long itemLeft, Item currentItem) {
-        OrderBookLayer.Builder currentLayer = OrderBookLayer.newBuilder()
-                .setPrice(currentItem.getPrice());
+    public void zeroingMarketProductsFromMarket(String marketDestination, String itemName) {
+        OrderBook itemOrderBook = allItems.get(itemName);
+        if (itemOrderBook == null) {
+            LOGGER.error("Item: {} is not being tracked and cannot be zeroed from market: {}!", itemName, marketDestination);
+            return;
+        }
 
-        if (currentItem.getQuantity() > itemLeft) {
-            currentLayer.setQuantity(itemLeft);
-        } else {
-            currentLayer.setQuantity(currentItem.getQuantity());
+        Origin marketOrigin = MARKET_ORIGINS.get(marketDestination.substring(marketDestination.indexOf('-') + 1).toLowerCase(Locale.ROOT));
+        if (marketOrigin == null) {
+            LOGGER.error("Market destination: {} does not match any origin!", marketDestination);
+            return;
         }
-        return currentLayer;
+
+        mutateBook(itemName, itemOrderBook, () -> {
+            long removedItemProductQuantity = itemOrderBook.removeItemsByOrigin(marketOrigin);
+            productsQuantity.computeIfPresent(itemName, (name, quantity) -> quantity - removedItemProductQuantity);
+            itemOrderBook.publishChanges();
+        });
     }
 
-    private Item populateItem(TickResponse tickResponse) {
-        Item item = new Item();
-        item.setPrice(tickResponse.getPrice());
-        item.setQuantity(tickResponse.getQuantity());
-        item.setOrigin(tickResponse.getOrigin());
+    public void zeroingAllMarketProducts(String itemName) {
+        OrderBook itemOrderBook = allItems.get(itemName);
+        if (itemOrderBook == null) {
+            return;
+        }
 
-        return item;
+        mutateBook(itemName, itemOrderBook, () -> {
+            long removedItemProductQuantity = 0;
+            for (Origin marketOrigin : MARKET_ORIGINS.values()) {
+                removedItemProductQuantity += itemOrderBook.removeItemsByOrigin(marketOrigin);
+            }
+            long removedQuantity = removedItemProductQuantity;
+            productsQuantity.computeIfPresent(itemName, (name, quantity) -> quantity - removedQuantity);
+            itemOrderBook.publishChanges();
+        });
     }
 
-    public void zeroingMarketProductsFromMarket(String marketDestination, String itemName) {
+    public void evictIdleLevels() {
+        long maxLevelAgeMillis = bounds.getMaxLevelAgeMillis();
+        if (maxLevelAgeMillis <= 0) {
+            return;
+        }
+
+        long idleSince = System.currentTimeMillis() - maxLevelAgeMillis;
+        for (Map.Entry<String, OrderBook> trackedItem : allItems.entrySet()) {
+            OrderBook itemOrderBook = trackedItem.getValue();
+            mutateBook(trackedItem.getKey(), itemOrderBook, () -> {
+                int levelsBefore = itemOrderBook.size();
+                long idleQuantity = itemOrderBook.evictIdleLevels(idleSince);
+                recordEviction(levelsBefore - itemOrderBook.size(), idleQuantity);
+                productsQuantity.computeIfPresent(trackedItem.getKey(), (name, quantity) -> quantity - idleQuantity);
+                itemOrderBook.publishChanges();
+            });
+        }
+    }
+
+    private void mutateBook(String itemName, OrderBook itemOrderBook, Runnable mutation) {
+        OrderBookWriter writer = this.bookWriter;
+        if (writer != null) {
+            writer.execute(itemName, mutation);
+            return;
+        }
+
         try {
-            lock.writeLock().lock();
+            itemOrderBook.getLock().writeLock().lock();
+            mutation.run();
+        } finally {
+            itemOrderBook.getLock().writeLock().unlock();
+        }
+    }
 
-            long removedItemProductQuantity = 0;
-            final Iterator<Item> itemsIterator = allItems.get(itemName).iterator();
+    private ItemOrderBookSnapshot snapshotOf(String itemName, OrderBook itemOrderBook) {
+        OrderBookWriter writer = this.bookWriter;
+        if (writer == null) {
+            return itemOrderBook.getSnapshot();
+        }
 
-            while (itemsIterator.hasNext()) {
-                Item currentItem = itemsIterator.next();
-                if (currentItem.getOrigin().toString().equalsIgnoreCase(marketDestination.split("-")[1])) {
-                    removedItemProductQuantity += currentItem.getQuantity();
-                    itemsIterator.remove();
-                }
+        ItemOrderBookSnapshot publishedSnapshot = itemOrderBook.getPublishedSnapshot();
+        if (publishedSnapshot.getVersion() == itemOrderBook.getVersion()) {
+            return publishedSnapshot;
+        }
+
+        // only the owning writer may read a book that is not locked, so it builds the stale snapshot
+        CompletableFuture<ItemOrderBookSnapshot> builtSnapshot = new CompletableFuture<>();
+        writer.execute(itemName, () -> builtSnapshot.complete(itemOrderBook.publishSnapshot()));
+        return builtSnapshot.join();
+    }
+
+    private static NavigableSet<Item> itemsOf(ItemOrderBookSnapshot snapshot) {
+        TreeSet<Item> items = new TreeSet<>();
+        for (int level = 0; level < snapshot.size(); level++) {
+            items.add(new Item(snapshot.getPrice(level), snapshot.getQuantity(level), snapshot.getOrigin(level)));
+        }
+        return Collections.unmodifiableNavigableSet(items);
+    }
+
+    private long trimLevels(OrderBook itemOrderBook) {
+        OrderBookBounds currentBounds = bounds;
+        if (!currentBounds.isTrimming()) {
+            return 0;
+        }
+
+        int levelsBefore = itemOrderBook.size();
+        long trimmedQuantity = itemOrderBook.trimLevels(currentBounds);
+        recordEviction(levelsBefore - itemOrderBook.size(), trimmedQuantity);
+        return trimmedQuantity;
+    }
+
+    private void recordEviction(int levels, long quantity) {
+        if (levels > 0) {
+            evictedLevels.add(levels);
+            evictedQuantity.add(quantity);
+        }
+    }
+
+    private static Map<String, Origin> mapMarketOrigins() {
+        Map<String, Origin> marketOrigins = new HashMap<>();
+        for (Origin origin : Origin.values()) {
+            if (origin != Origin.UNRECOGNIZED) {
+                marketOrigins.put(origin.toString().toLowerCase(Locale.ROOT), origin);
             }
-            productsQuantity.put(itemName, productsQuantity.get(itemName) - removedItemProductQuantity);
-        } finally {
-            lock.writeLock().unlock();
         }
+        return Collections.unmodifiableMap(marketOrigins);
     }
 }
@@ -0,0 +1,165 @@
+package com.market.banica.order.book.model;
+
+import com.market.Origin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class ItemOrderBook extends AbstractOrderBook {
+
+    private final NavigableMap<Item, Item> levels = new TreeMap<>();
+    private final Map<Origin, Set<Item>> levelsByOrigin = new EnumMap<>(Origin.class);
+    private final Map<Origin, Long> quantityByOrigin = new EnumMap<>(Origin.class);
+    private final Set<Origin> restoredOrigins = EnumSet.noneOf(Origin.class);
+
+    @Override
+    public long addLevel(double price, long quantity, Origin origin, long updatedAt) {
+        Item item = new Item(price, quantity, origin);
+        item.setUpdatedAt(updatedAt);
+        return addItem(item);
+    }
+
+    public long addItem(Item item) {
+        version++;
+        quantityByOrigin.merge(item.getOrigin(), item.getQuantity(), Long::sum);
+        Item presentItem = levels.get(item);
+        if (presentItem == null) {
+            levels.put(item, item);
+            levelsByOrigin.computeIfAbsent(item.getOrigin(), origin -> Collections.newSetFromMap(new IdentityHashMap<>()))
+                    .add(item);
+            recordChange(item, item.getQuantity());
+            return item.getQuantity();
+        }
+
+        long quantity = presentItem.getQuantity() + item.getQuantity();
+        recordChange(presentItem, quantity);
+        if (quantity == 0) {
+            levels.remove(presentItem);
+            levelsByOrigin.get(presentItem.getOrigin()).remove(presentItem);
+            return item.getQuantity();
+        }
+        presentItem.setQuantity(quantity);
+        presentItem.setUpdatedAt(item.getUpdatedAt());
+        return item.getQuantity();
+    }
+
+    @Override
+    public long restoreItems(Collection<Item> restoredItems) {
+        long restoredQuantity = 0;
+        long restoredAt = System.currentTimeMillis();
+        for (Item restoredItem : restoredItems) {
+            Item level = new Item(restoredItem.getPrice(), restoredItem.getQuantity(), restoredItem.getOrigin());
+            level.setUpdatedAt(restoredAt);
+            restoredQuantity += addItem(level);
+            restoredOrigins.add(restoredItem.getOrigin());
+        }
+        return restoredQuantity;
+    }
+
+    @Override
+    public boolean isRestoredOrigin(Origin origin) {
+        return restoredOrigins.contains(origin);
+    }
+
+    @Override
+    public long removeItemsByOrigin(Origin origin) {
+        restoredOrigins.remove(origin);
+        Set<Item> originLevels = levelsByOrigin.remove(origin);
+        Long removedQuantity = quantityByOrigin.remove(origin);
+        if (originLevels != null) {
+            for (Item originLevel : originLevels) {
+                levels.remove(originLevel);
+                recordChange(originLevel, 0);
+            }
+        }
+        version++;
+        return removedQuantity == null ? 0 : removedQuantity;
+    }
+
+    @Override
+    public long trimLevels(OrderBookBounds bounds) {
+        long evictedQuantity = 0;
+        if (bounds.getMaxDepth() > 0) {
+            while (levels.size() > bounds.getMaxDepth()) {
+                evictedQuantity += evictLevel(levels.lastKey());
+            }
+        }
+        if (bounds.getPriceBand() > 0 && !levels.isEmpty()) {
+            double priceLimit = levels.firstKey().getPrice() * (1 + bounds.getPriceBand());
+            while (levels.lastKey().getPrice() > priceLimit) {
+                evictedQuantity += evictLevel(levels.lastKey());
+            }
+        }
+        return evictedQuantity;
+    }
+
+    @Override
+    public long evictIdleLevels(long idleSince) {
+        List<Item> idleLevels = new ArrayList<>();
+        for (Item level : levels.values()) {
+            if (level.getUpdatedAt() < idleSince) {
+                idleLevels.add(level);
+            }
+        }
+
+        long evictedQuantity = 0;
+        for (Item idleLevel : idleLevels) {
+            evictedQuantity += evictLevel(idleLevel);
+        }
+        return evictedQuantity;
+    }
+
+    @Override
+    public long getQuantityByOrigin(Origin origin) {
+        return quantityByOrigin.getOrDefault(origin, 0L);
+    }
+
+    @Override
+    protected ItemOrderBookSnapshot takeSnapshot(long snapshotVersion) {
+        return new ItemOrderBookSnapshot(snapshotVersion, levels.values());
+    }
+
+    @Override
+    public NavigableSet<Item> getItems() {
+        TreeSet<Item> items = new TreeSet<>();
+        for (Item level : levels.keySet()) {
+            if (level.getQuantity() <= 0) {
+                continue;
+            }
+            Item item = new Item(level.getPrice(), level.getQuantity(), level.getOrigin());
+            item.setUpdatedAt(level.getUpdatedAt());
+            items.add(item);
+        }
+        return Collections.unmodifiableNavigableSet(items);
+    }
+
+    @Override
+    public int size() {
+        return levels.size();
+    }
+
+    private long evictLevel(Item level) {
+        version++;
+        levels.remove(level);
+        levelsByOrigin.get(level.getOrigin()).remove(level);
+        quantityByOrigin.merge(level.getOrigin(), -level.getQuantity(), Long::sum);
+        recordChange(level, 0);
+        return level.getQuantity();
+    }
+
+    private void recordChange(Item level, long quantity) {
+        recordChange(level.getPrice(), quantity, level.getOrigin());
+    }
+
+}
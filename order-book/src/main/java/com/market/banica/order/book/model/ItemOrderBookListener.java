@@ -0,0 +1,13 @@
+package com.market.banica.order.book.model;
+
+import java.util.List;
+
+public interface ItemOrderBookListener {
+
+    void onSnapshot(ItemOrderBookSnapshot snapshot);
+
+    void onLevelsChanged(long version, List<Item> changedLevels);
+
+    void onClosed();
+
+}
@@ -0,0 +1,139 @@
+package com.market.banica.order.book.model;
+
+import com.market.Origin;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+public class ItemOrderBookSnapshot {
+
+    @Getter
+    private final long version;
+    @Getter
+    private final long quantity;
+
+    private final double[] prices;
+    private final long[] quantities;
+    private final Origin[] origins;
+    private final long[] cumulativeQuantities;
+    private final double[] cumulativeNotionals;
+
+    public ItemOrderBookSnapshot(long version, Collection<Item> items) {
+        int levels = 0;
+        for (Item item : items) {
+            if (item.getQuantity() > 0) {
+                levels++;
+            }
+        }
+
+        this.version = version;
+        this.prices = new double[levels];
+        this.quantities = new long[levels];
+        this.origins = new Origin[levels];
+        this.cumulativeQuantities = new long[levels];
+        this.cumulativeNotionals = new double[levels];
+
+        int index = 0;
+        for (Item item : items) {
+            if (item.getQuantity() > 0) {
+                prices[index] = item.getPrice();
+                quantities[index] = item.getQuantity();
+                origins[index] = item.getOrigin();
+                index++;
+            }
+        }
+        this.quantity = accumulate();
+    }
+
+    ItemOrderBookSnapshot(long version, double[] prices, long[] quantities, Origin[] origins) {
+        int levels = 0;
+        for (int index = 0; index < quantities.length; index++) {
+            // a negative tick for an evicted level leaves a pending level that must not be filled from
+            if (quantities[index] > 0) {
+                prices[levels] = prices[index];
+                quantities[levels] = quantities[index];
+                origins[levels] = origins[index];
+                levels++;
+            }
+        }
+
+        this.version = version;
+        this.prices = levels == prices.length ? prices : Arrays.copyOf(prices, levels);
+        this.quantities = levels == quantities.length ? quantities : Arrays.copyOf(quantities, levels);
+        this.origins = levels == origins.length ? origins : Arrays.copyOf(origins, levels);
+        this.cumulativeQuantities = new long[levels];
+        this.cumulativeNotionals = new double[levels];
+        this.quantity = accumulate();
+    }
+
+    public int levelsToFill(long requestedQuantity) {
+        if (requestedQuantity <= 0) {
+            return 0;
+        }
+        if (requestedQuantity > quantity) {
+            return -1;
+        }
+
+        int low = 0;
+        int high = cumulativeQuantities.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulativeQuantities[middle] < requestedQuantity) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low + 1;
+    }
+
+    public double costToFill(long requestedQuantity) {
+        int levels = levelsToFill(requestedQuantity);
+        if (levels == 0) {
+            return 0;
+        }
+        if (levels < 0) {
+            return -1;
+        }
+
+        int lastLevel = levels - 1;
+        long quantityBefore = lastLevel == 0 ? 0 : cumulativeQuantities[lastLevel - 1];
+        double notionalBefore = lastLevel == 0 ? 0 : cumulativeNotionals[lastLevel - 1];
+        return notionalBefore + (requestedQuantity - quantityBefore) * prices[lastLevel];
+    }
+
+    public long getFilledQuantity(int level, long requestedQuantity) {
+        long quantityBefore = level == 0 ? 0 : cumulativeQuantities[level - 1];
+        return Math.min(quantities[level], requestedQuantity - quantityBefore);
+    }
+
+    public int size() {
+        return prices.length;
+    }
+
+    public double getPrice(int level) {
+        return prices[level];
+    }
+
+    public long getQuantity(int level) {
+        return quantities[level];
+    }
+
+    public Origin getOrigin(int level) {
+        return origins[level];
+    }
+
+    private long accumulate() {
+        long totalQuantity = 0;
+        double totalNotional = 0;
+        for (int index = 0; index < prices.length; index++) {
+            totalQuantity += quantities[index];
+            totalNotional += prices[index] * quantities[index];
+            cumulativeQuantities[index] = totalQuantity;
+            cumulativeNotionals[index] = totalNotional;
+        }
+        return totalQuantity;
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.market.banica.order.book.model;
+
+import com.market.Origin;
+
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public interface OrderBook {
+
+    ReentrantReadWriteLock getLock();
+
+    long getVersion();
+
+    long addLevel(double price, long quantity, Origin origin, long updatedAt);
+
+    long restoreItems(Collection<Item> restoredItems);
+
+    boolean isRestoredOrigin(Origin origin);
+
+    long removeItemsByOrigin(Origin origin);
+
+    long trimLevels(OrderBookBounds bounds);
+
+    long evictIdleLevels(long idleSince);
+
+    long getQuantityByOrigin(Origin origin);
+
+    void addListener(ItemOrderBookListener listener);
+
+    void removeListener(ItemOrderBookListener listener);
+
+    void publishChanges();
+
+    void close();
+
+    ItemOrderBookSnapshot getSnapshot();
+
+    ItemOrderBookSnapshot getPublishedSnapshot();
+
+    // must only be called while holding the lock or by the writer that owns the book
+    ItemOrderBookSnapshot publishSnapshot();
+
+    NavigableSet<Item> getItems();
+
+    int size();
+
+}
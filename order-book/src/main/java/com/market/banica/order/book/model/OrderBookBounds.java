@@ -0,0 +1,32 @@
+package com.market.banica.order.book.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class OrderBookBounds {
+
+    public static final OrderBookBounds UNBOUNDED = new OrderBookBounds(0, 0, 0);
+
+    private final int maxDepth;
+    private final double priceBand;
+    private final long maxLevelAgeMillis;
+
+    public boolean isTrimming() {
+        return maxDepth > 0 || priceBand > 0;
+    }
+
+    public OrderBookBounds withMaxDepth(int maxDepth) {
+        return new OrderBookBounds(maxDepth, priceBand, maxLevelAgeMillis);
+    }
+
+    public OrderBookBounds withPriceBand(double priceBand) {
+        return new OrderBookBounds(maxDepth, priceBand, maxLevelAgeMillis);
+    }
+
+    public OrderBookBounds withMaxLevelAgeMillis(long maxLevelAgeMillis) {
+        return new OrderBookBounds(maxDepth, priceBand, maxLevelAgeMillis);
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.market.banica.order.book.model;
+
+public interface OrderBookWriter {
+
+    void execute(String itemName, Runnable mutation);
+
+}
@@ -0,0 +1,354 @@
+package com.market.banica.order.book.model;
+
+import com.market.Origin;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+public class PrimitiveOrderBook extends AbstractOrderBook {
+
+    private static final long PRICE_SCALE = 1_000_000L;
+    private static final int ORIGIN_BITS = 4;
+    private static final long ORIGIN_MASK = (1L << ORIGIN_BITS) - 1;
+    private static final Origin[] ORIGINS_BY_NUMBER = mapOriginNumbers();
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int EMPTY_INDEX_SLOT = 0;
+    private static final int NO_SLOT = -1;
+
+    private long[] levelKeys = new long[INITIAL_CAPACITY];
+    private long[] levelQuantities = new long[INITIAL_CAPACITY];
+    private long[] levelUpdatedAt = new long[INITIAL_CAPACITY];
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeSlotCount;
+    private int usedSlotCount;
+
+    private int[] sortedSlots = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private long[] indexKeys = new long[INITIAL_CAPACITY * 2];
+    private int[] indexSlots = new int[INITIAL_CAPACITY * 2];
+    private int indexMask = INITIAL_CAPACITY * 2 - 1;
+
+    private int[] nextSlotOfOrigin = new int[INITIAL_CAPACITY];
+    private int[] previousSlotOfOrigin = new int[INITIAL_CAPACITY];
+    private final int[] firstSlotOfOrigin = createOriginHeads();
+
+    private final long[] quantityByOrigin = new long[1 << ORIGIN_BITS];
+    private int restoredOrigins;
+
+    @Override
+    public long addLevel(double price, long quantity, Origin origin, long updatedAt) {
+        long key = levelKey(price, origin);
+        int slot = findSlot(key);
+        version++;
+        quantityByOrigin[origin.getNumber()] += quantity;
+        if (slot < 0) {
+            insertLevel(key, quantity, updatedAt);
+            recordChange(priceOf(key), quantity, origin);
+            return quantity;
+        }
+
+        long levelQuantity = levelQuantities[slot] + quantity;
+        recordChange(priceOf(key), levelQuantity, origin);
+        if (levelQuantity == 0) {
+            removeAt(sortedPosition(key));
+            return quantity;
+        }
+        levelQuantities[slot] = levelQuantity;
+        levelUpdatedAt[slot] = updatedAt;
+        return quantity;
+    }
+
+    @Override
+    public long restoreItems(Collection<Item> restoredItems) {
+        long restoredQuantity = 0;
+        long restoredAt = System.currentTimeMillis();
+        for (Item restoredItem : restoredItems) {
+            restoredQuantity += addLevel(restoredItem.getPrice(), restoredItem.getQuantity(), restoredItem.getOrigin(), restoredAt);
+            restoredOrigins |= originBit(restoredItem.getOrigin());
+        }
+        return restoredQuantity;
+    }
+
+    @Override
+    public boolean isRestoredOrigin(Origin origin) {
+        return (restoredOrigins & originBit(origin)) != 0;
+    }
+
+    @Override
+    public long removeItemsByOrigin(Origin origin) {
+        restoredOrigins &= ~originBit(origin);
+        int originNumber = origin.getNumber();
+        while (firstSlotOfOrigin[originNumber] != NO_SLOT) {
+            long key = levelKeys[firstSlotOfOrigin[originNumber]];
+            recordChange(priceOf(key), 0, origin);
+            removeAt(sortedPosition(key));
+        }
+
+        long removedQuantity = quantityByOrigin[origin.getNumber()];
+        quantityByOrigin[origin.getNumber()] = 0;
+        version++;
+        return removedQuantity;
+    }
+
+    @Override
+    public long trimLevels(OrderBookBounds bounds) {
+        long evictedQuantity = 0;
+        if (bounds.getMaxDepth() > 0) {
+            while (size > bounds.getMaxDepth()) {
+                evictedQuantity += evictAt(size - 1);
+            }
+        }
+        if (bounds.getPriceBand() > 0 && size > 0) {
+            double priceLimit = priceOf(levelKeys[sortedSlots[0]]) * (1 + bounds.getPriceBand());
+            while (priceOf(levelKeys[sortedSlots[size - 1]]) > priceLimit) {
+                evictedQuantity += evictAt(size - 1);
+            }
+        }
+        return evictedQuantity;
+    }
+
+    @Override
+    public long evictIdleLevels(long idleSince) {
+        long evictedQuantity = 0;
+        int keptLevels = 0;
+        for (int position = 0; position < size; position++) {
+            int slot = sortedSlots[position];
+            if (levelUpdatedAt[slot] < idleSince) {
+                evictedQuantity += evictSlot(slot);
+            } else {
+                sortedSlots[keptLevels++] = slot;
+            }
+        }
+        size = keptLevels;
+        return evictedQuantity;
+    }
+
+    @Override
+    public long getQuantityByOrigin(Origin origin) {
+        return quantityByOrigin[origin.getNumber()];
+    }
+
+    @Override
+    protected ItemOrderBookSnapshot takeSnapshot(long snapshotVersion) {
+        double[] prices = new double[size];
+        long[] quantities = new long[size];
+        Origin[] origins = new Origin[size];
+        for (int position = 0; position < size; position++) {
+            int slot = sortedSlots[position];
+            prices[position] = priceOf(levelKeys[slot]);
+            quantities[position] = levelQuantities[slot];
+            origins[position] = originOf(levelKeys[slot]);
+        }
+        return new ItemOrderBookSnapshot(snapshotVersion, prices, quantities, origins);
+    }
+
+    @Override
+    public NavigableSet<Item> getItems() {
+        TreeSet<Item> items = new TreeSet<>();
+        for (int position = 0; position < size; position++) {
+            int slot = sortedSlots[position];
+            if (levelQuantities[slot] <= 0) {
+                continue;
+            }
+            Item item = new Item(priceOf(levelKeys[slot]), levelQuantities[slot], originOf(levelKeys[slot]));
+            item.setUpdatedAt(levelUpdatedAt[slot]);
+            items.add(item);
+        }
+        return Collections.unmodifiableNavigableSet(items);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void insertLevel(long key, long quantity, long updatedAt) {
+        if (freeSlotCount == 0 && usedSlotCount == levelKeys.length) {
+            grow();
+        }
+
+        int slot = freeSlotCount > 0 ? freeSlots[--freeSlotCount] : usedSlotCount++;
+        levelKeys[slot] = key;
+        levelQuantities[slot] = quantity;
+        levelUpdatedAt[slot] = updatedAt;
+        indexInsert(key, slot);
+        linkToOrigin(slot, (int) (key & ORIGIN_MASK));
+
+        int position = -sortedPosition(key) - 1;
+        System.arraycopy(sortedSlots, position, sortedSlots, position + 1, size - position);
+        sortedSlots[position] = slot;
+        size++;
+    }
+
+    private long evictAt(int position) {
+        long evictedQuantity = evictSlot(sortedSlots[position]);
+        System.arraycopy(sortedSlots, position + 1, sortedSlots, position, size - position - 1);
+        size--;
+        return evictedQuantity;
+    }
+
+    private long evictSlot(int slot) {
+        long key = levelKeys[slot];
+        long evictedQuantity = levelQuantities[slot];
+        version++;
+        quantityByOrigin[(int) (key & ORIGIN_MASK)] -= evictedQuantity;
+        recordChange(priceOf(key), 0, originOf(key));
+        releaseSlot(key, slot);
+        return evictedQuantity;
+    }
+
+    private void removeAt(int position) {
+        int slot = sortedSlots[position];
+        System.arraycopy(sortedSlots, position + 1, sortedSlots, position, size - position - 1);
+        size--;
+        releaseSlot(levelKeys[slot], slot);
+    }
+
+    private void releaseSlot(long key, int slot) {
+        indexRemove(key);
+        unlinkFromOrigin(slot, (int) (key & ORIGIN_MASK));
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    private void linkToOrigin(int slot, int originNumber) {
+        int firstSlot = firstSlotOfOrigin[originNumber];
+        nextSlotOfOrigin[slot] = firstSlot;
+        previousSlotOfOrigin[slot] = NO_SLOT;
+        if (firstSlot != NO_SLOT) {
+            previousSlotOfOrigin[firstSlot] = slot;
+        }
+        firstSlotOfOrigin[originNumber] = slot;
+    }
+
+    private void unlinkFromOrigin(int slot, int originNumber) {
+        int nextSlot = nextSlotOfOrigin[slot];
+        int previousSlot = previousSlotOfOrigin[slot];
+        if (previousSlot == NO_SLOT) {
+            firstSlotOfOrigin[originNumber] = nextSlot;
+        } else {
+            nextSlotOfOrigin[previousSlot] = nextSlot;
+        }
+        if (nextSlot != NO_SLOT) {
+            previousSlotOfOrigin[nextSlot] = previousSlot;
+        }
+    }
+
+    private int sortedPosition(long key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = levelKeys[sortedSlots[middle]];
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int findSlot(long key) {
+        int indexPosition = indexPosition(key);
+        while (indexSlots[indexPosition] != EMPTY_INDEX_SLOT) {
+            if (indexKeys[indexPosition] == key) {
+                return indexSlots[indexPosition] - 1;
+            }
+            indexPosition = (indexPosition + 1) & indexMask;
+        }
+        return -1;
+    }
+
+    private void indexInsert(long key, int slot) {
+        int indexPosition = indexPosition(key);
+        while (indexSlots[indexPosition] != EMPTY_INDEX_SLOT) {
+            indexPosition = (indexPosition + 1) & indexMask;
+        }
+        indexKeys[indexPosition] = key;
+        indexSlots[indexPosition] = slot + 1;
+    }
+
+    private void indexRemove(long key) {
+        int hole = indexPosition(key);
+        while (indexKeys[hole] != key || indexSlots[hole] == EMPTY_INDEX_SLOT) {
+            hole = (hole + 1) & indexMask;
+        }
+        indexSlots[hole] = EMPTY_INDEX_SLOT;
+
+        int next = (hole + 1) & indexMask;
+        while (indexSlots[next] != EMPTY_INDEX_SLOT) {
+            int home = indexPosition(indexKeys[next]);
+            if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+                indexKeys[hole] = indexKeys[next];
+                indexSlots[hole] = indexSlots[next];
+                indexSlots[next] = EMPTY_INDEX_SLOT;
+                hole = next;
+            }
+            next = (next + 1) & indexMask;
+        }
+    }
+
+    private int indexPosition(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & indexMask;
+    }
+
+    private void grow() {
+        int capacity = levelKeys.length * 2;
+        levelKeys = Arrays.copyOf(levelKeys, capacity);
+        levelQuantities = Arrays.copyOf(levelQuantities, capacity);
+        levelUpdatedAt = Arrays.copyOf(levelUpdatedAt, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+        sortedSlots = Arrays.copyOf(sortedSlots, capacity);
+        nextSlotOfOrigin = Arrays.copyOf(nextSlotOfOrigin, capacity);
+        previousSlotOfOrigin = Arrays.copyOf(previousSlotOfOrigin, capacity);
+
+        indexKeys = new long[capacity * 2];
+        indexSlots = new int[capacity * 2];
+        indexMask = capacity * 2 - 1;
+        for (int position = 0; position < size; position++) {
+            int slot = sortedSlots[position];
+            indexInsert(levelKeys[slot], slot);
+        }
+    }
+
+    private static long levelKey(double price, Origin origin) {
+        return Math.round(price * PRICE_SCALE) << ORIGIN_BITS | origin.getNumber();
+    }
+
+    private static double priceOf(long key) {
+        return (double) (key >> ORIGIN_BITS) / PRICE_SCALE;
+    }
+
+    private static Origin originOf(long key) {
+        return ORIGINS_BY_NUMBER[(int) (key & ORIGIN_MASK)];
+    }
+
+    private static int originBit(Origin origin) {
+        return 1 << origin.getNumber();
+    }
+
+    private static int[] createOriginHeads() {
+        int[] originHeads = new int[1 << ORIGIN_BITS];
+        Arrays.fill(originHeads, NO_SLOT);
+        return originHeads;
+    }
+
+    private static Origin[] mapOriginNumbers() {
+        Origin[] originsByNumber = new Origin[1 << ORIGIN_BITS];
+        for (Origin origin : Origin.values()) {
+            if (origin != Origin.UNRECOGNIZED) {
+                originsByNumber[origin.getNumber()] = origin;
+            }
+        }
+        return originsByNumber;
+    }
+
+}
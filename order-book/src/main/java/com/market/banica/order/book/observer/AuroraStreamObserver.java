@@ -3,7 +3,8 @@ package com.market.banica.order.book.observer;
 import com.aurora.Aurora;
 import com.market.TickResponse;
 import com.market.banica.common.exception.IncorrectResponseException;
-import com.market.banica.order.book.model.ItemMarket;
+import com.market.banica.order.book.ingestion.TickIngestion;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
 import com.market.banica.order.book.service.grpc.AuroraClient;
 import com.orderbook.ReconnectionResponse;
 import io.grpc.stub.StreamObserver;
@@ -15,23 +16,36 @@ public class AuroraStreamObserver implements StreamObserver<Aurora.AuroraRespons
 
     private static final Logger LOGGER = LogManager.getLogger(AuroraStreamObserver.class);
 
-    private final ItemMarket itemMarket;
+    private final TickIngestion tickIngestion;
     private final AuroraClient auroraClient;
+    private final OrderBookMetrics metrics;
+    private final Runnable onStreamClosed;
 
 
     @Autowired
-    public AuroraStreamObserver(ItemMarket itemMarket, AuroraClient auroraClient) {
-        this.itemMarket = itemMarket;
+    public AuroraStreamObserver(TickIngestion tickIngestion, AuroraClient auroraClient, OrderBookMetrics metrics) {
+        this(tickIngestion, auroraClient, metrics, () -> {
+        });
+    }
+
+    public AuroraStreamObserver(TickIngestion tickIngestion, AuroraClient auroraClient, OrderBookMetrics metrics,
+                                Runnable onStreamClosed) {
+        this.tickIngestion = tickIngestion;
         this.auroraClient = auroraClient;
+        this.metrics = metrics;
+        this.onStreamClosed = onStreamClosed;
     }
 
     @Override
     public void onNext(Aurora.AuroraResponse response) {
 
+        metrics.getReceivedMessages().increment();
         if (response.getMessage().is(TickResponse.class)) {
-            itemMarket.updateItem(response);
+            long receivedAt = System.nanoTime();
+            tickIngestion.ingestTick(response);
+            metrics.getIngestionNanos().record(System.nanoTime() - receivedAt);
         } else if (response.getMessage().is(ReconnectionResponse.class)) {
-            auroraClient.reconnectToMarket(response);
+            tickIngestion.runAfterPendingTicks(() -> auroraClient.reconnectToMarket(response));
         } else {
             throw new IncorrectResponseException("Response is not supported!");
         }
@@ -42,11 +56,15 @@ public class AuroraStreamObserver implements StreamObserver<Aurora.AuroraRespons
     public void onError(Throwable throwable) {
         LOGGER.warn("Unable to request");
         LOGGER.error(throwable.getMessage());
+        metrics.getStreamErrors().increment();
+        onStreamClosed.run();
     }
 
     @Override
     public void onCompleted() {
         LOGGER.info("Market data gathered");
+        metrics.getStreamCompletions().increment();
+        onStreamClosed.run();
     }
 
 }
@@ -0,0 +1,194 @@
+package com.market.banica.order.book.observer;
+
+import com.market.banica.order.book.model.Item;
+import com.market.banica.order.book.model.ItemOrderBookListener;
+import com.market.banica.order.book.model.ItemOrderBookSnapshot;
+import com.orderbook.OrderBookDepthUpdate;
+import com.orderbook.OrderBookLayer;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class OrderBookDepthObserver implements ItemOrderBookListener {
+
+    private static final Logger LOGGER = LogManager.getLogger(OrderBookDepthObserver.class);
+
+    private final String itemName;
+    private final StreamObserver<OrderBookDepthUpdate> responseObserver;
+    private final ServerCallStreamObserver<OrderBookDepthUpdate> serverObserver;
+    private final int capacity;
+    private final Executor drainExecutor;
+
+    private final Deque<PendingUpdate> pendingUpdates = new ArrayDeque<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private boolean completed;
+    private volatile boolean closed;
+
+    public OrderBookDepthObserver(String itemName, StreamObserver<OrderBookDepthUpdate> responseObserver,
+                                  int capacity, Executor drainExecutor) {
+        this.itemName = itemName;
+        this.responseObserver = responseObserver;
+        this.serverObserver = responseObserver instanceof ServerCallStreamObserver
+                ? (ServerCallStreamObserver<OrderBookDepthUpdate>) responseObserver : null;
+        this.capacity = capacity;
+        this.drainExecutor = drainExecutor;
+
+        if (serverObserver != null) {
+            serverObserver.setOnReadyHandler(this::scheduleDrain);
+        }
+    }
+
+    public void setOnCancelHandler(Runnable onCancelHandler) {
+        if (serverObserver != null) {
+            serverObserver.setOnCancelHandler(() -> {
+                closed = true;
+                onCancelHandler.run();
+            });
+        }
+    }
+
+    @Override
+    public void onSnapshot(ItemOrderBookSnapshot snapshot) {
+        offer(new PendingUpdate(snapshot.getVersion(), snapshot, null));
+    }
+
+    @Override
+    public void onLevelsChanged(long version, List<Item> changedLevels) {
+        offer(new PendingUpdate(version, null, changedLevels));
+    }
+
+    @Override
+    public void onClosed() {
+        synchronized (this) {
+            completed = true;
+        }
+        scheduleDrain();
+    }
+
+    private void offer(PendingUpdate update) {
+        if (closed) {
+            throw new IllegalStateException("Depth subscription for " + itemName + " is closed");
+        }
+
+        synchronized (this) {
+            if (pendingUpdates.size() >= capacity && update.snapshot == null) {
+                // changed levels carry absolute quantities, so pending deltas can be merged per level
+                update = mergePendingDeltas(update);
+            }
+            pendingUpdates.addLast(update);
+        }
+        scheduleDrain();
+    }
+
+    private PendingUpdate mergePendingDeltas(PendingUpdate update) {
+        Deque<PendingUpdate> mergedDeltas = new ArrayDeque<>();
+        while (!pendingUpdates.isEmpty() && pendingUpdates.peekLast().snapshot == null) {
+            mergedDeltas.addFirst(pendingUpdates.pollLast());
+        }
+        mergedDeltas.addLast(update);
+
+        Map<Item, Item> mergedLevels = new TreeMap<>();
+        for (PendingUpdate mergedDelta : mergedDeltas) {
+            for (Item changedLevel : mergedDelta.levels) {
+                mergedLevels.put(changedLevel, changedLevel);
+            }
+        }
+        return new PendingUpdate(update.version, null, new ArrayList<>(mergedLevels.values()));
+    }
+
+    private void scheduleDrain() {
+        if (!closed && drainScheduled.compareAndSet(false, true)) {
+            drainExecutor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            PendingUpdate update;
+            while (!closed && isReady() && (update = pollPendingUpdate()) != null) {
+                responseObserver.onNext(toDepthUpdate(update));
+            }
+            if (!closed && isCompleted()) {
+                closed = true;
+                responseObserver.onCompleted();
+            }
+        } catch (StatusRuntimeException | IllegalStateException e) {
+            closed = true;
+            LOGGER.debug("Depth subscription for {} was closed: {}", itemName, e.getMessage());
+        } finally {
+            drainScheduled.set(false);
+        }
+
+        if (!closed && hasPendingUpdates() && isReady()) {
+            scheduleDrain();
+        }
+    }
+
+    private boolean isReady() {
+        return serverObserver == null || serverObserver.isReady();
+    }
+
+    private synchronized PendingUpdate pollPendingUpdate() {
+        return pendingUpdates.pollFirst();
+    }
+
+    private synchronized boolean hasPendingUpdates() {
+        return !pendingUpdates.isEmpty() || completed;
+    }
+
+    private synchronized boolean isCompleted() {
+        return completed && pendingUpdates.isEmpty();
+    }
+
+    private OrderBookDepthUpdate toDepthUpdate(PendingUpdate update) {
+        OrderBookDepthUpdate.Builder depthUpdate = OrderBookDepthUpdate.newBuilder()
+                .setItemName(itemName)
+                .setVersion(update.version);
+
+        if (update.snapshot != null) {
+            depthUpdate.setSnapshot(true);
+            for (int level = 0; level < update.snapshot.size(); level++) {
+                depthUpdate.addLevels(OrderBookLayer.newBuilder()
+                        .setPrice(update.snapshot.getPrice(level))
+                        .setQuantity(update.snapshot.getQuantity(level))
+                        .setOrigin(update.snapshot.getOrigin(level)));
+            }
+            return depthUpdate.build();
+        }
+
+        for (Item changedLevel : update.levels) {
+            depthUpdate.addLevels(OrderBookLayer.newBuilder()
+                    .setPrice(changedLevel.getPrice())
+                    .setQuantity(changedLevel.getQuantity())
+                    .setOrigin(changedLevel.getOrigin()));
+        }
+        return depthUpdate.build();
+    }
+
+    private static class PendingUpdate {
+
+        private final long version;
+        private final ItemOrderBookSnapshot snapshot;
+        private final List<Item> levels;
+
+        private PendingUpdate(long version, ItemOrderBookSnapshot snapshot, List<Item> levels) {
+            this.version = version;
+            this.snapshot = snapshot;
+            this.levels = levels;
+        }
+
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.market.banica.order.book.service;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.market.banica.common.exception.TrackingException;
+import com.market.banica.order.book.service.grpc.AuroraClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@DependsOn("orderBookSnapshotScheduler")
+@ManagedResource
+@Service
+public class InterestsRestorer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InterestsRestorer.class);
+
+    public enum RestoreState {
+        PENDING,
+        RESTORING,
+        READY,
+        FAILED
+    }
+
+    private final AuroraClient auroraClient;
+    private final ExecutorService restoreExecutor;
+    private final RateLimiter rateLimiter;
+    private final Map<String, RestoreState> restoreStates = new ConcurrentHashMap<>();
+    private final AtomicInteger remainingItems = new AtomicInteger();
+
+    @Autowired
+    public InterestsRestorer(AuroraClient auroraClient,
+                             @Value("${orderbook.restore.parallelism}") final int parallelism,
+                             @Value("${orderbook.restore.rate.per.second}") final double ratePerSecond) {
+        this.auroraClient = auroraClient;
+        this.restoreExecutor = Executors.newFixedThreadPool(parallelism);
+        this.rateLimiter = RateLimiter.create(ratePerSecond);
+    }
+
+    public void restore(Map<String, Set<String>> interests) {
+        Map<String, String> itemClients = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> clientEntry : interests.entrySet()) {
+            for (String interest : clientEntry.getValue()) {
+                itemClients.putIfAbsent(interest, clientEntry.getKey());
+            }
+        }
+
+        LOGGER.info("Restoring {} persisted interests", itemClients.size());
+        remainingItems.addAndGet(itemClients.size());
+        for (Map.Entry<String, String> itemClient : itemClients.entrySet()) {
+            restoreStates.put(itemClient.getKey(), RestoreState.PENDING);
+            restoreExecutor.execute(() -> restoreItem(itemClient.getKey(), itemClient.getValue()));
+        }
+        restoreExecutor.shutdown();
+    }
+
+    public boolean isRestoring(String itemName) {
+        RestoreState restoreState = restoreStates.get(itemName);
+        return restoreState == RestoreState.PENDING || restoreState == RestoreState.RESTORING;
+    }
+
+    public boolean cancelPendingRestore(String itemName) {
+        if (restoreStates.remove(itemName, RestoreState.PENDING)) {
+            LOGGER.info("Cancelled pending restore of {}", itemName);
+            finishItem();
+            return true;
+        }
+        return false;
+    }
+
+    @ManagedOperation
+    public Map<String, String> getRestoreStates() {
+        return restoreStates.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().name()));
+    }
+
+    private void restoreItem(String itemName, String clientId) {
+        rateLimiter.acquire();
+        if (!restoreStates.replace(itemName, RestoreState.PENDING, RestoreState.RESTORING)) {
+            return;
+        }
+
+        try {
+            auroraClient.startSubscription(itemName, clientId);
+            restoreStates.put(itemName, RestoreState.READY);
+        } catch (TrackingException | RuntimeException e) {
+            LOGGER.warn("Restoring {} for client id: {} has failed: {}", itemName, clientId, e.getMessage());
+            restoreStates.put(itemName, RestoreState.FAILED);
+        }
+        finishItem();
+    }
+
+    private void finishItem() {
+        if (remainingItems.decrementAndGet() == 0) {
+            LOGGER.info("All persisted interests are restored");
+        }
+    }
+
+    @PreDestroy
+    private void stop() {
+        restoreExecutor.shutdownNow();
+    }
+
+}
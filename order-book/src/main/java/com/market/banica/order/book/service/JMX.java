@@ -1,13 +1,16 @@
 package com.market.banica.order.book.service;
 
+import com.market.banica.order.book.metrics.OrderBookMetrics;
 import com.market.banica.order.book.model.Item;
 import com.market.banica.order.book.model.ItemMarket;
+import com.market.banica.order.book.model.OrderBookBounds;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.EnableMBeanExport;
 import org.springframework.jmx.export.annotation.ManagedOperation;
 import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -18,10 +21,12 @@ import java.util.stream.Collectors;
 public class JMX {
 
     private final ItemMarket itemMarket;
+    private final OrderBookMetrics metrics;
 
     @Autowired
-    public JMX(ItemMarket itemMarket) {
+    public JMX(ItemMarket itemMarket, OrderBookMetrics metrics) {
         this.itemMarket = itemMarket;
+        this.metrics = metrics;
     }
 
     @ManagedOperation
@@ -38,4 +43,42 @@ public class JMX {
         return itemMarket.getProductsQuantity();
     }
 
+    @ManagedOperation
+    public Map<String, String> getBounds() {
+        OrderBookBounds bounds = itemMarket.getBounds();
+        Map<String, String> boundsValues = new LinkedHashMap<>();
+        boundsValues.put("maxDepth", String.valueOf(bounds.getMaxDepth()));
+        boundsValues.put("priceBand", String.valueOf(bounds.getPriceBand()));
+        boundsValues.put("maxLevelAgeMillis", String.valueOf(bounds.getMaxLevelAgeMillis()));
+        return boundsValues;
+    }
+
+    @ManagedOperation
+    public void setMaxDepth(int maxDepth) {
+        itemMarket.setBounds(itemMarket.getBounds().withMaxDepth(maxDepth));
+    }
+
+    @ManagedOperation
+    public void setPriceBand(double priceBand) {
+        itemMarket.setBounds(itemMarket.getBounds().withPriceBand(priceBand));
+    }
+
+    @ManagedOperation
+    public void setMaxLevelAgeMillis(long maxLevelAgeMillis) {
+        itemMarket.setBounds(itemMarket.getBounds().withMaxLevelAgeMillis(maxLevelAgeMillis));
+    }
+
+    @ManagedOperation
+    public Map<String, Long> getEvictionStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("evictedLevels", itemMarket.getEvictedLevels());
+        statistics.put("evictedQuantity", itemMarket.getEvictedQuantity());
+        return statistics;
+    }
+
+    @ManagedOperation
+    public Map<String, Long> getMetrics() {
+        return metrics.getStatistics();
+    }
+
 }
@@ -0,0 +1,55 @@
+package com.market.banica.order.book.service;
+
+import com.market.banica.order.book.model.ItemMarket;
+import com.market.banica.order.book.model.OrderBookBounds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class LevelEvictionScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LevelEvictionScheduler.class);
+
+    private final ItemMarket itemMarket;
+    private final long intervalSeconds;
+    private final ScheduledExecutorService evictionExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    @Autowired
+    public LevelEvictionScheduler(ItemMarket itemMarket,
+                                  @Value("${orderbook.bounds.max.depth}") final int maxDepth,
+                                  @Value("${orderbook.bounds.price.band}") final double priceBand,
+                                  @Value("${orderbook.bounds.max.level.age.millis}") final long maxLevelAgeMillis,
+                                  @Value("${orderbook.bounds.eviction.interval.seconds}") final long intervalSeconds) {
+        this.itemMarket = itemMarket;
+        this.intervalSeconds = intervalSeconds;
+        itemMarket.setBounds(new OrderBookBounds(maxDepth, priceBand, maxLevelAgeMillis));
+    }
+
+    @PostConstruct
+    private void start() {
+        evictionExecutor.scheduleWithFixedDelay(this::evictIdleLevels, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void evictIdleLevels() {
+        try {
+            itemMarket.evictIdleLevels();
+        } catch (RuntimeException e) {
+            LOGGER.error("Evicting idle order book levels has failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    private void stop() {
+        evictionExecutor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.market.banica.order.book.service;
+
+import com.market.banica.order.book.model.ItemMarket;
+import com.market.banica.order.book.util.OrderBookSnapshotPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@ManagedResource
+@Service
+public class OrderBookSnapshotScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderBookSnapshotScheduler.class);
+
+    private final ItemMarket itemMarket;
+    private final OrderBookSnapshotPersistence snapshotPersistence;
+    private final long intervalSeconds;
+    private final ScheduledExecutorService snapshotExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    @Autowired
+    public OrderBookSnapshotScheduler(ItemMarket itemMarket,
+                                      @Value("${orderbook.snapshot.file.name}") String snapshotFileName,
+                                      @Value("${orderbook.snapshot.interval.seconds}") long intervalSeconds) {
+        this.itemMarket = itemMarket;
+        this.snapshotPersistence = new OrderBookSnapshotPersistence(snapshotFileName);
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    @PostConstruct
+    private void start() throws IOException {
+        itemMarket.restoreItems(snapshotPersistence.loadSnapshots());
+        snapshotExecutor.scheduleWithFixedDelay(this::persistSnapshot, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @ManagedOperation
+    public void persistSnapshot() {
+        try {
+            snapshotPersistence.persistSnapshots(itemMarket.getSnapshots());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Persisting order book snapshot has failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    private void stop() throws InterruptedException {
+        snapshotExecutor.shutdown();
+        snapshotExecutor.awaitTermination(intervalSeconds, TimeUnit.SECONDS);
+        persistSnapshot();
+    }
+
+}
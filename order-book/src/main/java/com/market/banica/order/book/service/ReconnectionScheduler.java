@@ -0,0 +1,145 @@
+package com.market.banica.order.book.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+@ManagedResource
+@Service
+public class ReconnectionScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReconnectionScheduler.class);
+
+    private static final int MAX_BACKOFF_SHIFT = 30;
+
+    private final ScheduledExecutorService reconnectionExecutor;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long resetNanos;
+    private final Map<String, Map<String, Reconnection>> reconnections = new ConcurrentHashMap<>();
+
+    private final LongAdder requestedReconnects = new LongAdder();
+    private final LongAdder coalescedReconnects = new LongAdder();
+    private final LongAdder completedReconnects = new LongAdder();
+    private final LongAdder failedReconnects = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    @Autowired
+    public ReconnectionScheduler(@Value("${aurora.reconnect.pool.size}") final int poolSize,
+                                 @Value("${aurora.reconnect.backoff.initial.millis}") final long initialBackoffMillis,
+                                 @Value("${aurora.reconnect.backoff.max.millis}") final long maxBackoffMillis,
+                                 @Value("${aurora.reconnect.backoff.reset.millis}") final long resetMillis) {
+        this.reconnectionExecutor = Executors.newScheduledThreadPool(poolSize);
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.resetNanos = TimeUnit.MILLISECONDS.toNanos(resetMillis);
+    }
+
+    public boolean scheduleReconnect(String marketDestination, String itemName, Runnable reconnect) {
+        long requestedAt = System.nanoTime();
+        requestedReconnects.increment();
+
+        Reconnection reconnection = reconnections
+                .computeIfAbsent(itemName, item -> new ConcurrentHashMap<>())
+                .computeIfAbsent(marketDestination, market -> new Reconnection());
+
+        long backoffMillis;
+        synchronized (reconnection) {
+            if (reconnection.scheduled) {
+                coalescedReconnects.increment();
+                LOGGER.debug("Reconnect of {} to {} is already scheduled", itemName, marketDestination);
+                return false;
+            }
+            if (requestedAt - reconnection.lastRequestedAt > resetNanos) {
+                reconnection.attempts = 0;
+            }
+            backoffMillis = backoffMillis(reconnection.attempts);
+            reconnection.attempts++;
+            reconnection.lastRequestedAt = requestedAt;
+            reconnection.scheduled = true;
+        }
+
+        LOGGER.info("Reconnecting {} to {} in {} ms", itemName, marketDestination, backoffMillis);
+        reconnectionExecutor.schedule(() -> reconnect(reconnection, requestedAt, reconnect), backoffMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    public void cancelReconnects(String itemName) {
+        Map<String, Reconnection> itemReconnections = reconnections.remove(itemName);
+        if (itemReconnections != null) {
+            itemReconnections.values().forEach(reconnection -> reconnection.cancelled = true);
+        }
+    }
+
+    @ManagedOperation
+    public Map<String, Long> getReconnectStatistics() {
+        long completed = completedReconnects.sum();
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("requested", requestedReconnects.sum());
+        statistics.put("coalesced", coalescedReconnects.sum());
+        statistics.put("completed", completed);
+        statistics.put("failed", failedReconnects.sum());
+        statistics.put("averageLatencyMillis", completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.sum() / completed));
+        statistics.put("maxLatencyMillis", TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()));
+        return statistics;
+    }
+
+    private void reconnect(Reconnection reconnection, long requestedAt, Runnable reconnect) {
+        synchronized (reconnection) {
+            reconnection.scheduled = false;
+            if (reconnection.cancelled) {
+                return;
+            }
+        }
+
+        try {
+            reconnect.run();
+        } catch (RuntimeException e) {
+            failedReconnects.increment();
+            LOGGER.error("Reconnect has failed: {}", e.getMessage());
+            return;
+        }
+
+        long latencyNanos = System.nanoTime() - requestedAt;
+        completedReconnects.increment();
+        totalLatencyNanos.add(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    private long backoffMillis(int attempts) {
+        long ceilingMillis = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempts, MAX_BACKOFF_SHIFT));
+        long halfCeilingMillis = ceilingMillis / 2;
+        return halfCeilingMillis + ThreadLocalRandom.current().nextLong(ceilingMillis - halfCeilingMillis + 1);
+    }
+
+    @PreDestroy
+    private void stop() {
+        reconnectionExecutor.shutdownNow();
+    }
+
+    private static final class Reconnection {
+
+        private int attempts;
+        private long lastRequestedAt;
+        private boolean scheduled;
+        private boolean cancelled;
+
+    }
+
+}
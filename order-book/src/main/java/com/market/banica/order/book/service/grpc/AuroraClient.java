@@ -7,12 +7,16 @@ import com.market.banica.common.channel.ChannelRPCConfig;
 import com.market.banica.common.exception.IncorrectResponseException;
 import com.market.banica.common.exception.StoppedStreamException;
 import com.market.banica.common.exception.TrackingException;
+import com.market.banica.order.book.ingestion.TickIngestion;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
 import com.market.banica.order.book.model.ItemMarket;
 import com.market.banica.order.book.observer.AuroraStreamObserver;
+import com.market.banica.order.book.service.ReconnectionScheduler;
 import com.orderbook.ReconnectionResponse;
 import io.grpc.Context;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.StreamObserver;
 import lombok.Getter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -26,8 +30,6 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -38,16 +40,33 @@ public class AuroraClient {
 
     private static final int MAX_RETRY_ATTEMPTS = 1000;
     private static final String MARKET_PREFIX = "market/";
+    private static final String SUBSCRIBE_SUFFIX = "=subscribe";
+    private static final String UNSUBSCRIBE_SUFFIX = "=unsubscribe";
+    private static final String TOPIC_DELIMITER = "/";
+    private static final String MULTIPLEXED_DESTINATION = "aurora-multiplexed";
 
     private final ItemMarket itemMarket;
+    private final TickIngestion tickIngestion;
     private final ManagedChannel managedChannel;
     private final Map<String, Set<Context.CancellableContext>> cancellableStubs;
-    private final ExecutorService reconnectionExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, Context.CancellableContext> reconnectionStubs;
+    private final Map<String, String> multiplexedClients;
+    private final Set<String> resubscribingItems;
+    private final ReconnectionScheduler reconnectionScheduler;
+    private final OrderBookMetrics metrics;
+    private final boolean multiplexed;
+
+    private StreamObserver<Aurora.AuroraRequest> multiplexedRequests;
+    private long multiplexedGeneration;
 
     @Autowired
     AuroraClient(ItemMarket itemMarket,
+                 TickIngestion tickIngestion,
+                 ReconnectionScheduler reconnectionScheduler,
+                 OrderBookMetrics metrics,
                  @Value("${aurora.server.host}") final String host,
-                 @Value("${aurora.server.port}") final int port) {
+                 @Value("${aurora.server.port}") final int port,
+                 @Value("${aurora.subscription.multiplexed:false}") final boolean multiplexed) {
 
         managedChannel = ManagedChannelBuilder.forAddress(host, port)
                 .usePlaintext()
@@ -57,13 +76,21 @@ public class AuroraClient {
                 .build();
 
         this.itemMarket = itemMarket;
+        this.tickIngestion = tickIngestion;
         this.cancellableStubs = new ConcurrentHashMap<>();
+        this.reconnectionStubs = new ConcurrentHashMap<>();
+        this.multiplexedClients = new ConcurrentHashMap<>();
+        this.resubscribingItems = ConcurrentHashMap.newKeySet();
+        this.reconnectionScheduler = reconnectionScheduler;
+        this.metrics = metrics;
+        this.multiplexed = multiplexed;
 
     }
 
     public void startSubscription(String requestedItem, String clientId) throws TrackingException {
 
-        if (cancellableStubs.containsKey(requestedItem)) {
+        Set<Context.CancellableContext> itemStubs = Collections.synchronizedSet(new HashSet<>());
+        if (cancellableStubs.putIfAbsent(requestedItem, itemStubs) != null) {
             throw new TrackingException("Item is already being tracked!");
         }
 
@@ -74,9 +101,15 @@ public class AuroraClient {
 
         LOGGER.info("Start gathering product data.");
 
+        if (multiplexed) {
+            multiplexedClients.put(requestedItem, clientId);
+            itemMarket.addTrackedItem(requestedItem);
+            sendMultiplexedRequest(MARKET_PREFIX + requestedItem + SUBSCRIBE_SUFFIX, clientId);
+            return;
+        }
+
         Context.CancellableContext withCancellation = Context.current().withCancellation();
-        cancellableStubs.put(requestedItem, Collections.synchronizedSet(
-                new HashSet<>(Collections.singletonList(withCancellation))));
+        itemStubs.add(withCancellation);
         itemMarket.addTrackedItem(requestedItem);
         try {
             withCancellation.run(() -> startMarketStream(request));
@@ -91,50 +124,129 @@ public class AuroraClient {
             throw new TrackingException("Item is not being tracked!");
         }
 
+        reconnectionScheduler.cancelReconnects(requestedItem);
         Set<Context.CancellableContext> cancelledStub = cancellableStubs.remove(requestedItem);
         cancelledStub.forEach(cancellableContext -> cancellableContext
                 .cancel(new StoppedStreamException("Stopped tracking stream for: " + requestedItem)));
+        if (multiplexed) {
+            multiplexedClients.remove(requestedItem);
+            resubscribingItems.remove(requestedItem);
+            sendMultiplexedRequest(MARKET_PREFIX + requestedItem + UNSUBSCRIBE_SUFFIX, clientId);
+        }
+        reconnectionStubs.keySet().removeIf(topic -> topic.endsWith(TOPIC_DELIMITER + requestedItem));
         itemMarket.removeUntrackedItem(requestedItem);
     }
 
     public void reconnectToMarket(Aurora.AuroraResponse response) {
 
-        reconnectionExecutor.execute(() -> {
-            ReconnectionResponse reconnectionResponse;
+        ReconnectionResponse reconnectionResponse;
+        try {
+            reconnectionResponse = response.getMessage().unpack(ReconnectionResponse.class);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IncorrectResponseException("Incorrect response! Response must be from ReconnectionResponse type.");
+        }
+
+        String itemName = reconnectionResponse.getItemName();
+        String marketDestination = reconnectionResponse.getDestination();
+        String clientId = reconnectionResponse.getClientId();
+
+        itemMarket.zeroingMarketProductsFromMarket(marketDestination, itemName);
+        reconnectionScheduler.scheduleReconnect(marketDestination, itemName,
+                () -> resubscribeToMarket(marketDestination, itemName, clientId));
+
+    }
 
-            try {
-                reconnectionResponse = response.getMessage().unpack(ReconnectionResponse.class);
-            } catch (InvalidProtocolBufferException e) {
-                throw new IncorrectResponseException("Incorrect response! Response must be from ReconnectionResponse type.");
+    private void resubscribeToMarket(String marketDestination, String itemName, String clientId) {
+
+        String topic = marketDestination + TOPIC_DELIMITER + itemName;
+        if (multiplexed) {
+            if (cancellableStubs.containsKey(itemName)) {
+                sendMultiplexedRequest(topic + SUBSCRIBE_SUFFIX, clientId);
             }
+            return;
+        }
 
-            String itemName = reconnectionResponse.getItemName();
-            String marketDestination = reconnectionResponse.getDestination();
-            String clientId = reconnectionResponse.getClientId();
+        Set<Context.CancellableContext> itemStubs = cancellableStubs.get(itemName);
+        if (itemStubs == null) {
+            LOGGER.info("Skipping reconnect of untracked item {} to {}", itemName, marketDestination);
+            return;
+        }
 
-            itemMarket.zeroingMarketProductsFromMarket(marketDestination, itemName);
+        final Aurora.AuroraRequest request = Aurora.AuroraRequest.newBuilder()
+                .setTopic(topic)
+                .setClientId(clientId)
+                .build();
 
-            final Aurora.AuroraRequest request = Aurora.AuroraRequest.newBuilder()
-                    .setTopic(marketDestination + "/" + itemName)
-                    .setClientId(clientId)
-                    .build();
+        Context.CancellableContext withCancellation = Context.current().withCancellation();
+        Context.CancellableContext replacedStub = reconnectionStubs.put(topic, withCancellation);
+        if (replacedStub != null) {
+            itemStubs.remove(replacedStub);
+            replacedStub.cancel(new StoppedStreamException("Replaced tracking stream for: " + topic));
+        }
+        itemStubs.add(withCancellation);
 
-            Context.CancellableContext withCancellation = Context.current().withCancellation();
-            cancellableStubs.get(itemName).add(withCancellation);
+        Runnable onStreamClosed = () -> {
+            itemStubs.remove(withCancellation);
+            reconnectionStubs.remove(topic, withCancellation);
+        };
+        withCancellation.run(() -> getAsynchronousStub()
+                .subscribe(request, new AuroraStreamObserver(tickIngestion, this, metrics, onStreamClosed)));
 
-            try {
-                withCancellation.run(() -> startMarketStream(request));
-            } catch (Exception e) {
-                LOGGER.error("Tracking for {} has suddenly stopped due to: {}", itemName, e.getMessage());
-            }
-        });
+    }
+
+    public boolean isResubscribing(String itemName) {
+        return resubscribingItems.contains(itemName);
+    }
+
+    private void resubscribeMultiplexed(String itemName) {
+
+        String clientId = multiplexedClients.get(itemName);
+        if (clientId == null) {
+            LOGGER.info("Skipping multiplexed resubscribe of untracked item {}", itemName);
+            return;
+        }
+
+        sendMultiplexedRequest(MARKET_PREFIX + itemName + SUBSCRIBE_SUFFIX, clientId);
+        resubscribingItems.remove(itemName);
 
     }
 
     private void startMarketStream(Aurora.AuroraRequest request) {
         final AuroraServiceGrpc.AuroraServiceStub asynchronousStub = getAsynchronousStub();
 
-        asynchronousStub.subscribe(request, new AuroraStreamObserver(itemMarket, this));
+        asynchronousStub.subscribe(request, new AuroraStreamObserver(tickIngestion, this, metrics));
+    }
+
+    private synchronized void sendMultiplexedRequest(String topic, String clientId) {
+        if (multiplexedRequests == null) {
+            LOGGER.info("Opening multiplexed subscription to aurora.");
+            long generation = ++multiplexedGeneration;
+            multiplexedRequests = getAsynchronousStub()
+                    .subscribeMultiplexed(new AuroraStreamObserver(tickIngestion, this, metrics,
+                            () -> closeMultiplexedSubscription(generation)));
+        }
+
+        multiplexedRequests.onNext(Aurora.AuroraRequest.newBuilder()
+                .setTopic(topic)
+                .setClientId(clientId)
+                .build());
+    }
+
+    private synchronized void closeMultiplexedSubscription(long generation) {
+        if (generation != multiplexedGeneration || multiplexedRequests == null) {
+            return;
+        }
+
+        LOGGER.warn("Multiplexed subscription to aurora has been closed.");
+        multiplexedRequests = null;
+
+        Set<String> trackedItems = new HashSet<>(multiplexedClients.keySet());
+        resubscribingItems.addAll(trackedItems);
+        tickIngestion.runAfterPendingTicks(() -> trackedItems.forEach(itemName -> {
+            itemMarket.zeroingAllMarketProducts(itemName);
+            reconnectionScheduler.scheduleReconnect(MULTIPLEXED_DESTINATION, itemName,
+                    () -> resubscribeMultiplexed(itemName));
+        }));
     }
 
     public AuroraServiceGrpc.AuroraServiceStub getAsynchronousStub() {
@@ -143,6 +255,12 @@ public class AuroraClient {
 
     @PreDestroy
     private void stop() throws InterruptedException {
+        synchronized (this) {
+            if (multiplexedRequests != null) {
+                multiplexedRequests.onCompleted();
+                multiplexedRequests = null;
+            }
+        }
         managedChannel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
         LOGGER.info("Server is terminated!");
     }
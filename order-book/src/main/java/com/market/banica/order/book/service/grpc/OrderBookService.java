@@ -2,14 +2,23 @@ package com.market.banica.order.book.service.grpc;
 
 import com.market.banica.common.exception.TrackingException;
 import com.market.banica.common.validator.DataValidator;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
 import com.market.banica.order.book.model.ItemMarket;
+import com.market.banica.order.book.observer.OrderBookDepthObserver;
+import com.market.banica.order.book.service.InterestsRestorer;
 import com.market.banica.order.book.util.InterestsPersistence;
 import com.orderbook.CancelSubscriptionRequest;
 import com.orderbook.CancelSubscriptionResponse;
 import com.orderbook.InterestsRequest;
 import com.orderbook.InterestsResponse;
+import com.orderbook.ItemFillCostRequest;
+import com.orderbook.ItemFillCostResponse;
+import com.orderbook.ItemOrderBookBatchRequest;
+import com.orderbook.ItemOrderBookBatchResponse;
 import com.orderbook.ItemOrderBookRequest;
 import com.orderbook.ItemOrderBookResponse;
+import com.orderbook.OrderBookDepthRequest;
+import com.orderbook.OrderBookDepthUpdate;
 import com.orderbook.OrderBookLayer;
 import com.orderbook.OrderBookServiceGrpc;
 import io.grpc.Status;
@@ -20,7 +29,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -28,6 +40,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class OrderBookService extends OrderBookServiceGrpc.OrderBookServiceImplBase {
@@ -35,28 +48,49 @@ public class OrderBookService extends OrderBookServiceGrpc.OrderBookServiceImplB
     private static final Logger LOGGER = LoggerFactory.getLogger(OrderBookService.class);
 
     private final ExecutorService subscriptionExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService depthExecutor = Executors.newSingleThreadExecutor();
 
     private final AuroraClient auroraClient;
     private final ItemMarket itemMarket;
 
     private final InterestsPersistence interestsPersistence;
+    private final InterestsRestorer interestsRestorer;
+    private final OrderBookMetrics metrics;
     private final Map<String, Set<String>> interestsMap = new HashMap<>();
+    private final int journalCompactionThreshold;
+    private final int depthQueueCapacity;
+
+    private boolean journalSyncScheduled;
 
     @Autowired
-    public OrderBookService(AuroraClient auroraClient, ItemMarket itemMarket,
-                            @Value("${orderbook.interests.file.name}") final String interestsFileName)
-            throws IOException, TrackingException {
+    public OrderBookService(AuroraClient auroraClient, ItemMarket itemMarket, InterestsRestorer interestsRestorer,
+                            OrderBookMetrics metrics,
+                            @Value("${orderbook.interests.file.name}") final String interestsFileName,
+                            @Value("${orderbook.interests.journal.compaction.threshold}") final int journalCompactionThreshold,
+                            @Value("${orderbook.depth.queue.capacity}") final int depthQueueCapacity)
+            throws IOException {
         this.auroraClient = auroraClient;
         this.itemMarket = itemMarket;
+        this.interestsRestorer = interestsRestorer;
+        this.metrics = metrics;
         this.interestsPersistence = new InterestsPersistence(interestsFileName, interestsMap);
+        this.journalCompactionThreshold = journalCompactionThreshold;
+        this.depthQueueCapacity = depthQueueCapacity;
         startPersistedInterests();
     }
 
     @Override
     public void getOrderBookItemLayers(ItemOrderBookRequest request, StreamObserver<ItemOrderBookResponse> responseObserver) {
+        final long requestedAt = System.nanoTime();
         final String itemName = request.getItemName();
         DataValidator.validateIncomingData(itemName);
 
+        if (isRestoring(itemName)) {
+            LOGGER.info("Get orderbook item layers by client id: {} for item {} which is still being restored", request.getClientId(), itemName);
+            responseObserver.onError(Status.UNAVAILABLE.withDescription("Item is still being restored").asException());
+            return;
+        }
+
         final long itemQuantity = request.getQuantity();
 
         List<OrderBookLayer> requestedItem = itemMarket.getRequestedItem(itemName, itemQuantity);
@@ -66,11 +100,93 @@ public class OrderBookService extends OrderBookServiceGrpc.OrderBookServiceImplB
                         .setItemName(itemName)
                         .addAllOrderbookLayers(requestedItem).build());
         responseObserver.onCompleted();
+        metrics.recordLayerQuery(itemName, System.nanoTime() - requestedAt);
 
         LOGGER.info("Get orderbook item layers by client id: {}", request.getClientId());
 
     }
 
+    @Override
+    public void getOrderBookItemLayersBatch(ItemOrderBookBatchRequest request, StreamObserver<ItemOrderBookBatchResponse> responseObserver) {
+        final long requestedAt = System.nanoTime();
+        List<ItemOrderBookRequest> warmRequests = new ArrayList<>(request.getRequestsCount());
+        boolean[] restoringItems = new boolean[request.getRequestsCount()];
+        for (int i = 0; i < request.getRequestsCount(); i++) {
+            ItemOrderBookRequest itemRequest = request.getRequests(i);
+            DataValidator.validateIncomingData(itemRequest.getItemName());
+
+            if (isRestoring(itemRequest.getItemName())) {
+                LOGGER.info("Get orderbook layers by client id: {} for item {} which is still being restored", request.getClientId(), itemRequest.getItemName());
+                restoringItems[i] = true;
+            } else {
+                warmRequests.add(itemRequest);
+            }
+        }
+
+        List<List<OrderBookLayer>> requestedItems = itemMarket.getRequestedItems(warmRequests);
+
+        ItemOrderBookBatchResponse.Builder batchResponse = ItemOrderBookBatchResponse.newBuilder();
+        int warmItem = 0;
+        for (int i = 0; i < restoringItems.length; i++) {
+            ItemOrderBookResponse.Builder itemResponse = ItemOrderBookResponse.newBuilder()
+                    .setItemName(request.getRequests(i).getItemName());
+            if (restoringItems[i]) {
+                itemResponse.setRestoring(true);
+            } else {
+                itemResponse.addAllOrderbookLayers(requestedItems.get(warmItem++));
+            }
+            batchResponse.addResponses(itemResponse);
+        }
+
+        responseObserver.onNext(batchResponse.build());
+        responseObserver.onCompleted();
+        long queryNanos = System.nanoTime() - requestedAt;
+        for (ItemOrderBookRequest itemRequest : warmRequests) {
+            metrics.recordLayerQuery(itemRequest.getItemName(), queryNanos);
+        }
+
+        LOGGER.info("Get orderbook layers of {} items by client id: {}", request.getRequestsCount(), request.getClientId());
+
+    }
+
+    @Override
+    public void getItemFillCost(ItemFillCostRequest request, StreamObserver<ItemFillCostResponse> responseObserver) {
+        final long requestedAt = System.nanoTime();
+        final String itemName = request.getItemName();
+        DataValidator.validateIncomingData(itemName);
+
+        if (isRestoring(itemName)) {
+            LOGGER.info("Get item fill cost by client id: {} for item {} which is still being restored", request.getClientId(), itemName);
+            responseObserver.onError(Status.UNAVAILABLE.withDescription("Item is still being restored").asException());
+            return;
+        }
+
+        responseObserver.onNext(itemMarket.getFillCost(itemName, request.getQuantity()));
+        responseObserver.onCompleted();
+        metrics.recordFillCostQuery(itemName, System.nanoTime() - requestedAt);
+
+        LOGGER.info("Get item fill cost by client id: {}", request.getClientId());
+
+    }
+
+    @Override
+    public void subscribeOrderBookDepth(OrderBookDepthRequest request, StreamObserver<OrderBookDepthUpdate> responseObserver) {
+        final String itemName = request.getItemName();
+        DataValidator.validateIncomingData(itemName);
+
+        OrderBookDepthObserver depthObserver = new OrderBookDepthObserver(itemName, responseObserver,
+                depthQueueCapacity, depthExecutor);
+        depthObserver.setOnCancelHandler(() -> itemMarket.removeDepthListener(itemName, depthObserver));
+
+        if (!itemMarket.addDepthListener(itemName, depthObserver)) {
+            LOGGER.warn("Depth subscription by client id: {} has failed with untracked item: {}", request.getClientId(), itemName);
+            responseObserver.onError(Status.NOT_FOUND.withDescription("Item is not being tracked").asException());
+            return;
+        }
+
+        LOGGER.info("Subscribed for \"{}\" order book depth by client id: {}", itemName, request.getClientId());
+    }
+
     @Override
     public void announceItemInterest(InterestsRequest request, StreamObserver<InterestsResponse> responseObserver) {
         final String itemName = request.getItemName();
@@ -83,7 +199,8 @@ public class OrderBookService extends OrderBookServiceGrpc.OrderBookServiceImplB
             try {
                 interestsMap.putIfAbsent(clientId, new HashSet<>());
                 interestsMap.get(clientId).add(itemName);
-                interestsPersistence.persistInterests();
+                interestsPersistence.appendInterest(clientId, itemName);
+                scheduleJournalSync();
 
                 auroraClient.startSubscription(itemName, clientId);
             } catch (TrackingException e) {
@@ -112,9 +229,12 @@ public class OrderBookService extends OrderBookServiceGrpc.OrderBookServiceImplB
         subscriptionExecutor.execute(() -> {
             try {
                 if (interestsMap.get(clientId) != null && interestsMap.get(clientId).remove(itemName)) {
-                    interestsPersistence.persistInterests();
+                    interestsPersistence.appendCancellation(clientId, itemName);
+                    scheduleJournalSync();
 
-                    auroraClient.stopSubscription(itemName, clientId);
+                    if (!interestsRestorer.cancelPendingRestore(itemName)) {
+                        auroraClient.stopSubscription(itemName, clientId);
+                    }
                     LOGGER.info("Cancel item subscription by client id: {}", clientId);
                 } else {
                     throw new TrackingException("Item is already being tracked!");
@@ -134,13 +254,46 @@ public class OrderBookService extends OrderBookServiceGrpc.OrderBookServiceImplB
 
     }
 
-    private void startPersistedInterests() throws IOException, TrackingException {
-        this.interestsPersistence.loadInterests();
-        for (Map.Entry<String, Set<String>> clientEntry : interestsMap.entrySet()) {
-            for (String interest : clientEntry.getValue()) {
-                auroraClient.startSubscription(interest, clientEntry.getKey());
+    private boolean isRestoring(String itemName) {
+        return interestsRestorer.isRestoring(itemName) || auroraClient.isResubscribing(itemName);
+    }
+
+    private void scheduleJournalSync() {
+        if (!journalSyncScheduled) {
+            journalSyncScheduled = true;
+            subscriptionExecutor.execute(this::syncInterestsJournal);
+        }
+    }
+
+    private void syncInterestsJournal() {
+        journalSyncScheduled = false;
+        try {
+            interestsPersistence.syncJournal();
+            if (interestsPersistence.getJournalRecords() >= journalCompactionThreshold) {
+                interestsPersistence.persistInterests();
             }
+        } catch (IOException e) {
+            LOGGER.error("Could not sync interests journal: {}", e.getMessage());
         }
     }
 
+    @PreDestroy
+    private void stop() throws InterruptedException {
+        subscriptionExecutor.execute(() -> {
+            try {
+                interestsPersistence.close();
+            } catch (IOException e) {
+                LOGGER.error("Could not close interests journal: {}", e.getMessage());
+            }
+        });
+        subscriptionExecutor.shutdown();
+        depthExecutor.shutdown();
+        subscriptionExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void startPersistedInterests() throws IOException {
+        this.interestsPersistence.loadInterests();
+        this.interestsRestorer.restore(interestsMap);
+    }
+
 }
\ No newline at end of file
@@ -7,34 +7,93 @@ import com.market.banica.common.util.ApplicationDirectoryUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.CRC32;
 
 public class InterestsPersistence {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(InterestsPersistence.class);
 
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String SNAPSHOT_SUFFIX = ".tmp";
+
+    private static final byte ADD_RECORD = 1;
+    private static final byte REMOVE_RECORD = 2;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES;
+    private static final int RECORD_CHECKSUM_SIZE = Long.BYTES;
+
     private final String interestsFileName;
+    private final String journalFileName;
     private final Map<String, Set<String>> interestsMap;
 
     private final Kryo kryoHandle = new Kryo();
 
+    private FileOutputStream journalStream;
+    private DataOutputStream journalOutput;
+    private int journalRecords;
+    private boolean journalDirty;
+
     public InterestsPersistence(String interestsFileName, Map<String, Set<String>> interestsMap) {
         initKryo();
         this.interestsFileName = interestsFileName;
+        this.journalFileName = interestsFileName + JOURNAL_SUFFIX;
         this.interestsMap = interestsMap;
     }
 
+    public void appendInterest(String clientId, String itemName) throws IOException {
+        appendRecord(ADD_RECORD, clientId, itemName);
+    }
+
+    public void appendCancellation(String clientId, String itemName) throws IOException {
+        appendRecord(REMOVE_RECORD, clientId, itemName);
+    }
+
+    public void syncJournal() throws IOException {
+
+        if (!journalDirty) {
+            return;
+        }
+        journalOutput.flush();
+        journalStream.getFD().sync();
+        journalDirty = false;
+        LOGGER.debug("Synced {} orderbook interests journal records!", journalRecords);
+
+    }
+
+    public int getJournalRecords() {
+        return journalRecords;
+    }
+
     public void persistInterests() throws IOException {
 
-        Output output = new Output(new FileOutputStream(ApplicationDirectoryUtil.getConfigFile(interestsFileName)));
-        kryoHandle.writeClassAndObject(output, interestsMap);
-        output.close();
+        File snapshotFile = ApplicationDirectoryUtil.getConfigFile(interestsFileName + SNAPSHOT_SUFFIX);
+        try (FileOutputStream snapshotStream = new FileOutputStream(snapshotFile);
+             Output output = new Output(snapshotStream)) {
+            kryoHandle.writeClassAndObject(output, interestsMap);
+            output.flush();
+            snapshotStream.getFD().sync();
+        }
+        Files.move(snapshotFile.toPath(), ApplicationDirectoryUtil.getConfigFile(interestsFileName).toPath(),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        openJournal(false);
+        journalRecords = 0;
         LOGGER.debug("Persisting orderbook interests!");
 
     }
@@ -61,6 +120,114 @@ public class InterestsPersistence {
 
         }
 
+        replayJournal();
+        openJournal(true);
+
+    }
+
+    public void close() throws IOException {
+
+        if (journalOutput != null) {
+            syncJournal();
+            journalOutput.close();
+            journalOutput = null;
+        }
+
+    }
+
+    private void appendRecord(byte recordType, String clientId, String itemName) throws IOException {
+
+        if (journalOutput == null) {
+            openJournal(true);
+        }
+
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeByte(recordType);
+        payload.writeUTF(clientId);
+        payload.writeUTF(itemName);
+
+        byte[] record = payloadBytes.toByteArray();
+        journalOutput.writeInt(record.length);
+        journalOutput.write(record);
+        journalOutput.writeLong(checksum(record, 0, record.length));
+        journalRecords++;
+        journalDirty = true;
+
+    }
+
+    private void replayJournal() throws IOException {
+
+        if (!ApplicationDirectoryUtil.doesFileExist(journalFileName)) {
+            return;
+        }
+
+        File journalFile = ApplicationDirectoryUtil.getConfigFile(journalFileName);
+        ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(journalFile.toPath()));
+        int replayedRecords = 0;
+
+        while (journal.remaining() >= RECORD_HEADER_SIZE) {
+            int recordStart = journal.position();
+            int recordLength = journal.getInt();
+            if (recordLength <= 0 || journal.remaining() < recordLength + RECORD_CHECKSUM_SIZE) {
+                journal.position(recordStart);
+                break;
+            }
+
+            int payloadStart = journal.position();
+            journal.position(payloadStart + recordLength);
+            if (journal.getLong() != checksum(journal.array(), payloadStart, recordLength)) {
+                journal.position(recordStart);
+                break;
+            }
+
+            applyRecord(new DataInputStream(new ByteArrayInputStream(journal.array(), payloadStart, recordLength)));
+            replayedRecords++;
+        }
+
+        if (journal.position() < journal.limit()) {
+            LOGGER.warn("Discarding {} bytes of incomplete orderbook interests journal!", journal.limit() - journal.position());
+            try (RandomAccessFile journalAccess = new RandomAccessFile(journalFile, "rw")) {
+                journalAccess.setLength(journal.position());
+            }
+        }
+
+        journalRecords = replayedRecords;
+        LOGGER.info("Replayed {} orderbook interests journal records!", replayedRecords);
+
+    }
+
+    private void applyRecord(DataInputStream record) throws IOException {
+
+        byte recordType = record.readByte();
+        String clientId = record.readUTF();
+        String itemName = record.readUTF();
+
+        if (recordType == ADD_RECORD) {
+            interestsMap.computeIfAbsent(clientId, client -> new HashSet<>()).add(itemName);
+        } else if (recordType == REMOVE_RECORD && interestsMap.get(clientId) != null) {
+            interestsMap.get(clientId).remove(itemName);
+        }
+
+    }
+
+    private void openJournal(boolean append) throws IOException {
+
+        if (journalOutput != null) {
+            journalOutput.close();
+        }
+        journalStream = new FileOutputStream(ApplicationDirectoryUtil.getConfigFile(journalFileName), append);
+        journalOutput = new DataOutputStream(new BufferedOutputStream(journalStream));
+        journalDirty = false;
+
+    }
+
+    private long checksum(byte[] bytes, int offset, int length) {
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return crc.getValue();
+
     }
 
     private void initKryo() {
@@ -70,4 +237,4 @@ public class InterestsPersistence {
 
     }
 
-}
\ No newline at end of file
+}
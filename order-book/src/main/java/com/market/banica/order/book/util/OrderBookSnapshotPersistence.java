@@ -0,0 +1,153 @@
+package com.market.banica.order.book.util;
+
+import com.market.Origin;
+import com.market.banica.common.util.ApplicationDirectoryUtil;
+import com.market.banica.order.book.model.Item;
+import com.market.banica.order.book.model.ItemOrderBookSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+public class OrderBookSnapshotPersistence {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderBookSnapshotPersistence.class);
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final int SNAPSHOT_MAGIC = 0x4F42534E;
+    private static final int SNAPSHOT_FORMAT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_SIZE = 3 * Integer.BYTES;
+    private static final int SNAPSHOT_CHECKSUM_SIZE = Long.BYTES;
+    private static final int ITEM_HEADER_SIZE = Short.BYTES + Integer.BYTES;
+    private static final int LEVEL_SIZE = Double.BYTES + Long.BYTES + Byte.BYTES;
+
+    private final String snapshotFileName;
+
+    public OrderBookSnapshotPersistence(String snapshotFileName) {
+        this.snapshotFileName = snapshotFileName;
+    }
+
+    public void persistSnapshots(Map<String, ItemOrderBookSnapshot> snapshots) throws IOException {
+
+        Map<String, byte[]> itemNames = new HashMap<>();
+        long snapshotSize = SNAPSHOT_HEADER_SIZE + SNAPSHOT_CHECKSUM_SIZE;
+        for (Map.Entry<String, ItemOrderBookSnapshot> snapshot : snapshots.entrySet()) {
+            byte[] itemName = snapshot.getKey().getBytes(StandardCharsets.UTF_8);
+            itemNames.put(snapshot.getKey(), itemName);
+            snapshotSize += ITEM_HEADER_SIZE + itemName.length + (long) LEVEL_SIZE * snapshot.getValue().size();
+        }
+
+        File temporaryFile = ApplicationDirectoryUtil.getConfigFile(snapshotFileName + TEMPORARY_SUFFIX);
+        try (RandomAccessFile snapshotAccess = new RandomAccessFile(temporaryFile, "rw");
+             FileChannel snapshotChannel = snapshotAccess.getChannel()) {
+            snapshotAccess.setLength(snapshotSize);
+            MappedByteBuffer snapshotBuffer = snapshotChannel.map(FileChannel.MapMode.READ_WRITE, 0, snapshotSize);
+
+            snapshotBuffer.putInt(SNAPSHOT_MAGIC);
+            snapshotBuffer.putInt(SNAPSHOT_FORMAT_VERSION);
+            snapshotBuffer.putInt(snapshots.size());
+            for (Map.Entry<String, ItemOrderBookSnapshot> snapshot : snapshots.entrySet()) {
+                writeItem(snapshotBuffer, itemNames.get(snapshot.getKey()), snapshot.getValue());
+            }
+            snapshotBuffer.putLong(checksum(snapshotBuffer, snapshotBuffer.position()));
+            snapshotBuffer.force();
+        }
+        Files.move(temporaryFile.toPath(), ApplicationDirectoryUtil.getConfigFile(snapshotFileName).toPath(),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        LOGGER.debug("Persisted order book snapshot of {} items!", snapshots.size());
+
+    }
+
+    public Map<String, List<Item>> loadSnapshots() throws IOException {
+
+        if (!ApplicationDirectoryUtil.doesFileExist(snapshotFileName)
+                || ApplicationDirectoryUtil.getConfigFile(snapshotFileName).length() < SNAPSHOT_HEADER_SIZE + SNAPSHOT_CHECKSUM_SIZE) {
+            LOGGER.info("No order book snapshot found in \"{}\"!", snapshotFileName);
+            return Collections.emptyMap();
+        }
+
+        try (RandomAccessFile snapshotAccess = new RandomAccessFile(ApplicationDirectoryUtil.getConfigFile(snapshotFileName), "r");
+             FileChannel snapshotChannel = snapshotAccess.getChannel()) {
+            MappedByteBuffer snapshotBuffer = snapshotChannel.map(FileChannel.MapMode.READ_ONLY, 0, snapshotChannel.size());
+
+            int checksumPosition = snapshotBuffer.limit() - SNAPSHOT_CHECKSUM_SIZE;
+            if (snapshotBuffer.getInt() != SNAPSHOT_MAGIC || snapshotBuffer.getInt() != SNAPSHOT_FORMAT_VERSION
+                    || snapshotBuffer.getLong(checksumPosition) != checksum(snapshotBuffer, checksumPosition)) {
+                LOGGER.warn("Order book snapshot \"{}\" is corrupted and will be ignored!", snapshotFileName);
+                return Collections.emptyMap();
+            }
+
+            int itemCount = snapshotBuffer.getInt();
+            Map<String, List<Item>> itemLevels = new HashMap<>(itemCount * 2);
+            for (int item = 0; item < itemCount; item++) {
+                readItem(snapshotBuffer, itemLevels);
+            }
+            LOGGER.info("Loaded order book snapshot of {} items!", itemCount);
+            return itemLevels;
+        } catch (BufferUnderflowException e) {
+            LOGGER.warn("Order book snapshot \"{}\" is truncated and will be ignored!", snapshotFileName);
+            return Collections.emptyMap();
+        }
+
+    }
+
+    private void writeItem(MappedByteBuffer snapshotBuffer, byte[] itemName, ItemOrderBookSnapshot snapshot) {
+
+        snapshotBuffer.putShort((short) itemName.length);
+        snapshotBuffer.put(itemName);
+        snapshotBuffer.putInt(snapshot.size());
+        for (int level = 0; level < snapshot.size(); level++) {
+            snapshotBuffer.putDouble(snapshot.getPrice(level));
+            snapshotBuffer.putLong(snapshot.getQuantity(level));
+            snapshotBuffer.put((byte) snapshot.getOrigin(level).getNumber());
+        }
+
+    }
+
+    private void readItem(MappedByteBuffer snapshotBuffer, Map<String, List<Item>> itemLevels) {
+
+        byte[] itemName = new byte[snapshotBuffer.getShort() & 0xFFFF];
+        snapshotBuffer.get(itemName);
+        int levelCount = snapshotBuffer.getInt();
+
+        List<Item> levels = new ArrayList<>(levelCount);
+        for (int level = 0; level < levelCount; level++) {
+            double price = snapshotBuffer.getDouble();
+            long quantity = snapshotBuffer.getLong();
+            Origin origin = Origin.forNumber(snapshotBuffer.get());
+            if (origin != null) {
+                levels.add(new Item(price, quantity, origin));
+            }
+        }
+        itemLevels.put(new String(itemName, StandardCharsets.UTF_8), levels);
+
+    }
+
+    private long checksum(MappedByteBuffer snapshotBuffer, int length) {
+
+        ByteBuffer checksummedBytes = snapshotBuffer.duplicate();
+        checksummedBytes.position(0).limit(length);
+        CRC32 crc = new CRC32();
+        crc.update(checksummedBytes);
+        return crc.getValue();
+
+    }
+
+}
@@ -0,0 +1,235 @@
+package com.market.banica.order.book.ingestion;
+
+import com.aurora.Aurora;
+import com.google.protobuf.Any;
+import com.market.Origin;
+import com.market.TickResponse;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
+import com.market.banica.order.book.model.ItemMarket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class BatchingTickIngestionTest {
+
+    private static final String EGGS_ITEM_NAME = "eggs";
+    private static final String FLOUR_ITEM_NAME = "flour";
+
+    private final ItemMarket itemMarket = mock(ItemMarket.class);
+    private final OrderBookMetrics metrics = new OrderBookMetrics();
+
+    private BatchingTickIngestion batchingTickIngestion;
+
+    @BeforeEach
+    void setUp() {
+
+        batchingTickIngestion = new BatchingTickIngestion(itemMarket, metrics, 16, 100_000, 64, false);
+
+    }
+
+    @AfterEach
+    void teardown() {
+
+        ReflectionTestUtils.invokeMethod(batchingTickIngestion, "stop");
+
+    }
+
+    @Test
+    void ingestTick_TicksAreAppliedGroupedByGood() {
+
+        batchingTickIngestion.ingestTick(tick(EGGS_ITEM_NAME, 1));
+        batchingTickIngestion.ingestTick(tick(FLOUR_ITEM_NAME, 2));
+        batchingTickIngestion.ingestTick(tick(EGGS_ITEM_NAME, 3));
+
+        ReflectionTestUtils.invokeMethod(batchingTickIngestion, "start");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TickResponse>> eggsTicks = ArgumentCaptor.forClass(List.class);
+        verify(itemMarket, timeout(1000)).updateItems(eq(EGGS_ITEM_NAME), eggsTicks.capture());
+        verify(itemMarket, timeout(1000)).updateItems(eq(FLOUR_ITEM_NAME), anyList());
+
+        assertEquals(Arrays.asList(1L, 3L), Arrays.asList(eggsTicks.getValue().get(0).getQuantity(),
+                eggsTicks.getValue().get(1).getQuantity()));
+
+    }
+
+    @Test
+    void ingestTick_ConflatedTicksAreAppliedAsNetQuantityPerLevel() {
+
+        ReflectionTestUtils.invokeMethod(batchingTickIngestion, "stop");
+        batchingTickIngestion = new BatchingTickIngestion(itemMarket, metrics, 16, 100_000, 64, true);
+
+        batchingTickIngestion.ingestTick(tick(EGGS_ITEM_NAME, 1));
+        batchingTickIngestion.ingestTick(tick(EGGS_ITEM_NAME, 2.5, 4));
+        batchingTickIngestion.ingestTick(tick(EGGS_ITEM_NAME, 3));
+        batchingTickIngestion.ingestTick(tick(FLOUR_ITEM_NAME, 2));
+        batchingTickIngestion.ingestTick(tick(FLOUR_ITEM_NAME, -2));
+
+        ReflectionTestUtils.invokeMethod(batchingTickIngestion, "start");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TickResponse>> eggsTicks = ArgumentCaptor.forClass(List.class);
+        verify(itemMarket, timeout(1000)).updateItems(eq(EGGS_ITEM_NAME), eggsTicks.capture());
+        verify(itemMarket, never()).updateItems(eq(FLOUR_ITEM_NAME), anyList());
+
+        assertEquals(2, eggsTicks.getValue().size());
+        assertEquals(4L, eggsTicks.getValue().get(0).getQuantity());
+        assertEquals(1.5, eggsTicks.getValue().get(0).getPrice());
+        assertEquals(4L, eggsTicks.getValue().get(1).getQuantity());
+        assertEquals(2.5, eggsTicks.getValue().get(1).getPrice());
+
+    }
+
+    @Test
+    void ingestTick_ConflatedTicksOfQueuedLevelDoNotTakeQueueCapacity() {
+
+        ReflectionTestUtils.invokeMethod(batchingTickIngestion, "stop");
+        batchingTickIngestion = new BatchingTickIngestion(itemMarket, metrics, 16, 100_000, 2, true);
+
+        for (int tick = 0; tick < 10; tick++) {
+            batchingTickIngestion.ingestTick(tick(EGGS_ITEM_NAME, 1));
+        }
+        batchingTickIngestion.ingestTick(tick(EGGS_ITEM_NAME, 2.5, 4));
+
+        ReflectionTestUtils.invokeMethod(batchingTickIngestion, "start");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TickResponse>> eggsTicks = ArgumentCaptor.forClass(List.class);
+        verify(itemMarket, timeout(1000)).updateItems(eq(EGGS_ITEM_NAME), eggsTicks.capture());
+
+        assertEquals(2, eggsTicks.getValue().size());
+        assertEquals(10L, eggsTicks.getValue().get(0).getQuantity());
+        assertEquals(4L, eggsTicks.getValue().get(1).getQuantity());
+
+    }
+
+    @Test
+    void ingestTick_ConflatedTicksLeaveTheSameBookAsTicksAppliedOneByOne() throws InterruptedException {
+
+        ItemMarket conflatedItemMarket = new ItemMarket();
+        ItemMarket unconflatedItemMarket = new ItemMarket();
+        conflatedItemMarket.addTrackedItem(EGGS_ITEM_NAME);
+        unconflatedItemMarket.addTrackedItem(EGGS_ITEM_NAME);
+        ReflectionTestUtils.invokeMethod(batchingTickIngestion, "stop");
+        batchingTickIngestion = new BatchingTickIngestion(conflatedItemMarket, metrics, 16, 100_000, 64, true);
+
+        CountDownLatch taskLatch = new CountDownLatch(1);
+        for (long quantity : new long[]{-3, 5}) {
+            batchingTickIngestion.ingestTick(tick(EGGS_ITEM_NAME, quantity));
+            unconflatedItemMarket.updateItem(tick(EGGS_ITEM_NAME, quantity));
+        }
+        batchingTickIngestion.runAfterPendingTicks(taskLatch::countDown);
+
+        ReflectionTestUtils.invokeMethod(batchingTickIngestion, "start");
+
+        assertTrue(taskLatch.await(1, TimeUnit.SECONDS));
+        assertEquals(unconflatedItemMarket.getItemSetByName(EGGS_ITEM_NAME), conflatedItemMarket.getItemSetByName(EGGS_ITEM_NAME));
+        assertEquals(2L, conflatedItemMarket.getProductsQuantity().get(EGGS_ITEM_NAME));
+
+    }
+
+    @Test
+    void runAfterPendingTicks_ConflatedTicksAreNotAppliedAheadOfTask() throws InterruptedException {
+
+        ReflectionTestUtils.invokeMethod(batchingTickIngestion, "stop");
+        batchingTickIngestion = new BatchingTickIngestion(itemMarket, metrics, 16, 100_000, 64, true);
+        CountDownLatch taskLatch = new CountDownLatch(1);
+        Runnable task = mock(Runnable.class);
+        doAnswer(invocation -> {
+            taskLatch.countDown();
+            return null;
+        }).when(task).run();
+
+        batchingTickIngestion.ingestTick(tick(EGGS_ITEM_NAME, 1));
+        batchingTickIngestion.runAfterPendingTicks(task);
+        batchingTickIngestion.ingestTick(tick(EGGS_ITEM_NAME, 2));
+
+        ReflectionTestUtils.invokeMethod(batchingTickIngestion, "start");
+
+        assertTrue(taskLatch.await(1, TimeUnit.SECONDS));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TickResponse>> eggsTicks = ArgumentCaptor.forClass(List.class);
+        InOrder inOrder = inOrder(itemMarket, task);
+        inOrder.verify(itemMarket).updateItems(eq(EGGS_ITEM_NAME), eggsTicks.capture());
+        inOrder.verify(task).run();
+        inOrder.verify(itemMarket, timeout(1000)).updateItems(eq(EGGS_ITEM_NAME), eggsTicks.capture());
+
+        assertEquals(1L, eggsTicks.getAllValues().get(0).get(0).getQuantity());
+        assertEquals(2L, eggsTicks.getAllValues().get(1).get(0).getQuantity());
+
+    }
+
+    @Test
+    void runAfterPendingTicks_TaskRunsAfterTicksQueuedBeforeIt() throws InterruptedException {
+
+        CountDownLatch taskLatch = new CountDownLatch(1);
+        Runnable task = mock(Runnable.class);
+        doAnswer(invocation -> {
+            taskLatch.countDown();
+            return null;
+        }).when(task).run();
+
+        batchingTickIngestion.ingestTick(tick(EGGS_ITEM_NAME, 1));
+        batchingTickIngestion.runAfterPendingTicks(task);
+        batchingTickIngestion.ingestTick(tick(EGGS_ITEM_NAME, 2));
+
+        ReflectionTestUtils.invokeMethod(batchingTickIngestion, "start");
+
+        assertTrue(taskLatch.await(1, TimeUnit.SECONDS));
+        InOrder inOrder = inOrder(itemMarket, task);
+        inOrder.verify(itemMarket).updateItems(eq(EGGS_ITEM_NAME), anyList());
+        inOrder.verify(task).run();
+        inOrder.verify(itemMarket, timeout(1000)).updateItems(eq(EGGS_ITEM_NAME), anyList());
+
+    }
+
+    @Test
+    void ingestTick_RecordsTickToBookLatencyOnceTicksAreApplied() throws InterruptedException {
+
+        CountDownLatch taskLatch = new CountDownLatch(1);
+        batchingTickIngestion.ingestTick(tick(EGGS_ITEM_NAME, 1));
+        batchingTickIngestion.ingestTick(tick(FLOUR_ITEM_NAME, 2));
+        batchingTickIngestion.runAfterPendingTicks(taskLatch::countDown);
+
+        ReflectionTestUtils.invokeMethod(batchingTickIngestion, "start");
+
+        assertTrue(taskLatch.await(1, TimeUnit.SECONDS));
+        assertEquals(2, metrics.getTickToBookNanos("batching").getCount());
+        assertEquals(0, metrics.getTickToBookNanos("ring-buffer").getCount());
+
+    }
+
+    private Aurora.AuroraResponse tick(String goodName, long quantity) {
+        return tick(goodName, 1.5, quantity);
+    }
+
+    private Aurora.AuroraResponse tick(String goodName, double price, long quantity) {
+        TickResponse tickResponse = TickResponse.newBuilder()
+                .setGoodName(goodName)
+                .setQuantity(quantity)
+                .setPrice(price)
+                .setOrigin(Origin.EUROPE)
+                .build();
+        return Aurora.AuroraResponse.newBuilder().setMessage(Any.pack(tickResponse)).build();
+    }
+
+}
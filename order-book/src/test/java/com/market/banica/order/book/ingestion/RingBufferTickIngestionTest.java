@@ -0,0 +1,135 @@
+package com.market.banica.order.book.ingestion;
+
+import com.aurora.Aurora;
+import com.google.protobuf.Any;
+import com.market.Origin;
+import com.market.TickResponse;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
+import com.market.banica.order.book.model.ItemMarket;
+import com.market.banica.order.book.model.OrderBookWriter;
+import com.orderbook.ReconnectionResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class RingBufferTickIngestionTest {
+
+    private final ItemMarket itemMarket = mock(ItemMarket.class);
+
+    private RingBufferTickIngestion ringBufferTickIngestion;
+
+    @BeforeEach
+    void setUp() {
+
+        ringBufferTickIngestion = new RingBufferTickIngestion(itemMarket, new OrderBookMetrics(), 3, 16, 8, false);
+        ReflectionTestUtils.invokeMethod(ringBufferTickIngestion, "start");
+
+    }
+
+    @AfterEach
+    void teardown() {
+
+        ReflectionTestUtils.invokeMethod(ringBufferTickIngestion, "stop");
+
+    }
+
+    @Test
+    void ingestTick_TicksOfEveryGoodReachTheItemMarket() {
+
+        ringBufferTickIngestion.ingestTick(tick("eggs"));
+        ringBufferTickIngestion.ingestTick(tick("flour"));
+        ringBufferTickIngestion.ingestTick(tick("milk"));
+
+        verify(itemMarket, timeout(1000)).updateOwnedItems(eq("eggs"), anyList());
+        verify(itemMarket, timeout(1000)).updateOwnedItems(eq("flour"), anyList());
+        verify(itemMarket, timeout(1000)).updateOwnedItems(eq("milk"), anyList());
+
+    }
+
+    @Test
+    void ingestTick_IgnoresResponsesOfDifferentType() {
+
+        Aurora.AuroraResponse response = Aurora.AuroraResponse.newBuilder()
+                .setMessage(Any.pack(ReconnectionResponse.newBuilder().build()))
+                .build();
+
+        assertDoesNotThrow(() -> ringBufferTickIngestion.ingestTick(response));
+        ringBufferTickIngestion.ingestTick(tick("eggs"));
+
+        verify(itemMarket, timeout(1000)).updateOwnedItems(eq("eggs"), anyList());
+        verify(itemMarket, times(1)).updateOwnedItems(anyString(), anyList());
+
+    }
+
+    @Test
+    void start_BookMutationsRunOnTheOwningWriterAfterItsPendingTicks() {
+
+        ArgumentCaptor<OrderBookWriter> bookWriter = ArgumentCaptor.forClass(OrderBookWriter.class);
+        verify(itemMarket).setBookWriter(bookWriter.capture());
+        AtomicReference<Thread> mutationThread = new AtomicReference<>();
+        Runnable mutation = mock(Runnable.class);
+        doAnswer(invocation -> {
+            mutationThread.set(Thread.currentThread());
+            return null;
+        }).when(mutation).run();
+
+        ringBufferTickIngestion.ingestTick(tick("eggs"));
+        bookWriter.getValue().execute("eggs", mutation);
+
+        verify(mutation, timeout(1000)).run();
+        InOrder inOrder = inOrder(itemMarket, mutation);
+        inOrder.verify(itemMarket).updateOwnedItems(eq("eggs"), anyList());
+        inOrder.verify(mutation).run();
+        assertNotEquals(Thread.currentThread(), mutationThread.get());
+
+    }
+
+    @Test
+    void stop_ReturnsBooksToTheirLocks() {
+
+        ReflectionTestUtils.invokeMethod(ringBufferTickIngestion, "stop");
+
+        verify(itemMarket).setBookWriter(null);
+
+    }
+
+    @Test
+    void runAfterPendingTicks_TaskRunsOnceAfterAllShards() {
+
+        Runnable task = mock(Runnable.class);
+
+        ringBufferTickIngestion.runAfterPendingTicks(task);
+
+        verify(task, timeout(1000).times(1)).run();
+        verify(task, times(1)).run();
+
+    }
+
+    private Aurora.AuroraResponse tick(String goodName) {
+        TickResponse tickResponse = TickResponse.newBuilder()
+                .setGoodName(goodName)
+                .setQuantity(1)
+                .setPrice(1.5)
+                .setOrigin(Origin.EUROPE)
+                .build();
+        return Aurora.AuroraResponse.newBuilder().setMessage(Any.pack(tickResponse)).build();
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.market.banica.order.book.ingestion;
+
+import com.market.Origin;
+import com.market.TickResponse;
+import com.market.banica.order.book.model.ItemMarket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class TickRingBufferTest {
+
+    private static final String EGGS_ITEM_NAME = "eggs";
+
+    private final ItemMarket itemMarket = mock(ItemMarket.class);
+    private final TickBatch tickBatch = new TickBatch(itemMarket);
+    private final ExecutorService producerExecutor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void teardown() {
+
+        producerExecutor.shutdownNow();
+
+    }
+
+    @Test
+    void constructor_CapacityMustBePowerOfTwo() {
+
+        assertThrows(IllegalArgumentException.class, () -> new TickRingBuffer(6));
+
+    }
+
+    @Test
+    void consume_PublishedTicksAreAppliedInOneBatch() {
+
+        TickRingBuffer tickRingBuffer = new TickRingBuffer(8);
+        tickRingBuffer.publishTick(tick(1));
+        tickRingBuffer.publishTick(tick(2));
+        tickRingBuffer.publishTick(tick(3));
+
+        int consumed = tickRingBuffer.consume(tickBatch, 16);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TickResponse>> ticks = ArgumentCaptor.forClass(List.class);
+        verify(itemMarket).updateItems(eq(EGGS_ITEM_NAME), ticks.capture());
+        assertEquals(3, consumed);
+        assertEquals(3, ticks.getValue().size());
+        assertEquals(0, tickRingBuffer.consume(tickBatch, 16));
+
+    }
+
+    @Test
+    void consume_TaskRunsBetweenTicksPublishedAroundIt() {
+
+        TickRingBuffer tickRingBuffer = new TickRingBuffer(8);
+        Runnable task = mock(Runnable.class);
+        tickRingBuffer.publishTick(tick(1));
+        tickRingBuffer.publishTask(task);
+        tickRingBuffer.publishTick(tick(2));
+
+        tickRingBuffer.consume(tickBatch, 16);
+
+        InOrder inOrder = inOrder(itemMarket, task);
+        inOrder.verify(itemMarket).updateItems(eq(EGGS_ITEM_NAME), anyList());
+        inOrder.verify(task).run();
+        inOrder.verify(itemMarket).updateItems(eq(EGGS_ITEM_NAME), anyList());
+
+    }
+
+    @Test
+    void publishTick_WaitsForConsumerWhenBufferIsFull() throws Exception {
+
+        TickRingBuffer tickRingBuffer = new TickRingBuffer(2);
+        tickRingBuffer.publishTick(tick(1));
+        tickRingBuffer.publishTick(tick(2));
+
+        Future<?> blockedPublish = producerExecutor.submit(() -> tickRingBuffer.publishTick(tick(3)));
+
+        assertThrows(TimeoutException.class, () -> blockedPublish.get(100, TimeUnit.MILLISECONDS));
+        assertFalse(blockedPublish.isDone());
+
+        int consumedTicks = tickRingBuffer.consume(tickBatch, 16);
+        assertTrue(consumedTicks >= 2);
+        blockedPublish.get(1, TimeUnit.SECONDS);
+        assertEquals(3, consumedTicks + tickRingBuffer.consume(tickBatch, 16));
+
+    }
+
+    private TickResponse tick(long quantity) {
+        return TickResponse.newBuilder()
+                .setGoodName(EGGS_ITEM_NAME)
+                .setQuantity(quantity)
+                .setPrice(1.5)
+                .setOrigin(Origin.EUROPE)
+                .build();
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.market.banica.order.book.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+    @Test
+    void getValueAtPercentile_SmallValuesAreExact() {
+
+        for (long value = 1; value <= 20; value++) {
+            latencyHistogram.record(value);
+        }
+
+        assertEquals(10, latencyHistogram.getValueAtPercentile(50));
+        assertEquals(20, latencyHistogram.getValueAtPercentile(100));
+        assertEquals(20, latencyHistogram.getMax());
+        assertEquals(10, latencyHistogram.getMean());
+
+    }
+
+    @Test
+    void getValueAtPercentile_LargeValuesStayWithinRelativePrecision() {
+
+        for (long value = 1; value <= 100_000; value++) {
+            latencyHistogram.record(value * 1_000);
+        }
+
+        long median = latencyHistogram.getValueAtPercentile(50);
+        long p99 = latencyHistogram.getValueAtPercentile(99);
+
+        assertTrue(Math.abs(median - 50_000_000) <= 50_000_000 / 16, "median: " + median);
+        assertTrue(Math.abs(p99 - 99_000_000) <= 99_000_000 / 16, "p99: " + p99);
+        assertEquals(100_000, latencyHistogram.getCount());
+
+    }
+
+    @Test
+    void record_ClampsNegativeAndOversizedValues() {
+
+        latencyHistogram.record(-5);
+        latencyHistogram.record(Long.MAX_VALUE);
+
+        Map<String, Long> statistics = latencyHistogram.getStatistics();
+
+        assertEquals(2L, statistics.get("count"));
+        assertEquals(0L, latencyHistogram.getValueAtPercentile(50));
+        assertEquals((1L << 40) - 1, statistics.get("max"));
+
+    }
+
+}
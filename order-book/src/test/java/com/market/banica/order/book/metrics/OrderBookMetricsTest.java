@@ -0,0 +1,87 @@
+package com.market.banica.order.book.metrics;
+
+import com.market.Origin;
+import com.market.TickResponse;
+import com.market.banica.order.book.model.ItemMarket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderBookMetricsTest {
+
+    private OrderBookMetrics metrics;
+    private ItemMarket itemMarket;
+
+    @BeforeEach
+    void setUp() {
+
+        metrics = new OrderBookMetrics();
+        itemMarket = new ItemMarket("tree", metrics);
+        itemMarket.addTrackedItem("eggs");
+
+    }
+
+    @Test
+    void updateItems_RecordsTicksPerOriginAndUpdateLatency() {
+
+        itemMarket.updateItems("eggs", Arrays.asList(
+                tick(1.2, 3, Origin.EUROPE), tick(1.3, 2, Origin.EUROPE), tick(1.4, 1, Origin.ASIA)));
+
+        OrderBookMetrics.ItemMetrics itemMetrics = metrics.getItemMetrics("eggs");
+
+        assertEquals(2, itemMetrics.getTicks(Origin.EUROPE));
+        assertEquals(1, itemMetrics.getTicks(Origin.ASIA));
+        assertEquals(2, metrics.getTicks(Origin.EUROPE));
+        assertEquals(3, itemMetrics.getDepth());
+        assertEquals(1, itemMetrics.getLockWaitNanos().getCount());
+        assertEquals(1, itemMetrics.getUpdateNanos().getCount());
+        assertEquals(2, metrics.getTickAgeMillis(Origin.EUROPE).getCount());
+
+    }
+
+    @Test
+    void recordLayerQuery_IgnoresUntrackedItems() {
+
+        metrics.recordLayerQuery("eggs", 500);
+        metrics.recordLayerQuery("rice", 500);
+        itemMarket.removeUntrackedItem("eggs");
+
+        assertNull(metrics.getItemMetrics("eggs"));
+        assertNull(metrics.getItemMetrics("rice"));
+
+    }
+
+    @Test
+    void scrape_WritesCountersGaugesAndSummaries() {
+
+        itemMarket.updateItems("eggs", Arrays.asList(tick(1.2, 3, Origin.EUROPE), tick(1.4, 1, Origin.ASIA)));
+        metrics.recordFillCostQuery("eggs", 2_000);
+        metrics.getTickToBookNanos("batching").record(3_000);
+
+        String scrape = metrics.scrape();
+
+        assertTrue(scrape.contains("# TYPE orderbook_ticks_total counter\n"));
+        assertTrue(scrape.contains("orderbook_ticks_total{item=\"eggs\",origin=\"EUROPE\"} 1\n"));
+        assertTrue(scrape.contains("orderbook_depth_levels{item=\"eggs\"} 2\n"));
+        assertTrue(scrape.contains("orderbook_fill_cost_query_nanos{item=\"eggs\",quantile=\"0.99\"} 2"));
+        assertTrue(scrape.contains("orderbook_fill_cost_query_nanos_count{item=\"eggs\"} 1\n"));
+        assertTrue(scrape.contains("orderbook_tick_to_book_nanos_count{mode=\"batching\"} 1\n"));
+
+    }
+
+    private static TickResponse tick(double price, long quantity, Origin origin) {
+        return TickResponse.newBuilder()
+                .setGoodName("eggs")
+                .setPrice(price)
+                .setQuantity(quantity)
+                .setOrigin(origin)
+                .setTimestamp(System.currentTimeMillis())
+                .build();
+    }
+
+}
@@ -5,18 +5,28 @@ import com.google.protobuf.Any;
 import com.market.Origin;
 import com.market.TickResponse;
 import com.market.banica.common.exception.IncorrectResponseException;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
+import com.orderbook.ItemFillCostResponse;
+import com.orderbook.ItemOrderBookRequest;
 import com.orderbook.ItemOrderBookResponse;
 import com.orderbook.OrderBookLayer;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -33,15 +43,15 @@ public class ItemMarketTest {
     private static final String PRODUCTS_QUANTITY_FIELD = "productsQuantity";
 
     private final ItemMarket itemMarket = new ItemMarket();
-    private final Map<String, TreeSet<Item>> allItems = new ConcurrentHashMap<>();
+    private final Map<String, ItemOrderBook> allItems = new ConcurrentHashMap<>();
     private final Map<String, Long> productsQuantity = new ConcurrentHashMap<>();
 
     @Before
     public void setUp() {
-        TreeSet<Item> items = this.populateItems();
+        ItemOrderBook items = this.populateItems();
 
         allItems.put(EGGS_ITEM_NAME, items);
-        allItems.put(RICE_ITEM_NAME, new TreeSet<>());
+        allItems.put(RICE_ITEM_NAME, new ItemOrderBook());
 
         ReflectionTestUtils.setField(itemMarket, ALL_ITEMS_FIELD, allItems);
         ReflectionTestUtils.setField(itemMarket, PRODUCTS_QUANTITY_FIELD, productsQuantity);
@@ -68,13 +78,31 @@ public class ItemMarketTest {
         //Assert
         assertEquals(2, allItems.get(CHEESE_ITEM_NAME).size());
 
-        assertEquals(2, allItems.get(CHEESE_ITEM_NAME).first().getQuantity());
-        assertEquals(4, allItems.get(CHEESE_ITEM_NAME).last().getQuantity());
+        assertEquals(2, allItems.get(CHEESE_ITEM_NAME).getItems().first().getQuantity());
+        assertEquals(4, allItems.get(CHEESE_ITEM_NAME).getItems().last().getQuantity());
 
         assertEquals(6, productsQuantity.get(CHEESE_ITEM_NAME));
         assertEquals(1, productsQuantity.size());
     }
 
+    @Test
+    public void updateItemsAppliesAllTicksOfAGood() {
+        //Arrange
+        itemMarket.addTrackedItem(CHEESE_ITEM_NAME);
+        TickResponse cheese = TickResponse.newBuilder().setGoodName(CHEESE_ITEM_NAME).setQuantity(2).setPrice(2.6).setOrigin(Origin.ASIA).build();
+        TickResponse cheese2 = TickResponse.newBuilder().setGoodName(CHEESE_ITEM_NAME).setQuantity(3).setPrice(2.6).setOrigin(Origin.ASIA).build();
+        TickResponse cheese3 = TickResponse.newBuilder().setGoodName(CHEESE_ITEM_NAME).setQuantity(1).setPrice(1.6).setOrigin(Origin.EUROPE).build();
+
+        //Act
+        itemMarket.updateItems(CHEESE_ITEM_NAME, Arrays.asList(cheese, cheese2, cheese3));
+
+        //Assert
+        assertEquals(2, allItems.get(CHEESE_ITEM_NAME).size());
+        assertEquals(1, allItems.get(CHEESE_ITEM_NAME).getItems().first().getQuantity());
+        assertEquals(5, allItems.get(CHEESE_ITEM_NAME).getItems().last().getQuantity());
+        assertEquals(6, productsQuantity.get(CHEESE_ITEM_NAME));
+    }
+
     @Test(expected = IncorrectResponseException.class)
     public void updateItemThrowsExceptionWhenPassingRequestOfDifferentType() {
         //Arrange
@@ -116,6 +144,242 @@ public class ItemMarketTest {
         assertEquals(Origin.ASIA, layers.get(1).getOrigin());
     }
 
+    @Test
+    public void getRequestedItemIsNotBlockedByWriteLockOfAnotherItem() throws Exception {
+        //Arrange
+        itemMarket.addTrackedItem(CHEESE_ITEM_NAME);
+        TickResponse cheese = TickResponse.newBuilder().setGoodName(CHEESE_ITEM_NAME).setQuantity(2).setPrice(2.6).setOrigin(Origin.ASIA).build();
+        itemMarket.updateItem(Aurora.AuroraResponse.newBuilder().setMessage(Any.pack(cheese)).build());
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+        //Act
+        allItems.get(EGGS_ITEM_NAME).getLock().writeLock().lock();
+        List<OrderBookLayer> layers;
+        try {
+            layers = executorService.submit(() -> itemMarket.getRequestedItem(CHEESE_ITEM_NAME, 1)).get(1, TimeUnit.SECONDS);
+        } finally {
+            allItems.get(EGGS_ITEM_NAME).getLock().writeLock().unlock();
+            executorService.shutdownNow();
+        }
+
+        //Assert
+        assertEquals(1, layers.size());
+        assertEquals(1, layers.get(0).getQuantity());
+    }
+
+    @Test
+    public void getFillCostReturnsCostAveragePriceAndWorstPrice() {
+        //Act
+        ItemFillCostResponse fillCost = itemMarket.getFillCost(EGGS_ITEM_NAME, 5);
+
+        //Assert
+        assertTrue(fillCost.getFillable());
+        assertEquals(3, fillCost.getLevels());
+        assertEquals(3 * 1.2 + 2.2 + 3.2, fillCost.getTotalCost(), 1e-9);
+        assertEquals((3 * 1.2 + 2.2 + 3.2) / 5, fillCost.getAveragePrice(), 1e-9);
+        assertEquals(3.2, fillCost.getWorstPrice(), 1e-9);
+    }
+
+    @Test
+    public void getFillCostWithInsufficientQuantityIsNotFillable() {
+        //Act
+        ItemFillCostResponse fillCost = itemMarket.getFillCost(EGGS_ITEM_NAME, 7);
+
+        //Assert
+        assertFalse(fillCost.getFillable());
+        assertEquals(7, fillCost.getQuantity());
+        assertEquals(0, fillCost.getLevels());
+    }
+
+    @Test
+    public void getRequestedItemsReturnsLayersInRequestOrder() {
+        //Arrange
+        List<ItemOrderBookRequest> requests = Arrays.asList(
+                ItemOrderBookRequest.newBuilder().setItemName(EGGS_ITEM_NAME).setQuantity(4).build(),
+                ItemOrderBookRequest.newBuilder().setItemName(RICE_ITEM_NAME).setQuantity(1).build(),
+                ItemOrderBookRequest.newBuilder().setItemName(MEAT_ITEM_NAME).setQuantity(1).build());
+
+        //Act
+        List<List<OrderBookLayer>> requestedItems = itemMarket.getRequestedItems(requests);
+
+        //Assert
+        assertEquals(3, requestedItems.size());
+
+        assertEquals(2, requestedItems.get(0).size());
+        assertEquals(3, requestedItems.get(0).get(0).getQuantity());
+        assertEquals(1, requestedItems.get(0).get(1).getQuantity());
+
+        assertTrue(requestedItems.get(1).isEmpty());
+        assertTrue(requestedItems.get(2).isEmpty());
+    }
+
+    @Test
+    public void getRequestedItemsWaitsForWriterOfRequestedItem() throws Exception {
+        //Arrange
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        List<ItemOrderBookRequest> requests = Arrays.asList(
+                ItemOrderBookRequest.newBuilder().setItemName(RICE_ITEM_NAME).setQuantity(1).build(),
+                ItemOrderBookRequest.newBuilder().setItemName(EGGS_ITEM_NAME).setQuantity(1).build());
+        TickResponse rice = TickResponse.newBuilder().setGoodName(RICE_ITEM_NAME).setQuantity(1).setPrice(0.5).setOrigin(Origin.ASIA).build();
+
+        //Act
+        allItems.get(EGGS_ITEM_NAME).getLock().writeLock().lock();
+        Future<List<List<OrderBookLayer>>> requestedItems;
+        try {
+            requestedItems = executorService.submit(() -> itemMarket.getRequestedItems(requests));
+            allItems.get(RICE_ITEM_NAME).addItem(new Item(rice.getPrice(), rice.getQuantity(), rice.getOrigin()));
+            allItems.get(RICE_ITEM_NAME).publishChanges();
+            allItems.get(EGGS_ITEM_NAME).addItem(new Item(0.2, 5, Origin.ASIA));
+            allItems.get(EGGS_ITEM_NAME).publishChanges();
+        } finally {
+            allItems.get(EGGS_ITEM_NAME).getLock().writeLock().unlock();
+        }
+
+        //Assert
+        List<List<OrderBookLayer>> layers = requestedItems.get(1, TimeUnit.SECONDS);
+        executorService.shutdownNow();
+
+        assertEquals(1, layers.get(0).size());
+        assertEquals(Origin.ASIA, layers.get(1).get(0).getOrigin());
+    }
+
+    @Test
+    public void zeroingMarketProductsFromMarketRemovesOnlyThatMarketsLevels() {
+        //Arrange
+        allItems.get(EGGS_ITEM_NAME).addItem(new Item(0.7, 4, Origin.ASIA));
+        productsQuantity.put(EGGS_ITEM_NAME, 10L);
+
+        //Act
+        itemMarket.zeroingMarketProductsFromMarket("market-europe", EGGS_ITEM_NAME);
+
+        //Assert
+        assertEquals(1, allItems.get(EGGS_ITEM_NAME).size());
+        assertEquals(Origin.ASIA, allItems.get(EGGS_ITEM_NAME).getItems().first().getOrigin());
+        assertEquals(4, productsQuantity.get(EGGS_ITEM_NAME));
+    }
+
+    @Test
+    public void zeroingMarketProductsFromMarketWithBookWriterRunsOnTheWriter() {
+        //Arrange
+        allItems.get(EGGS_ITEM_NAME).addItem(new Item(0.7, 4, Origin.ASIA));
+        productsQuantity.put(EGGS_ITEM_NAME, 10L);
+        List<Runnable> writerMutations = new ArrayList<>();
+        itemMarket.setBookWriter((itemName, mutation) -> writerMutations.add(mutation));
+
+        //Act
+        itemMarket.zeroingMarketProductsFromMarket("market-europe", EGGS_ITEM_NAME);
+        int levelsBeforeWriterRuns = allItems.get(EGGS_ITEM_NAME).size();
+        writerMutations.forEach(Runnable::run);
+
+        //Assert
+        assertEquals(1, writerMutations.size());
+        assertEquals(4, levelsBeforeWriterRuns);
+        assertEquals(1, allItems.get(EGGS_ITEM_NAME).size());
+        assertEquals(4, productsQuantity.get(EGGS_ITEM_NAME));
+    }
+
+    @Test
+    public void zeroingMarketProductsFromMarketWithUnknownMarketKeepsLevels() {
+        //Arrange
+        productsQuantity.put(EGGS_ITEM_NAME, 6L);
+
+        //Act
+        itemMarket.zeroingMarketProductsFromMarket("market-africa", EGGS_ITEM_NAME);
+
+        //Assert
+        assertEquals(3, allItems.get(EGGS_ITEM_NAME).size());
+        assertEquals(6, productsQuantity.get(EGGS_ITEM_NAME));
+    }
+
+    @Test
+    public void updateItemsTrimsLevelsBeyondMaxDepth() {
+        //Arrange
+        itemMarket.setBounds(new OrderBookBounds(3, 0, 0));
+        productsQuantity.put(EGGS_ITEM_NAME, 6L);
+        TickResponse eggs = TickResponse.newBuilder().setGoodName(EGGS_ITEM_NAME).setQuantity(4).setPrice(0.7).setOrigin(Origin.ASIA).build();
+
+        //Act
+        itemMarket.updateItems(EGGS_ITEM_NAME, Collections.singletonList(eggs));
+
+        //Assert
+        assertEquals(3, allItems.get(EGGS_ITEM_NAME).size());
+        assertEquals(2.2, allItems.get(EGGS_ITEM_NAME).getItems().last().getPrice());
+        assertEquals(8, productsQuantity.get(EGGS_ITEM_NAME));
+        assertEquals(1, itemMarket.getEvictedLevels());
+        assertEquals(2, itemMarket.getEvictedQuantity());
+    }
+
+    @Test
+    public void evictIdleLevelsRemovesLevelsOlderThanMaxAge() {
+        //Arrange
+        itemMarket.setBounds(new OrderBookBounds(0, 0, 60000));
+        productsQuantity.put(EGGS_ITEM_NAME, 6L);
+        TickResponse eggs = TickResponse.newBuilder().setGoodName(EGGS_ITEM_NAME).setQuantity(4).setPrice(0.7).setOrigin(Origin.ASIA).build();
+        itemMarket.updateItems(EGGS_ITEM_NAME, Collections.singletonList(eggs));
+
+        //Act
+        itemMarket.evictIdleLevels();
+
+        //Assert
+        assertEquals(1, allItems.get(EGGS_ITEM_NAME).size());
+        assertEquals(Origin.ASIA, allItems.get(EGGS_ITEM_NAME).getItems().first().getOrigin());
+        assertEquals(4, productsQuantity.get(EGGS_ITEM_NAME));
+        assertEquals(3, itemMarket.getEvictedLevels());
+    }
+
+    @Test
+    public void updateItemsWithPrimitiveOrderBookAppliesAllTicksOfAGood() {
+        //Arrange
+        ItemMarket primitiveItemMarket = new ItemMarket("primitive", new OrderBookMetrics());
+        primitiveItemMarket.addTrackedItem(CHEESE_ITEM_NAME);
+        TickResponse cheese = TickResponse.newBuilder().setGoodName(CHEESE_ITEM_NAME).setQuantity(2).setPrice(2.6).setOrigin(Origin.ASIA).build();
+        TickResponse cheese2 = TickResponse.newBuilder().setGoodName(CHEESE_ITEM_NAME).setQuantity(3).setPrice(1.6).setOrigin(Origin.EUROPE).build();
+
+        //Act
+        primitiveItemMarket.updateItems(CHEESE_ITEM_NAME, Arrays.asList(cheese, cheese2));
+        List<OrderBookLayer> layers = primitiveItemMarket.getRequestedItem(CHEESE_ITEM_NAME, 4);
+
+        //Assert
+        assertEquals(2, layers.size());
+        assertEquals(1.6, layers.get(0).getPrice());
+        assertEquals(1, layers.get(1).getQuantity());
+        assertEquals(5L, primitiveItemMarket.getProductsQuantity().get(CHEESE_ITEM_NAME));
+    }
+
+    @Test
+    public void updateItemsIgnoresTicksWithUnrecognizedOriginInEveryOrderBook() {
+        for (String bookImplementation : Arrays.asList("tree", "primitive")) {
+            //Arrange
+            ItemMarket bookItemMarket = new ItemMarket(bookImplementation, new OrderBookMetrics());
+            bookItemMarket.addTrackedItem(CHEESE_ITEM_NAME);
+            TickResponse cheese = TickResponse.newBuilder().setGoodName(CHEESE_ITEM_NAME).setQuantity(2).setPrice(2.6).setOrigin(Origin.ASIA).build();
+            TickResponse unrecognized = TickResponse.newBuilder().setGoodName(CHEESE_ITEM_NAME).setQuantity(3).setPrice(1.6).setOriginValue(42).build();
+
+            //Act
+            bookItemMarket.updateItems(CHEESE_ITEM_NAME, Arrays.asList(unrecognized, cheese));
+
+            //Assert
+            assertEquals(1, bookItemMarket.getItemSetByName(CHEESE_ITEM_NAME).get().size());
+            assertEquals(2L, bookItemMarket.getProductsQuantity().get(CHEESE_ITEM_NAME));
+        }
+    }
+
+    @Test
+    public void getItemSetByNameReturnsLevelsThatLaterTicksDoNotChange() {
+        //Arrange
+        Set<Item> itemSet = itemMarket.getItemSetByName(EGGS_ITEM_NAME).get();
+        TickResponse eggs = TickResponse.newBuilder().setGoodName(EGGS_ITEM_NAME).setQuantity(5).setPrice(2.6).setOrigin(Origin.ASIA).build();
+        int levels = itemSet.size();
+        long quantity = itemSet.stream().mapToLong(Item::getQuantity).sum();
+
+        //Act
+        itemMarket.updateItems(EGGS_ITEM_NAME, Collections.singletonList(eggs));
+
+        //Assert
+        assertEquals(levels, itemSet.size());
+        assertEquals(quantity, itemSet.stream().mapToLong(Item::getQuantity).sum());
+    }
+
     @Test
     public void getProductsQuantityReturnsProductsQuantity() {
         //Arrange
@@ -180,6 +444,56 @@ public class ItemMarketTest {
         assertEquals(0L, productsQuantity.get(MEAT_ITEM_NAME));
     }
 
+    @Test
+    public void addTrackedItemWithRestoredLevelsSeedsOrderBook() {
+        //Arrange
+        Map<String, List<Item>> restoredItems = new HashMap<>();
+        restoredItems.put(MEAT_ITEM_NAME, Arrays.asList(new Item(1.5, 2, Origin.ASIA), new Item(2.5, 3, Origin.EUROPE)));
+        this.itemMarket.restoreItems(restoredItems);
+
+        //Act
+        this.itemMarket.addTrackedItem(MEAT_ITEM_NAME);
+
+        //Assert
+        assertEquals(2, allItems.get(MEAT_ITEM_NAME).size());
+        assertEquals(5L, productsQuantity.get(MEAT_ITEM_NAME));
+    }
+
+    @Test
+    public void updateItemsReplacesRestoredLevelsOfTickOrigin() {
+        //Arrange
+        Map<String, List<Item>> restoredItems = new HashMap<>();
+        restoredItems.put(MEAT_ITEM_NAME, Arrays.asList(new Item(1.5, 2, Origin.ASIA), new Item(2.5, 3, Origin.EUROPE)));
+        this.itemMarket.restoreItems(restoredItems);
+        this.itemMarket.addTrackedItem(MEAT_ITEM_NAME);
+        TickResponse meat = TickResponse.newBuilder().setGoodName(MEAT_ITEM_NAME).setQuantity(4).setPrice(1.5).setOrigin(Origin.ASIA).build();
+        TickResponse meat2 = TickResponse.newBuilder().setGoodName(MEAT_ITEM_NAME).setQuantity(1).setPrice(1.7).setOrigin(Origin.ASIA).build();
+
+        //Act
+        this.itemMarket.updateItems(MEAT_ITEM_NAME, Arrays.asList(meat, meat2));
+
+        //Assert
+        assertEquals(3, allItems.get(MEAT_ITEM_NAME).size());
+        assertEquals(4, allItems.get(MEAT_ITEM_NAME).getItems().first().getQuantity());
+        assertEquals(8L, productsQuantity.get(MEAT_ITEM_NAME));
+    }
+
+    @Test
+    public void getSnapshotsIncludesRestoredItemsThatAreNotTrackedYet() {
+        //Arrange
+        Map<String, List<Item>> restoredItems = new HashMap<>();
+        restoredItems.put(MEAT_ITEM_NAME, Arrays.asList(new Item(1.5, 2, Origin.ASIA)));
+        this.itemMarket.restoreItems(restoredItems);
+
+        //Act
+        Map<String, ItemOrderBookSnapshot> snapshots = this.itemMarket.getSnapshots();
+
+        //Assert
+        assertEquals(3, snapshots.size());
+        assertEquals(2, snapshots.get(MEAT_ITEM_NAME).getQuantity());
+        assertEquals(6, snapshots.get(EGGS_ITEM_NAME).getQuantity());
+    }
+
     @Test
     public void removeUntrackedItemWithExistingItemNameRemovesItFromMap() {
         //Arrange
@@ -193,11 +507,34 @@ public class ItemMarketTest {
         assertFalse(productsQuantity.containsKey(MEAT_ITEM_NAME));
     }
 
-    private TreeSet<Item> populateItems() {
-        TreeSet<Item> items = new TreeSet<>();
-        items.add(new Item(1.2, 3, Origin.EUROPE));
-        items.add(new Item(2.2, 1, Origin.EUROPE));
-        items.add(new Item(3.2, 2, Origin.EUROPE));
+    @Test
+    public void getRequestedItemWithBookWriterBuildsStaleSnapshotOnTheWriter() {
+        //Arrange
+        List<String> writerItems = new ArrayList<>();
+        itemMarket.setBookWriter((itemName, mutation) -> {
+            writerItems.add(itemName);
+            mutation.run();
+        });
+        itemMarket.getRequestedItem(EGGS_ITEM_NAME, 1);
+        allItems.get(EGGS_ITEM_NAME).addItem(new Item(0.7, 4, Origin.ASIA));
+        writerItems.clear();
+
+        //Act
+        List<OrderBookLayer> layers = itemMarket.getRequestedItem(EGGS_ITEM_NAME, 5);
+        itemMarket.getRequestedItem(EGGS_ITEM_NAME, 5);
+
+        //Assert
+        assertEquals(Collections.singletonList(EGGS_ITEM_NAME), writerItems);
+        assertEquals(2, layers.size());
+        assertEquals(Origin.ASIA, layers.get(0).getOrigin());
+    }
+
+    private ItemOrderBook populateItems() {
+        ItemOrderBook items = new ItemOrderBook();
+        items.addItem(new Item(1.2, 3, Origin.EUROPE));
+        items.addItem(new Item(2.2, 1, Origin.EUROPE));
+        items.addItem(new Item(3.2, 2, Origin.EUROPE));
+        items.publishChanges();
         return items;
     }
 
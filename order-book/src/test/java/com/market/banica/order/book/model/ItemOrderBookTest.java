@@ -0,0 +1,387 @@
+package com.market.banica.order.book.model;
+
+import com.market.Origin;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ItemOrderBookTest {
+
+    private ItemOrderBook itemOrderBook;
+
+    @BeforeEach
+    void setUp() {
+
+        itemOrderBook = new ItemOrderBook();
+        itemOrderBook.addItem(new Item(3.2, 2, Origin.EUROPE));
+        itemOrderBook.addItem(new Item(1.2, 3, Origin.EUROPE));
+        itemOrderBook.addItem(new Item(1.2, 4, Origin.ASIA));
+        itemOrderBook.publishChanges();
+
+    }
+
+    @Test
+    void addItem_NewLevelIsInsertedInPriceThenOriginOrder() {
+
+        itemOrderBook.addItem(new Item(2.2, 1, Origin.AMERICA));
+
+        List<Item> items = new ArrayList<>(itemOrderBook.getItems());
+
+        assertEquals(4, itemOrderBook.size());
+        assertEquals(new Item(1.2, 4, Origin.ASIA), items.get(0));
+        assertEquals(new Item(1.2, 3, Origin.EUROPE), items.get(1));
+        assertEquals(new Item(2.2, 1, Origin.AMERICA), items.get(2));
+        assertEquals(new Item(3.2, 2, Origin.EUROPE), items.get(3));
+
+    }
+
+    @Test
+    void addItem_ExistingLevelIsMerged() {
+
+        itemOrderBook.addItem(new Item(1.2, 5, Origin.EUROPE));
+
+        assertEquals(3, itemOrderBook.size());
+        assertTrue(itemOrderBook.getItems().stream()
+                .anyMatch(item -> item.equals(new Item(1.2, 8, Origin.EUROPE))));
+
+    }
+
+    @Test
+    void addItem_LevelIsRemovedWhenQuantityNetsToZero() {
+
+        itemOrderBook.addItem(new Item(1.2, -3, Origin.EUROPE));
+
+        assertEquals(2, itemOrderBook.size());
+        assertFalse(itemOrderBook.getItems().contains(new Item(1.2, 0, Origin.EUROPE)));
+
+    }
+
+    @Test
+    void addItem_NegativeTickForEvictedLevelIsNotFilledFrom() {
+
+        itemOrderBook.addLevel(1.2, 1, Origin.ASIA, 10);
+        itemOrderBook.addLevel(3.2, 3, Origin.EUROPE, 10);
+        itemOrderBook.evictIdleLevels(5);
+        itemOrderBook.addLevel(1.2, -3, Origin.EUROPE, 20);
+        itemOrderBook.publishChanges();
+
+        ItemOrderBookSnapshot snapshot = itemOrderBook.getSnapshot();
+
+        assertEquals(2, snapshot.size());
+        assertEquals(10, snapshot.getQuantity());
+        assertEquals(1, snapshot.levelsToFill(4));
+        assertEquals(4, snapshot.getFilledQuantity(0, 4));
+        assertEquals(2, snapshot.levelsToFill(7));
+        assertEquals(5, snapshot.getFilledQuantity(0, 7));
+        assertEquals(2, snapshot.getFilledQuantity(1, 7));
+        assertFalse(itemOrderBook.getItems().stream().anyMatch(item -> item.getQuantity() <= 0));
+
+    }
+
+    @Test
+    void addItem_NegativeQuantityForMissingLevelNetsWithLaterTicks() {
+
+        long appliedQuantity = itemOrderBook.addItem(new Item(4.2, -3, Origin.AMERICA));
+        itemOrderBook.addItem(new Item(4.2, 5, Origin.AMERICA));
+
+        assertEquals(-3, appliedQuantity);
+        assertEquals(4, itemOrderBook.size());
+        assertEquals(2, itemOrderBook.getQuantityByOrigin(Origin.AMERICA));
+        assertTrue(itemOrderBook.getItems().stream()
+                .anyMatch(item -> item.equals(new Item(4.2, 2, Origin.AMERICA))));
+
+    }
+
+    @Test
+    void trimLevels_EvictsLevelsBeyondMaxDepth() {
+
+        long evictedQuantity = itemOrderBook.trimLevels(new OrderBookBounds(2, 0, 0));
+
+        assertEquals(2, evictedQuantity);
+        assertEquals(2, itemOrderBook.size());
+        assertEquals(1.2, itemOrderBook.getItems().last().getPrice());
+        assertEquals(3, itemOrderBook.getQuantityByOrigin(Origin.EUROPE));
+
+    }
+
+    @Test
+    void trimLevels_EvictsLevelsOutsidePriceBand() {
+
+        itemOrderBook.addItem(new Item(1.8, 1, Origin.AMERICA));
+
+        long evictedQuantity = itemOrderBook.trimLevels(new OrderBookBounds(0, 0.6, 0));
+
+        assertEquals(2, evictedQuantity);
+        assertEquals(3, itemOrderBook.size());
+        assertEquals(1.8, itemOrderBook.getItems().last().getPrice());
+
+    }
+
+    @Test
+    void evictIdleLevels_EvictsLevelsNotUpdatedSinceGivenTime() {
+
+        Item updatedLevel = new Item(1.2, 1, Origin.ASIA);
+        updatedLevel.setUpdatedAt(200);
+        itemOrderBook.addItem(updatedLevel);
+
+        long evictedQuantity = itemOrderBook.evictIdleLevels(100);
+
+        assertEquals(5, evictedQuantity);
+        assertEquals(1, itemOrderBook.size());
+        assertEquals(5, itemOrderBook.getItems().first().getQuantity());
+        assertEquals(0, itemOrderBook.getQuantityByOrigin(Origin.EUROPE));
+
+    }
+
+    @Test
+    void removeItemsByOrigin_RemovesOnlyLevelsOfThatOrigin() {
+
+        long removedQuantity = itemOrderBook.removeItemsByOrigin(Origin.EUROPE);
+
+        assertEquals(5, removedQuantity);
+        assertEquals(1, itemOrderBook.size());
+        assertEquals(Origin.ASIA, itemOrderBook.getItems().first().getOrigin());
+
+    }
+
+    @Test
+    void removeItemsByOrigin_SkipsLevelsAlreadyNettedToZero() {
+
+        itemOrderBook.addItem(new Item(1.2, -3, Origin.EUROPE));
+
+        long removedQuantity = itemOrderBook.removeItemsByOrigin(Origin.EUROPE);
+
+        assertEquals(2, removedQuantity);
+        assertEquals(1, itemOrderBook.size());
+        assertEquals(0, itemOrderBook.getQuantityByOrigin(Origin.EUROPE));
+        assertEquals(0, itemOrderBook.removeItemsByOrigin(Origin.EUROPE));
+
+    }
+
+    @Test
+    void restoreItems_MarksOriginsUntilTheyAreRemoved() {
+
+        ItemOrderBook restoredOrderBook = new ItemOrderBook();
+
+        long restoredQuantity = restoredOrderBook.restoreItems(Arrays.asList(new Item(1.2, 3, Origin.EUROPE), new Item(2.2, 1, Origin.ASIA)));
+
+        assertEquals(4, restoredQuantity);
+        assertEquals(2, restoredOrderBook.size());
+        assertTrue(restoredOrderBook.isRestoredOrigin(Origin.EUROPE));
+
+        restoredOrderBook.removeItemsByOrigin(Origin.EUROPE);
+
+        assertFalse(restoredOrderBook.isRestoredOrigin(Origin.EUROPE));
+        assertTrue(restoredOrderBook.isRestoredOrigin(Origin.ASIA));
+        assertFalse(itemOrderBook.isRestoredOrigin(Origin.EUROPE));
+
+    }
+
+    @Test
+    void getQuantityByOrigin_TracksMergedTicks() {
+
+        itemOrderBook.addItem(new Item(3.2, 4, Origin.EUROPE));
+        itemOrderBook.addItem(new Item(1.2, -1, Origin.ASIA));
+
+        assertEquals(9, itemOrderBook.getQuantityByOrigin(Origin.EUROPE));
+        assertEquals(3, itemOrderBook.getQuantityByOrigin(Origin.ASIA));
+        assertEquals(0, itemOrderBook.getQuantityByOrigin(Origin.AMERICA));
+
+    }
+
+    @Test
+    void getSnapshot_IsReusedUntilBookChanges() {
+
+        ItemOrderBookSnapshot snapshot = itemOrderBook.getSnapshot();
+
+        assertSame(snapshot, itemOrderBook.getSnapshot());
+
+        itemOrderBook.addItem(new Item(2.2, 1, Origin.AMERICA));
+        ItemOrderBookSnapshot rebuiltSnapshot = itemOrderBook.getSnapshot();
+
+        assertNotSame(snapshot, rebuiltSnapshot);
+        assertTrue(rebuiltSnapshot.getVersion() > snapshot.getVersion());
+        assertSame(rebuiltSnapshot, itemOrderBook.getSnapshot());
+
+    }
+
+    @Test
+    void publishChanges_DoesNotRebuildSnapshot() {
+
+        ItemOrderBookSnapshot snapshot = itemOrderBook.getSnapshot();
+
+        itemOrderBook.addItem(new Item(2.2, 1, Origin.AMERICA));
+        itemOrderBook.publishChanges();
+        itemOrderBook.addItem(new Item(2.2, 1, Origin.AMERICA));
+        itemOrderBook.publishChanges();
+
+        assertSame(snapshot, itemOrderBook.getPublishedSnapshot());
+        assertEquals(4, itemOrderBook.getSnapshot().size());
+        assertEquals(itemOrderBook.getVersion(), itemOrderBook.getPublishedSnapshot().getVersion());
+
+    }
+
+    @Test
+    void getSnapshot_IsNotAffectedByLaterUpdates() {
+
+        ItemOrderBookSnapshot snapshot = itemOrderBook.getSnapshot();
+
+        itemOrderBook.addItem(new Item(1.2, 6, Origin.ASIA));
+        itemOrderBook.removeItemsByOrigin(Origin.EUROPE);
+        itemOrderBook.publishChanges();
+
+        assertEquals(3, snapshot.size());
+        assertEquals(9, snapshot.getQuantity());
+        assertEquals(4, snapshot.getQuantity(0));
+        assertEquals(Origin.ASIA, snapshot.getOrigin(0));
+        assertEquals(1.2, snapshot.getPrice(1));
+        assertEquals(Origin.EUROPE, snapshot.getOrigin(1));
+        assertEquals(3.2, snapshot.getPrice(2));
+
+        assertEquals(1, itemOrderBook.getSnapshot().size());
+        assertEquals(10, itemOrderBook.getSnapshot().getQuantity());
+
+    }
+
+    @Test
+    void levelsToFill_ReturnsLevelsCoveringRequestedQuantity() {
+
+        ItemOrderBookSnapshot snapshot = itemOrderBook.getSnapshot();
+
+        assertEquals(0, snapshot.levelsToFill(0));
+        assertEquals(1, snapshot.levelsToFill(4));
+        assertEquals(2, snapshot.levelsToFill(5));
+        assertEquals(3, snapshot.levelsToFill(9));
+        assertEquals(-1, snapshot.levelsToFill(10));
+
+    }
+
+    @Test
+    void costToFill_UsesPartialQuantityOfLastLevel() {
+
+        ItemOrderBookSnapshot snapshot = itemOrderBook.getSnapshot();
+
+        assertEquals(4 * 1.2, snapshot.costToFill(4), 1e-9);
+        assertEquals(7 * 1.2 + 1 * 3.2, snapshot.costToFill(8), 1e-9);
+        assertEquals(-1, snapshot.costToFill(10));
+
+    }
+
+    @Test
+    void getFilledQuantity_CapsLastLevelAtRemainingQuantity() {
+
+        ItemOrderBookSnapshot snapshot = itemOrderBook.getSnapshot();
+
+        assertEquals(4, snapshot.getFilledQuantity(0, 6));
+        assertEquals(2, snapshot.getFilledQuantity(1, 6));
+
+    }
+
+    @Test
+    void getSnapshot_DoesNotWaitForWriter() throws Exception {
+
+        ItemOrderBookSnapshot snapshot = itemOrderBook.getSnapshot();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+        itemOrderBook.getLock().writeLock().lock();
+        try {
+            itemOrderBook.addItem(new Item(2.2, 1, Origin.AMERICA));
+            assertSame(snapshot, executorService.submit(itemOrderBook::getSnapshot).get(1, TimeUnit.SECONDS));
+        } finally {
+            itemOrderBook.getLock().writeLock().unlock();
+            executorService.shutdownNow();
+        }
+
+    }
+
+    @Test
+    void addListener_ReceivesCurrentSnapshot() {
+
+        ItemOrderBookListener listener = mock(ItemOrderBookListener.class);
+
+        itemOrderBook.addListener(listener);
+
+        verify(listener).onSnapshot(itemOrderBook.getSnapshot());
+
+    }
+
+    @Test
+    void publishChanges_SendsChangedLevelsWithAbsoluteQuantities() {
+
+        ItemOrderBookListener listener = mock(ItemOrderBookListener.class);
+        itemOrderBook.addListener(listener);
+
+        itemOrderBook.addItem(new Item(1.2, 5, Origin.EUROPE));
+        itemOrderBook.addItem(new Item(3.2, -2, Origin.EUROPE));
+        itemOrderBook.publishChanges();
+
+        List<Item> expectedLevels = new ArrayList<>();
+        expectedLevels.add(new Item(1.2, 8, Origin.EUROPE));
+        expectedLevels.add(new Item(3.2, 0, Origin.EUROPE));
+        verify(listener).onLevelsChanged(eq(itemOrderBook.getSnapshot().getVersion()), eq(expectedLevels));
+
+    }
+
+    @Test
+    void publishChanges_DoesNothingWithoutChanges() {
+
+        ItemOrderBookListener listener = mock(ItemOrderBookListener.class);
+        itemOrderBook.addListener(listener);
+
+        itemOrderBook.publishChanges();
+
+        verify(listener, never()).onLevelsChanged(anyLong(), anyList());
+
+    }
+
+    @Test
+    void publishChanges_RemovesFailingListener() {
+
+        ItemOrderBookListener listener = mock(ItemOrderBookListener.class);
+        doThrow(new IllegalStateException("closed")).when(listener).onLevelsChanged(anyLong(), anyList());
+        itemOrderBook.addListener(listener);
+
+        itemOrderBook.addItem(new Item(1.2, 5, Origin.EUROPE));
+        itemOrderBook.publishChanges();
+        itemOrderBook.addItem(new Item(1.2, 5, Origin.EUROPE));
+        itemOrderBook.publishChanges();
+
+        verify(listener, times(1)).onLevelsChanged(anyLong(), anyList());
+
+    }
+
+    @Test
+    void close_CompletesListeners() {
+
+        ItemOrderBookListener listener = mock(ItemOrderBookListener.class);
+        itemOrderBook.addListener(listener);
+
+        itemOrderBook.close();
+
+        verify(listener).onClosed();
+        verify(listener, never()).onLevelsChanged(anyLong(), any());
+
+    }
+
+}
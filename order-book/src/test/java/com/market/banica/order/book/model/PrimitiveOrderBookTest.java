@@ -0,0 +1,172 @@
+package com.market.banica.order.book.model;
+
+import com.market.Origin;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class PrimitiveOrderBookTest {
+
+    private static final Origin[] ORIGINS = {Origin.AMERICA, Origin.ASIA, Origin.EUROPE};
+
+    private PrimitiveOrderBook primitiveOrderBook;
+
+    @BeforeEach
+    void setUp() {
+
+        primitiveOrderBook = new PrimitiveOrderBook();
+        primitiveOrderBook.addLevel(3.2, 2, Origin.EUROPE, 0);
+        primitiveOrderBook.addLevel(1.2, 3, Origin.EUROPE, 0);
+        primitiveOrderBook.addLevel(1.2, 4, Origin.ASIA, 0);
+        primitiveOrderBook.publishChanges();
+
+    }
+
+    @Test
+    void addLevel_LevelsAreKeptInPriceThenOriginOrder() {
+
+        primitiveOrderBook.addLevel(2.2, 1, Origin.AMERICA, 0);
+
+        List<Item> items = new ArrayList<>(primitiveOrderBook.getItems());
+
+        assertEquals(4, primitiveOrderBook.size());
+        assertEquals(new Item(1.2, 4, Origin.ASIA), items.get(0));
+        assertEquals(new Item(1.2, 3, Origin.EUROPE), items.get(1));
+        assertEquals(new Item(2.2, 1, Origin.AMERICA), items.get(2));
+        assertEquals(new Item(3.2, 2, Origin.EUROPE), items.get(3));
+
+    }
+
+    @Test
+    void addLevel_LevelIsRemovedWhenQuantityNetsToZero() {
+
+        primitiveOrderBook.addLevel(1.2, -3, Origin.EUROPE, 0);
+
+        assertEquals(2, primitiveOrderBook.size());
+        assertEquals(2, primitiveOrderBook.getQuantityByOrigin(Origin.EUROPE));
+
+    }
+
+    @Test
+    void addLevel_NegativeTickForEvictedLevelIsNotFilledFrom() {
+
+        primitiveOrderBook.addLevel(1.2, 1, Origin.ASIA, 10);
+        primitiveOrderBook.addLevel(3.2, 3, Origin.EUROPE, 10);
+        primitiveOrderBook.evictIdleLevels(5);
+        primitiveOrderBook.addLevel(1.2, -3, Origin.EUROPE, 20);
+        primitiveOrderBook.publishChanges();
+
+        ItemOrderBookSnapshot snapshot = primitiveOrderBook.getSnapshot();
+
+        assertEquals(2, snapshot.size());
+        assertEquals(10, snapshot.getQuantity());
+        assertEquals(1, snapshot.levelsToFill(4));
+        assertEquals(4, snapshot.getFilledQuantity(0, 4));
+        assertEquals(2, snapshot.levelsToFill(7));
+        assertEquals(5, snapshot.getFilledQuantity(0, 7));
+        assertEquals(2, snapshot.getFilledQuantity(1, 7));
+        assertFalse(primitiveOrderBook.getItems().stream().anyMatch(item -> item.getQuantity() <= 0));
+
+    }
+
+    @Test
+    void addLevel_NegativeQuantityForMissingLevelNetsWithLaterTicks() {
+
+        primitiveOrderBook.addLevel(4.2, -3, Origin.AMERICA, 0);
+        primitiveOrderBook.addLevel(4.2, 5, Origin.AMERICA, 0);
+
+        assertEquals(4, primitiveOrderBook.size());
+        assertEquals(2, primitiveOrderBook.getQuantityByOrigin(Origin.AMERICA));
+        assertTrue(primitiveOrderBook.getItems().contains(new Item(4.2, 2, Origin.AMERICA)));
+
+    }
+
+    @Test
+    void removeItemsByOrigin_RemovesOnlyLevelsOfThatOrigin() {
+
+        ItemOrderBookListener listener = mock(ItemOrderBookListener.class);
+        primitiveOrderBook.addListener(listener);
+
+        long removedQuantity = primitiveOrderBook.removeItemsByOrigin(Origin.EUROPE);
+        primitiveOrderBook.publishChanges();
+
+        assertEquals(5, removedQuantity);
+        assertEquals(1, primitiveOrderBook.size());
+        assertEquals(Origin.ASIA, primitiveOrderBook.getItems().first().getOrigin());
+        verify(listener).onLevelsChanged(eq(primitiveOrderBook.getSnapshot().getVersion()),
+                eq(Arrays.asList(new Item(1.2, 0, Origin.EUROPE), new Item(3.2, 0, Origin.EUROPE))));
+
+    }
+
+    @Test
+    void restoreItems_MarksOriginsUntilTheyAreRemoved() {
+
+        PrimitiveOrderBook restoredOrderBook = new PrimitiveOrderBook();
+
+        restoredOrderBook.restoreItems(Arrays.asList(new Item(1.2, 3, Origin.EUROPE), new Item(2.2, 1, Origin.ASIA)));
+        restoredOrderBook.removeItemsByOrigin(Origin.EUROPE);
+
+        assertFalse(restoredOrderBook.isRestoredOrigin(Origin.EUROPE));
+        assertTrue(restoredOrderBook.isRestoredOrigin(Origin.ASIA));
+
+    }
+
+    @Test
+    void getSnapshot_ReturnsLevelsWithCumulativeQuantities() {
+
+        ItemOrderBookSnapshot snapshot = primitiveOrderBook.getSnapshot();
+
+        assertEquals(3, snapshot.size());
+        assertEquals(9, snapshot.getQuantity());
+        assertEquals(Origin.ASIA, snapshot.getOrigin(0));
+        assertEquals(3.2, snapshot.getPrice(2));
+        assertEquals(7 * 1.2 + 1 * 3.2, snapshot.costToFill(8), 1e-9);
+
+    }
+
+    @Test
+    void addLevel_RandomTicksProduceSameBookAsItemOrderBook() {
+
+        Random random = new Random(42);
+        ItemOrderBook itemOrderBook = new ItemOrderBook();
+        PrimitiveOrderBook orderBook = new PrimitiveOrderBook();
+
+        for (int tick = 0; tick < 20_000; tick++) {
+            double price = (1 + random.nextInt(200)) / 100.0;
+            Origin origin = ORIGINS[random.nextInt(ORIGINS.length)];
+            long quantity = random.nextInt(10) - 4;
+            long updatedAt = tick;
+
+            assertEquals(itemOrderBook.addLevel(price, quantity, origin, updatedAt), orderBook.addLevel(price, quantity, origin, updatedAt));
+            if (tick % 5000 == 2499) {
+                Origin disconnectedOrigin = ORIGINS[tick / 5000 % ORIGINS.length];
+                assertEquals(itemOrderBook.removeItemsByOrigin(disconnectedOrigin), orderBook.removeItemsByOrigin(disconnectedOrigin));
+            }
+            if (tick % 5000 == 4999) {
+                assertEquals(itemOrderBook.evictIdleLevels(tick - 1000), orderBook.evictIdleLevels(tick - 1000));
+                assertEquals(itemOrderBook.trimLevels(new OrderBookBounds(300, 0, 0)), orderBook.trimLevels(new OrderBookBounds(300, 0, 0)));
+            }
+        }
+
+        assertEquals(new ArrayList<>(itemOrderBook.getItems()), new ArrayList<>(orderBook.getItems()));
+        for (Origin origin : ORIGINS) {
+            assertEquals(itemOrderBook.getQuantityByOrigin(origin), orderBook.getQuantityByOrigin(origin));
+        }
+        assertEquals(itemOrderBook.removeItemsByOrigin(Origin.ASIA), orderBook.removeItemsByOrigin(Origin.ASIA));
+        assertEquals(new ArrayList<>(itemOrderBook.getItems()), new ArrayList<>(orderBook.getItems()));
+        assertEquals(itemOrderBook.size(), orderBook.size());
+
+    }
+
+}
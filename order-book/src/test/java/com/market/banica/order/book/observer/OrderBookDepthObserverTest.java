@@ -0,0 +1,114 @@
+package com.market.banica.order.book.observer;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.market.Origin;
+import com.market.banica.order.book.model.Item;
+import com.market.banica.order.book.model.ItemOrderBookSnapshot;
+import com.orderbook.OrderBookDepthUpdate;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderBookDepthObserverTest {
+
+    private static final String EGGS_ITEM_NAME = "eggs";
+
+    @SuppressWarnings("unchecked")
+    private final ServerCallStreamObserver<OrderBookDepthUpdate> responseObserver = mock(ServerCallStreamObserver.class);
+
+    @Test
+    void onLevelsChanged_WaitsUntilSubscriberIsReady() {
+
+        OrderBookDepthObserver depthObserver = new OrderBookDepthObserver(EGGS_ITEM_NAME, responseObserver, 4,
+                MoreExecutors.directExecutor());
+        Runnable onReadyHandler = captureOnReadyHandler();
+
+        depthObserver.onSnapshot(new ItemOrderBookSnapshot(1, Collections.singletonList(new Item(1.2, 3, Origin.EUROPE))));
+        depthObserver.onLevelsChanged(2, Collections.singletonList(new Item(1.2, 5, Origin.EUROPE)));
+
+        verify(responseObserver, never()).onNext(any());
+
+        when(responseObserver.isReady()).thenReturn(true);
+        onReadyHandler.run();
+
+        List<OrderBookDepthUpdate> depthUpdates = captureDepthUpdates(2);
+
+        assertTrue(depthUpdates.get(0).getSnapshot());
+        assertEquals(3, depthUpdates.get(0).getLevels(0).getQuantity());
+        assertEquals(2, depthUpdates.get(1).getVersion());
+        assertEquals(5, depthUpdates.get(1).getLevels(0).getQuantity());
+
+    }
+
+    @Test
+    void onLevelsChanged_WhenQueueIsFull_MergesPendingChangesPerLevel() {
+
+        OrderBookDepthObserver depthObserver = new OrderBookDepthObserver(EGGS_ITEM_NAME, responseObserver, 2,
+                MoreExecutors.directExecutor());
+        Runnable onReadyHandler = captureOnReadyHandler();
+
+        depthObserver.onSnapshot(new ItemOrderBookSnapshot(1, Collections.emptyList()));
+        depthObserver.onLevelsChanged(2, Collections.singletonList(new Item(1.2, 3, Origin.EUROPE)));
+        depthObserver.onLevelsChanged(3, Arrays.asList(new Item(1.2, 5, Origin.EUROPE), new Item(2.2, 1, Origin.ASIA)));
+        depthObserver.onLevelsChanged(4, Collections.singletonList(new Item(2.2, 0, Origin.ASIA)));
+
+        when(responseObserver.isReady()).thenReturn(true);
+        onReadyHandler.run();
+
+        List<OrderBookDepthUpdate> depthUpdates = captureDepthUpdates(2);
+
+        assertEquals(4, depthUpdates.get(1).getVersion());
+        assertEquals(2, depthUpdates.get(1).getLevelsCount());
+        assertEquals(5, depthUpdates.get(1).getLevels(0).getQuantity());
+        assertEquals(0, depthUpdates.get(1).getLevels(1).getQuantity());
+
+    }
+
+    @Test
+    void onClosed_CompletesAfterPendingUpdates() {
+
+        OrderBookDepthObserver depthObserver = new OrderBookDepthObserver(EGGS_ITEM_NAME, responseObserver, 4,
+                MoreExecutors.directExecutor());
+        when(responseObserver.isReady()).thenReturn(true);
+
+        depthObserver.onLevelsChanged(2, Collections.singletonList(new Item(1.2, 3, Origin.EUROPE)));
+        depthObserver.onClosed();
+
+        verify(responseObserver, times(1)).onNext(any());
+        verify(responseObserver, times(1)).onCompleted();
+        assertThrows(IllegalStateException.class,
+                () -> depthObserver.onLevelsChanged(3, Collections.singletonList(new Item(1.2, 4, Origin.EUROPE))));
+
+    }
+
+    private Runnable captureOnReadyHandler() {
+
+        ArgumentCaptor<Runnable> onReadyHandler = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReadyHandler.capture());
+        return onReadyHandler.getValue();
+
+    }
+
+    private List<OrderBookDepthUpdate> captureDepthUpdates(int count) {
+
+        ArgumentCaptor<OrderBookDepthUpdate> depthUpdates = ArgumentCaptor.forClass(OrderBookDepthUpdate.class);
+        verify(responseObserver, times(count)).onNext(depthUpdates.capture());
+        return depthUpdates.getAllValues();
+
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.market.banica.order.book.service;
+
+import com.market.banica.common.exception.TrackingException;
+import com.market.banica.order.book.service.grpc.AuroraClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class InterestsRestorerTest {
+
+    private final AuroraClient auroraClient = mock(AuroraClient.class);
+
+    private InterestsRestorer interestsRestorer;
+
+    @AfterEach
+    void tearDown() throws Exception {
+
+        Method stop = InterestsRestorer.class.getDeclaredMethod("stop");
+        stop.setAccessible(true);
+        stop.invoke(interestsRestorer);
+
+    }
+
+    @Test
+    void restore_StartsEveryItemOnceAcrossClients() throws TrackingException {
+
+        interestsRestorer = new InterestsRestorer(auroraClient, 4, 1000);
+        Map<String, Set<String>> interests = new HashMap<>();
+        interests.put("client1", new HashSet<>(Arrays.asList("eggs", "milk")));
+        interests.put("client2", new HashSet<>(Arrays.asList("eggs", "flour")));
+
+        interestsRestorer.restore(interests);
+
+        verify(auroraClient, timeout(1000).times(1)).startSubscription(eq("eggs"), anyString());
+        verify(auroraClient, timeout(1000).times(1)).startSubscription("milk", "client1");
+        verify(auroraClient, timeout(1000).times(1)).startSubscription("flour", "client2");
+        verify(auroraClient, times(3)).startSubscription(any(), any());
+
+    }
+
+    @Test
+    void restore_ReportsReadinessPerItem() throws Exception {
+
+        interestsRestorer = new InterestsRestorer(auroraClient, 2, 1000);
+        doThrow(new TrackingException("Item is already being tracked!")).when(auroraClient).startSubscription(eq("milk"), any());
+        Map<String, Set<String>> interests = new HashMap<>();
+        interests.put("client1", new HashSet<>(Arrays.asList("eggs", "milk")));
+
+        interestsRestorer.restore(interests);
+        verify(auroraClient, timeout(1000).times(2)).startSubscription(any(), any());
+        waitUntilRestored("eggs", "milk");
+
+        assertEquals("READY", interestsRestorer.getRestoreStates().get("eggs"));
+        assertEquals("FAILED", interestsRestorer.getRestoreStates().get("milk"));
+        assertFalse(interestsRestorer.isRestoring("eggs"));
+        assertFalse(interestsRestorer.isRestoring("water"));
+
+    }
+
+    @Test
+    void cancelPendingRestore_SkipsItemThatHasNotStarted() throws Exception {
+
+        interestsRestorer = new InterestsRestorer(auroraClient, 1, 1);
+        Map<String, Set<String>> interests = new HashMap<>();
+        interests.put("client1", new LinkedHashSet<>(Arrays.asList("eggs", "milk")));
+
+        interestsRestorer.restore(interests);
+
+        assertTrue(interestsRestorer.isRestoring("milk"));
+        assertTrue(interestsRestorer.cancelPendingRestore("milk"));
+        verify(auroraClient, timeout(1000)).startSubscription("eggs", "client1");
+        Thread.sleep(1500);
+        verify(auroraClient, never()).startSubscription(eq("milk"), any());
+        assertFalse(interestsRestorer.isRestoring("milk"));
+
+    }
+
+    private void waitUntilRestored(String... itemNames) throws InterruptedException {
+
+        for (String itemName : itemNames) {
+            long deadline = System.currentTimeMillis() + 1000;
+            while (interestsRestorer.isRestoring(itemName) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+
+    }
+
+}
@@ -1,12 +1,15 @@
 package com.market.banica.order.book.service;
 
 import com.market.Origin;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
 import com.market.banica.order.book.model.Item;
 import com.market.banica.order.book.model.ItemMarket;
+import com.market.banica.order.book.model.OrderBookBounds;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.HashMap;
@@ -28,13 +31,14 @@ import static org.mockito.Mockito.when;
 class JMXTest {
 
     private static final ItemMarket itemMarket = mock(ItemMarket.class);
+    private static final OrderBookMetrics metrics = new OrderBookMetrics();
 
     private static JMX jmx;
 
     @BeforeAll
     static void beforeAll() {
 
-        jmx = new JMX(itemMarket);
+        jmx = new JMX(itemMarket, metrics);
 
     }
 
@@ -99,4 +103,51 @@ class JMXTest {
 
     }
 
+    @Test
+    void setMaxDepth_KeepsOtherBounds() {
+
+        when(itemMarket.getBounds()).thenReturn(new OrderBookBounds(10, 0.5, 1000));
+
+        jmx.setMaxDepth(20);
+
+        ArgumentCaptor<OrderBookBounds> bounds = ArgumentCaptor.forClass(OrderBookBounds.class);
+        verify(itemMarket, times(1)).setBounds(bounds.capture());
+        assertEquals(20, bounds.getValue().getMaxDepth());
+        assertEquals(0.5, bounds.getValue().getPriceBand());
+        assertEquals(1000, bounds.getValue().getMaxLevelAgeMillis());
+
+    }
+
+    @Test
+    void getEvictionStatistics() {
+
+        when(itemMarket.getEvictedLevels()).thenReturn(3L);
+        when(itemMarket.getEvictedQuantity()).thenReturn(12L);
+
+        Map<String, Long> statistics = jmx.getEvictionStatistics();
+
+        assertEquals(3L, statistics.get("evictedLevels"));
+        assertEquals(12L, statistics.get("evictedQuantity"));
+
+    }
+
+    @Test
+    void getMetrics_ReturnsItemAndOriginStatistics() {
+
+        OrderBookMetrics.ItemMetrics itemMetrics = metrics.addItem("eggs", () -> 4);
+        itemMetrics.getLockWaitNanos().record(120);
+        int[] ticksByOrigin = new int[OrderBookMetrics.ORIGIN_SLOTS];
+        ticksByOrigin[Origin.ASIA.getNumber()] = 3;
+        metrics.recordTicks(itemMetrics, ticksByOrigin);
+
+        Map<String, Long> statistics = jmx.getMetrics();
+
+        assertEquals(4L, statistics.get("eggs.depth"));
+        assertEquals(3L, statistics.get("eggs.ASIA.ticks"));
+        assertEquals(3L, statistics.get("ASIA.ticks"));
+        assertEquals(1L, statistics.get("eggs.lockWaitNanos.count"));
+        assertEquals(120L, statistics.get("eggs.lockWaitNanos.max"));
+
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.market.banica.order.book.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ReconnectionSchedulerTest {
+
+    private ReconnectionScheduler reconnectionScheduler;
+
+    @AfterEach
+    void tearDown() throws Exception {
+
+        Method stop = ReconnectionScheduler.class.getDeclaredMethod("stop");
+        stop.setAccessible(true);
+        stop.invoke(reconnectionScheduler);
+
+    }
+
+    @Test
+    void scheduleReconnect_CoalescesPendingReconnectsOfSameMarketAndItem() {
+
+        reconnectionScheduler = new ReconnectionScheduler(1, 200, 200, 60000);
+        Runnable reconnect = mock(Runnable.class);
+        Runnable otherMarketReconnect = mock(Runnable.class);
+
+        assertTrue(reconnectionScheduler.scheduleReconnect("market-europe", "eggs", reconnect));
+        assertFalse(reconnectionScheduler.scheduleReconnect("market-europe", "eggs", reconnect));
+        assertTrue(reconnectionScheduler.scheduleReconnect("market-asia", "eggs", otherMarketReconnect));
+
+        verify(reconnect, timeout(1000).times(1)).run();
+        verify(otherMarketReconnect, timeout(1000).times(1)).run();
+        assertEquals(3L, reconnectionScheduler.getReconnectStatistics().get("requested"));
+        assertEquals(1L, reconnectionScheduler.getReconnectStatistics().get("coalesced"));
+
+    }
+
+    @Test
+    void scheduleReconnect_BacksOffOnRepeatedReconnects() {
+
+        reconnectionScheduler = new ReconnectionScheduler(1, 100, 10000, 60000);
+        Runnable reconnect = mock(Runnable.class);
+
+        reconnectionScheduler.scheduleReconnect("market-europe", "eggs", reconnect);
+        verify(reconnect, timeout(1000).times(1)).run();
+        reconnectionScheduler.scheduleReconnect("market-europe", "eggs", reconnect);
+        reconnectionScheduler.scheduleReconnect("market-europe", "eggs", reconnect);
+
+        verify(reconnect, after(90).times(1)).run();
+        verify(reconnect, timeout(1000).times(2)).run();
+        assertTrue(reconnectionScheduler.getReconnectStatistics().get("maxLatencyMillis") >= 100);
+
+    }
+
+    @Test
+    void cancelReconnects_DropsScheduledReconnectsOfItem() {
+
+        reconnectionScheduler = new ReconnectionScheduler(1, 200, 200, 60000);
+        Runnable reconnect = mock(Runnable.class);
+
+        reconnectionScheduler.scheduleReconnect("market-europe", "eggs", reconnect);
+        reconnectionScheduler.cancelReconnects("eggs");
+
+        verify(reconnect, after(400).never()).run();
+        assertEquals(0L, reconnectionScheduler.getReconnectStatistics().get("completed"));
+
+    }
+
+}
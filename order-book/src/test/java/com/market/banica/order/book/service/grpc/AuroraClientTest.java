@@ -1,27 +1,49 @@
 package com.market.banica.order.book.service.grpc;
 
+import com.aurora.Aurora;
+import com.aurora.AuroraServiceGrpc;
+import com.google.protobuf.Any;
 import com.market.Origin;
 import com.market.banica.common.channel.ChannelRPCConfig;
 import com.market.banica.common.exception.TrackingException;
+import com.market.banica.order.book.ingestion.DirectTickIngestion;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
 import com.market.banica.order.book.model.Item;
 import com.market.banica.order.book.model.ItemMarket;
+import com.market.banica.order.book.model.ItemOrderBook;
+import com.market.banica.order.book.service.ReconnectionScheduler;
+import com.orderbook.ReconnectionResponse;
 import io.grpc.Context;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AuroraClientTest {
@@ -29,6 +51,7 @@ public class AuroraClientTest {
     private static final String EGGS_ITEM_NAME = "eggs";
     private static final String RICE_ITEM_NAME = "rice";
     private static final String MEAT_ITEM_NAME = "meat";
+    private static final String CHEESE_ITEM_NAME = "cheese";
 
     private static final String ALL_ITEMS_FIELD = "allItems";
     private static final String MANAGED_CHANNEL_FIELD = "managedChannel";
@@ -46,17 +69,18 @@ public class AuroraClientTest {
             .build();
 
     private final ItemMarket itemMarket = new ItemMarket();
-    private final AuroraClient auroraClient = new AuroraClient(itemMarket, DEFAULT_HOST, DEFAULT_PORT);
+    private final ReconnectionScheduler reconnectionScheduler = new ReconnectionScheduler(1, 0, 0, 0);
+    private final AuroraClient auroraClient = new AuroraClient(itemMarket, new DirectTickIngestion(itemMarket, new OrderBookMetrics()), reconnectionScheduler, new OrderBookMetrics(), DEFAULT_HOST, DEFAULT_PORT, false);
 
-    private final Map<String, TreeSet<Item>> allItems = new ConcurrentHashMap<>();
+    private final Map<String, ItemOrderBook> allItems = new ConcurrentHashMap<>();
     private final Map<String, Set<Context.CancellableContext>> cancellableStubs = new ConcurrentHashMap<>();
 
     @Before
     public void setUp() {
-        TreeSet<Item> items = this.populateItems();
+        ItemOrderBook items = this.populateItems();
 
         allItems.put(EGGS_ITEM_NAME, items);
-        allItems.put(RICE_ITEM_NAME, new TreeSet<>());
+        allItems.put(RICE_ITEM_NAME, new ItemOrderBook());
 
         ReflectionTestUtils.setField(itemMarket, ALL_ITEMS_FIELD, allItems);
         ReflectionTestUtils.setField(auroraClient, CANCELLABLE_STUBS_FIELD, cancellableStubs);
@@ -87,6 +111,41 @@ public class AuroraClientTest {
         this.auroraClient.startSubscription(MEAT_ITEM_NAME, CLIENT);
     }
 
+    @Test
+    public void startSubscriptionOfSameItemFromConcurrentCallersTracksItOnce() throws Exception {
+        //Arrange
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<Boolean>> subscriptions = new ArrayList<>();
+
+        //Act
+        try {
+            for (int i = 0; i < 4; i++) {
+                subscriptions.add(executorService.submit(() -> {
+                    startLatch.await();
+                    try {
+                        this.auroraClient.startSubscription(MEAT_ITEM_NAME, CLIENT);
+                        return true;
+                    } catch (TrackingException e) {
+                        return false;
+                    }
+                }));
+            }
+            startLatch.countDown();
+        } finally {
+            executorService.shutdown();
+        }
+
+        int started = 0;
+        for (Future<Boolean> subscription : subscriptions) {
+            started += subscription.get(1, TimeUnit.SECONDS) ? 1 : 0;
+        }
+
+        //Assert
+        assertEquals(1, started);
+        assertEquals(1, this.cancellableStubs.get(MEAT_ITEM_NAME).size());
+    }
+
     @Test
     public void stopSubscriptionRemovesCancellableContextAndProductFromItemMarketWithSuccess() throws TrackingException {
         //Arrange
@@ -108,6 +167,164 @@ public class AuroraClientTest {
         this.auroraClient.stopSubscription(EGGS_ITEM_NAME, CLIENT);
     }
 
+    @Test
+    public void multiplexedSubscriptionSendsInterestChangesOnOneStream() throws Exception {
+        //Arrange
+        List<String> topics = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger openedStreams = new AtomicInteger();
+        CountDownLatch receivedRequests = new CountDownLatch(3);
+        String serverName = InProcessServerBuilder.generateName();
+        Server server = InProcessServerBuilder.forName(serverName).directExecutor()
+                .addService(new AuroraServiceGrpc.AuroraServiceImplBase() {
+                    @Override
+                    public StreamObserver<Aurora.AuroraRequest> subscribeMultiplexed(StreamObserver<Aurora.AuroraResponse> responseObserver) {
+                        openedStreams.incrementAndGet();
+                        return new StreamObserver<Aurora.AuroraRequest>() {
+                            @Override
+                            public void onNext(Aurora.AuroraRequest request) {
+                                topics.add(request.getTopic());
+                                receivedRequests.countDown();
+                            }
+
+                            @Override
+                            public void onError(Throwable throwable) {
+                            }
+
+                            @Override
+                            public void onCompleted() {
+                                responseObserver.onCompleted();
+                            }
+                        };
+                    }
+                }).build().start();
+        ManagedChannel inProcessChannel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+        AuroraClient multiplexedClient = new AuroraClient(itemMarket, new DirectTickIngestion(itemMarket, new OrderBookMetrics()), reconnectionScheduler, new OrderBookMetrics(), DEFAULT_HOST, DEFAULT_PORT, true);
+        ReflectionTestUtils.setField(multiplexedClient, CANCELLABLE_STUBS_FIELD, cancellableStubs);
+        ReflectionTestUtils.setField(multiplexedClient, MANAGED_CHANNEL_FIELD, inProcessChannel);
+
+        //Act
+        try {
+            multiplexedClient.startSubscription(MEAT_ITEM_NAME, CLIENT);
+            multiplexedClient.startSubscription(CHEESE_ITEM_NAME, CLIENT);
+            multiplexedClient.stopSubscription(MEAT_ITEM_NAME, CLIENT);
+            receivedRequests.await(1, TimeUnit.SECONDS);
+        } finally {
+            inProcessChannel.shutdownNow();
+            server.shutdownNow();
+        }
+
+        //Assert
+        assertEquals(1, openedStreams.get());
+        assertEquals(Arrays.asList("market/meat=subscribe", "market/cheese=subscribe", "market/meat=unsubscribe"), topics);
+        assertEquals(1, cancellableStubs.size());
+        assertTrue(allItems.containsKey(CHEESE_ITEM_NAME));
+    }
+
+    @Test
+    public void closedMultiplexedSubscriptionResubscribesTrackedItems() throws Exception {
+        //Arrange
+        List<String> topics = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger openedStreams = new AtomicInteger();
+        CountDownLatch receivedRequests = new CountDownLatch(2);
+        String serverName = InProcessServerBuilder.generateName();
+        Server server = InProcessServerBuilder.forName(serverName).directExecutor()
+                .addService(new AuroraServiceGrpc.AuroraServiceImplBase() {
+                    @Override
+                    public StreamObserver<Aurora.AuroraRequest> subscribeMultiplexed(StreamObserver<Aurora.AuroraResponse> responseObserver) {
+                        boolean failing = openedStreams.incrementAndGet() == 1;
+                        return new StreamObserver<Aurora.AuroraRequest>() {
+                            @Override
+                            public void onNext(Aurora.AuroraRequest request) {
+                                topics.add(request.getTopic());
+                                receivedRequests.countDown();
+                                if (failing) {
+                                    responseObserver.onError(Status.UNAVAILABLE.asException());
+                                }
+                            }
+
+                            @Override
+                            public void onError(Throwable throwable) {
+                            }
+
+                            @Override
+                            public void onCompleted() {
+                                responseObserver.onCompleted();
+                            }
+                        };
+                    }
+                }).build().start();
+        ManagedChannel inProcessChannel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+        AuroraClient multiplexedClient = new AuroraClient(itemMarket, new DirectTickIngestion(itemMarket, new OrderBookMetrics()), reconnectionScheduler, new OrderBookMetrics(), DEFAULT_HOST, DEFAULT_PORT, true);
+        ReflectionTestUtils.setField(multiplexedClient, CANCELLABLE_STUBS_FIELD, cancellableStubs);
+        ReflectionTestUtils.setField(multiplexedClient, MANAGED_CHANNEL_FIELD, inProcessChannel);
+
+        //Act
+        boolean resubscribed;
+        boolean resubscribing;
+        try {
+            multiplexedClient.startSubscription(MEAT_ITEM_NAME, CLIENT);
+            resubscribed = receivedRequests.await(1, TimeUnit.SECONDS);
+            for (int attempt = 0; attempt < 100 && multiplexedClient.isResubscribing(MEAT_ITEM_NAME); attempt++) {
+                Thread.sleep(10);
+            }
+            resubscribing = multiplexedClient.isResubscribing(MEAT_ITEM_NAME);
+        } finally {
+            inProcessChannel.shutdownNow();
+            server.shutdownNow();
+        }
+
+        //Assert
+        assertTrue(resubscribed);
+        assertEquals(2, openedStreams.get());
+        assertEquals(Arrays.asList("market/meat=subscribe", "market/meat=subscribe"), topics);
+        assertFalse(resubscribing);
+    }
+
+    @Test
+    public void reconnectToMarketReplacesPreviousReconnectionStream() throws Exception {
+        //Arrange
+        List<String> topics = Collections.synchronizedList(new ArrayList<>());
+        String serverName = InProcessServerBuilder.generateName();
+        Server server = InProcessServerBuilder.forName(serverName).directExecutor()
+                .addService(new AuroraServiceGrpc.AuroraServiceImplBase() {
+                    @Override
+                    public void subscribe(Aurora.AuroraRequest request, StreamObserver<Aurora.AuroraResponse> responseObserver) {
+                        topics.add(request.getTopic());
+                    }
+                }).build().start();
+        ManagedChannel inProcessChannel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+        ReflectionTestUtils.setField(auroraClient, MANAGED_CHANNEL_FIELD, inProcessChannel);
+        Context.CancellableContext marketStub = Context.current().withCancellation();
+        this.cancellableStubs.put(EGGS_ITEM_NAME, Collections.synchronizedSet(new HashSet<>(Collections.singletonList(marketStub))));
+        Aurora.AuroraResponse reconnection = Aurora.AuroraResponse.newBuilder()
+                .setMessage(Any.pack(ReconnectionResponse.newBuilder()
+                        .setItemName(EGGS_ITEM_NAME)
+                        .setDestination("market-europe")
+                        .setClientId(CLIENT)
+                        .build()))
+                .build();
+
+        //Act
+        int trackedStubs;
+        try {
+            this.auroraClient.reconnectToMarket(reconnection);
+            awaitTopics(topics, 1);
+            this.auroraClient.reconnectToMarket(reconnection);
+            awaitTopics(topics, 2);
+            trackedStubs = cancellableStubs.get(EGGS_ITEM_NAME).size();
+        } finally {
+            inProcessChannel.shutdownNow();
+            server.shutdownNow();
+        }
+
+        //Assert
+        assertEquals(Arrays.asList("market-europe/eggs", "market-europe/eggs"), topics);
+        assertEquals(0, allItems.get(EGGS_ITEM_NAME).size());
+        assertEquals(2, trackedStubs);
+        assertTrue(cancellableStubs.get(EGGS_ITEM_NAME).contains(marketStub));
+        assertEquals(2L, reconnectionScheduler.getReconnectStatistics().get("requested"));
+    }
+
     @Test
     public void stopManagedChannelReturnsTrueAfterChannelCancellation() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
         //Arrange
@@ -116,17 +333,23 @@ public class AuroraClientTest {
         stop.setAccessible(true);
 
         //Act
-        stop.invoke(auroraClient, null);
+        stop.invoke(auroraClient, (Object[]) null);
 
         //Assert
         assertTrue(managedChannel.isShutdown());
     }
 
-    private TreeSet<Item> populateItems() {
-        TreeSet<Item> items = new TreeSet<>();
-        items.add(new Item(1.2, 3, Origin.EUROPE));
-        items.add(new Item(2.2, 1, Origin.EUROPE));
-        items.add(new Item(3.2, 2, Origin.EUROPE));
+    private void awaitTopics(List<String> topics, int expectedTopics) throws InterruptedException {
+        for (int attempt = 0; attempt < 100 && topics.size() < expectedTopics; attempt++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private ItemOrderBook populateItems() {
+        ItemOrderBook items = new ItemOrderBook();
+        items.addItem(new Item(1.2, 3, Origin.EUROPE));
+        items.addItem(new Item(2.2, 1, Origin.EUROPE));
+        items.addItem(new Item(3.2, 2, Origin.EUROPE));
         return items;
     }
 
@@ -6,16 +6,21 @@ import com.market.Origin;
 import com.market.banica.common.exception.TrackingException;
 import com.market.banica.common.util.ApplicationDirectoryUtil;
 import com.market.banica.order.book.model.Item;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
 import com.market.banica.order.book.model.ItemMarket;
+import com.market.banica.order.book.service.InterestsRestorer;
 import com.market.banica.order.book.util.InterestsPersistence;
 import com.orderbook.CancelSubscriptionRequest;
 import com.orderbook.CancelSubscriptionResponse;
 import com.orderbook.InterestsRequest;
 import com.orderbook.InterestsResponse;
+import com.orderbook.ItemOrderBookBatchRequest;
+import com.orderbook.ItemOrderBookBatchResponse;
 import com.orderbook.ItemOrderBookRequest;
 import com.orderbook.ItemOrderBookResponse;
 import com.orderbook.OrderBookLayer;
 import com.orderbook.OrderBookServiceGrpc;
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
@@ -43,10 +48,12 @@ import java.util.TreeSet;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -63,6 +70,10 @@ public class OrderBookServiceTest {
 
     private static final String MARKET = "market";
 
+    private static final int JOURNAL_COMPACTION_THRESHOLD = 1024;
+
+    private static final int DEPTH_QUEUE_CAPACITY = 16;
+
     private static final ItemOrderBookRequest ITEM_ORDER_BOOK_REQUEST =
             ItemOrderBookRequest.newBuilder().setClientId("calculator").setItemName("eggs").setQuantity(3).build();
 
@@ -87,6 +98,7 @@ public class OrderBookServiceTest {
     private String interestsFileName = "test-orderbookInterests.dat";
 
     private final InterestsPersistence interestsPersistence = mock(InterestsPersistence.class);
+    private final InterestsRestorer interestsRestorer = mock(InterestsRestorer.class);
     private final Map<String, Set<String>> interestsMap = mock(Map.class);
 
     private OrderBookService orderBookService;
@@ -94,7 +106,7 @@ public class OrderBookServiceTest {
     @SneakyThrows
     @Before
     public void setUp() {
-        orderBookService = new OrderBookService(auroraClient, itemMarket, interestsFileName);
+        orderBookService = new OrderBookService(auroraClient, itemMarket, interestsRestorer, new OrderBookMetrics(), interestsFileName, JOURNAL_COMPACTION_THRESHOLD, DEPTH_QUEUE_CAPACITY);
 
         Set<Item> items = this.populateItems();
         populateList(items);
@@ -119,6 +131,8 @@ public class OrderBookServiceTest {
 
         File interestsFile = ApplicationDirectoryUtil.getConfigFile(interestsFileName);
         assert interestsFile.delete();
+        File interestsJournalFile = ApplicationDirectoryUtil.getConfigFile(interestsFileName + ".journal");
+        assert interestsJournalFile.delete();
 
     }
 
@@ -146,6 +160,45 @@ public class OrderBookServiceTest {
         assertEquals(0, bookItemLayers.getOrderbookLayersList().size());
     }
 
+    @Test
+    public void getOrderBookItemLayersFailsWithUnavailableWhileItemIsBeingRestored() {
+        //Arrange
+        when(interestsRestorer.isRestoring(EGGS_ITEM_NAME)).thenReturn(true);
+
+        //Act
+        StatusRuntimeException exception = assertThrows(StatusRuntimeException.class,
+                () -> blockingStub.getOrderBookItemLayers(ITEM_ORDER_BOOK_REQUEST));
+
+        //Assert
+        assertEquals(Status.Code.UNAVAILABLE, exception.getStatus().getCode());
+        verify(itemMarket, never()).getRequestedItem(any(), any(Long.class));
+    }
+
+    @Test
+    public void getOrderBookItemLayersBatchMarksOnlyRestoringItems() {
+        //Arrange
+        when(interestsRestorer.isRestoring(EGGS_ITEM_NAME)).thenReturn(true);
+        ItemOrderBookRequest riceRequest = ItemOrderBookRequest.newBuilder().setItemName("rice").setQuantity(1).build();
+        ItemOrderBookBatchRequest batchRequest = ItemOrderBookBatchRequest.newBuilder()
+                .addRequests(riceRequest)
+                .addRequests(ITEM_ORDER_BOOK_REQUEST)
+                .build();
+        when(itemMarket.getRequestedItems(Collections.singletonList(riceRequest)))
+                .thenReturn(Collections.singletonList(orderBookLayers));
+
+        //Act
+        ItemOrderBookBatchResponse batchResponse = blockingStub.getOrderBookItemLayersBatch(batchRequest);
+
+        //Assert
+        assertEquals(2, batchResponse.getResponsesCount());
+        assertEquals("rice", batchResponse.getResponses(0).getItemName());
+        assertFalse(batchResponse.getResponses(0).getRestoring());
+        assertEquals(3, batchResponse.getResponses(0).getOrderbookLayersCount());
+        assertEquals(EGGS_ITEM_NAME, batchResponse.getResponses(1).getItemName());
+        assertTrue(batchResponse.getResponses(1).getRestoring());
+        assertEquals(0, batchResponse.getResponses(1).getOrderbookLayersCount());
+    }
+
     @Test
     public void announceItemInterestExecutesSuccessfullyWithValidInterestRequest() throws IOException, TrackingException {
         //Arrange
@@ -160,7 +213,8 @@ public class OrderBookServiceTest {
         verify(interestsMap, times(1)).putIfAbsent(CLIENT, new HashSet<>());
         verify(interestsMap, times(1)).get(CLIENT);
         verify(interestsSet, times(1)).add(EGGS_ITEM_NAME);
-        verify(interestsPersistence, times(1)).persistInterests();
+        verify(interestsPersistence, times(1)).appendInterest(CLIENT, EGGS_ITEM_NAME);
+        verify(interestsPersistence, times(1)).syncJournal();
         verify(auroraClient, times(1)).startSubscription(EGGS_ITEM_NAME, CLIENT);
     }
 
@@ -185,7 +239,8 @@ public class OrderBookServiceTest {
         //Assert
         assertTrue(cancelSubscriptionResponse.isInitialized());
         assertFalse(interestsMap.containsKey(EGGS_ITEM_NAME));
-        verify(interestsPersistence, times(1)).persistInterests();
+        verify(interestsPersistence, times(1)).appendCancellation(CLIENT, EGGS_ITEM_NAME);
+        verify(interestsPersistence, times(1)).syncJournal();
     }
 
     @Test(expected = StatusRuntimeException.class)
@@ -12,7 +12,9 @@ import com.market.banica.common.channel.ChannelRPCConfig;
 import com.market.banica.common.exception.TrackingException;
 import com.market.banica.common.util.ApplicationDirectoryUtil;
 import com.market.banica.order.book.OrderBookApplication;
+import com.market.banica.order.book.metrics.OrderBookMetrics;
 import com.market.banica.order.book.model.ItemMarket;
+import com.market.banica.order.book.service.InterestsRestorer;
 import com.market.banica.order.book.service.grpc.AuroraClient;
 import com.market.banica.order.book.service.grpc.OrderBookService;
 import com.market.banica.order.book.service.grpc.componentTests.configuration.TestConfiguration;
@@ -78,9 +80,21 @@ class OrderBookComponentIT {
     @Mock
     private ItemMarket itemMarket;
 
+    @Autowired
+    private InterestsRestorer interestsRestorer;
+
     @Value(value = "${orderbook.interests.file.name}")
     private String interestsFileName;
 
+    @Value(value = "${orderbook.snapshot.file.name}")
+    private String snapshotFileName;
+
+    @Value(value = "${orderbook.interests.journal.compaction.threshold}")
+    private int journalCompactionThreshold;
+
+    @Value(value = "${orderbook.depth.queue.capacity}")
+    private int depthQueueCapacity;
+
     private OrderBookService orderBookService;
 
     @Autowired
@@ -133,7 +147,7 @@ class OrderBookComponentIT {
     @BeforeEach
     void setupChannel() throws TrackingException, IOException {
 
-        orderBookService = new OrderBookService(auroraClient, itemMarket, interestsFileName);
+        orderBookService = new OrderBookService(auroraClient, itemMarket, interestsRestorer, new OrderBookMetrics(), interestsFileName, journalCompactionThreshold, depthQueueCapacity);
 
         serverName = InProcessServerBuilder.generateName();
         serverNameTwo = InProcessServerBuilder.generateName();
@@ -160,6 +174,11 @@ class OrderBookComponentIT {
 
         File interestsFile = ApplicationDirectoryUtil.getConfigFile(interestsFileName);
         assert interestsFile.delete();
+        File interestsJournalFile = ApplicationDirectoryUtil.getConfigFile(interestsFileName + ".journal");
+        assert interestsJournalFile.delete();
+        if (ApplicationDirectoryUtil.doesFileExist(snapshotFileName)) {
+            assert ApplicationDirectoryUtil.getConfigFile(snapshotFileName).delete();
+        }
 
     }
 
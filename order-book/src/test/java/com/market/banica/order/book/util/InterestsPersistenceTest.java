@@ -12,6 +12,7 @@ import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -56,6 +57,8 @@ class InterestsPersistenceTest {
         reset(interestsMap);
         File interestsFile = ApplicationDirectoryUtil.getConfigFile(interestsFileName);
         assert interestsFile.delete();
+        File interestsJournalFile = ApplicationDirectoryUtil.getConfigFile(interestsFileName + ".journal");
+        assert interestsJournalFile.delete();
 
     }
 
@@ -127,4 +130,76 @@ class InterestsPersistenceTest {
 
     }
 
+    @Test
+    void loadInterests_ReplaysJournalOnTopOfSnapshot() throws IOException {
+
+        Map<String, Set<String>> interestsMap = new HashMap<>();
+        interestsMap.put("client1", new HashSet<>(Arrays.asList("eggs", "flour")));
+        InterestsPersistence interestsPersistence = new InterestsPersistence(interestsFileName, interestsMap);
+        interestsPersistence.persistInterests();
+
+        interestsPersistence.appendInterest("client1", "milk");
+        interestsPersistence.appendCancellation("client1", "eggs");
+        interestsPersistence.appendInterest("client2", "water");
+        interestsPersistence.close();
+
+        Map<String, Set<String>> loadedInterests = new HashMap<>();
+        InterestsPersistence loadingPersistence = new InterestsPersistence(interestsFileName, loadedInterests);
+        loadingPersistence.loadInterests();
+        loadingPersistence.close();
+
+        assertEquals(new HashSet<>(Arrays.asList("flour", "milk")), loadedInterests.get("client1"));
+        assertEquals(new HashSet<>(Arrays.asList("water")), loadedInterests.get("client2"));
+        assertEquals(3, loadingPersistence.getJournalRecords());
+
+    }
+
+    @Test
+    void loadInterests_DiscardsIncompleteJournalRecord() throws IOException {
+
+        Map<String, Set<String>> interestsMap = new HashMap<>();
+        InterestsPersistence interestsPersistence = new InterestsPersistence(interestsFileName, interestsMap);
+        interestsPersistence.appendInterest("client1", "milk");
+        interestsPersistence.appendInterest("client1", "eggs");
+        interestsPersistence.close();
+
+        File journalFile = ApplicationDirectoryUtil.getConfigFile(interestsFileName + ".journal");
+        long completeLength = journalFile.length();
+        try (RandomAccessFile journal = new RandomAccessFile(journalFile, "rw")) {
+            journal.setLength(completeLength - 3);
+        }
+
+        Map<String, Set<String>> loadedInterests = new HashMap<>();
+        InterestsPersistence loadingPersistence = new InterestsPersistence(interestsFileName, loadedInterests);
+        loadingPersistence.loadInterests();
+        loadingPersistence.close();
+
+        assertEquals(new HashSet<>(Arrays.asList("milk")), loadedInterests.get("client1"));
+        assertEquals(completeLength / 2, journalFile.length());
+
+    }
+
+    @Test
+    void persistInterests_CompactsJournal() throws IOException {
+
+        Map<String, Set<String>> interestsMap = new HashMap<>();
+        InterestsPersistence interestsPersistence = new InterestsPersistence(interestsFileName, interestsMap);
+        interestsPersistence.appendInterest("client1", "milk");
+        interestsMap.put("client1", new HashSet<>(Arrays.asList("milk")));
+
+        interestsPersistence.persistInterests();
+        interestsPersistence.close();
+
+        assertEquals(0, interestsPersistence.getJournalRecords());
+        assertEquals(0, ApplicationDirectoryUtil.getConfigFile(interestsFileName + ".journal").length());
+
+        Map<String, Set<String>> loadedInterests = new HashMap<>();
+        InterestsPersistence loadingPersistence = new InterestsPersistence(interestsFileName, loadedInterests);
+        loadingPersistence.loadInterests();
+        loadingPersistence.close();
+
+        assertEquals(interestsMap, loadedInterests);
+
+    }
+
 }
@@ -0,0 +1,85 @@
+package com.market.banica.order.book.util;
+
+import com.market.Origin;
+import com.market.banica.common.util.ApplicationDirectoryUtil;
+import com.market.banica.order.book.model.Item;
+import com.market.banica.order.book.model.ItemOrderBookSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderBookSnapshotPersistenceTest {
+
+    private static final String snapshotFileName = "test-orderbookSnapshot.dat";
+
+    private final OrderBookSnapshotPersistence snapshotPersistence = new OrderBookSnapshotPersistence(snapshotFileName);
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        if (ApplicationDirectoryUtil.doesFileExist(snapshotFileName)) {
+            assert ApplicationDirectoryUtil.getConfigFile(snapshotFileName).delete();
+        }
+
+    }
+
+    @AfterEach
+    void teardown() throws IOException {
+
+        File snapshotFile = ApplicationDirectoryUtil.getConfigFile(snapshotFileName);
+        assert snapshotFile.delete();
+
+    }
+
+    @Test
+    void loadSnapshots_ReturnsPersistedLevels() throws IOException {
+
+        Map<String, ItemOrderBookSnapshot> snapshots = new TreeMap<>();
+        snapshots.put("eggs", new ItemOrderBookSnapshot(7, Arrays.asList(
+                new Item(1.2, 3, Origin.ASIA), new Item(1.2, 4, Origin.EUROPE), new Item(3.4, 1, Origin.AMERICA))));
+        snapshots.put("rice", new ItemOrderBookSnapshot(2, Collections.emptyList()));
+
+        snapshotPersistence.persistSnapshots(snapshots);
+        Map<String, List<Item>> loadedLevels = snapshotPersistence.loadSnapshots();
+
+        assertEquals(2, loadedLevels.size());
+        assertTrue(loadedLevels.get("rice").isEmpty());
+        assertEquals(Arrays.asList(new Item(1.2, 3, Origin.ASIA), new Item(1.2, 4, Origin.EUROPE), new Item(3.4, 1, Origin.AMERICA)),
+                loadedLevels.get("eggs"));
+
+    }
+
+    @Test
+    void loadSnapshots_IgnoresCorruptedSnapshot() throws IOException {
+
+        snapshotPersistence.persistSnapshots(Collections.singletonMap("eggs",
+                new ItemOrderBookSnapshot(1, Collections.singletonList(new Item(1.2, 3, Origin.ASIA)))));
+        try (RandomAccessFile snapshotAccess = new RandomAccessFile(ApplicationDirectoryUtil.getConfigFile(snapshotFileName), "rw")) {
+            snapshotAccess.seek(20);
+            snapshotAccess.write(0x7F);
+        }
+
+        assertTrue(snapshotPersistence.loadSnapshots().isEmpty());
+
+    }
+
+    @Test
+    void loadSnapshots_WithoutSnapshotFileReturnsEmptyMap() throws IOException {
+
+        assertTrue(snapshotPersistence.loadSnapshots().isEmpty());
+
+    }
+
+}